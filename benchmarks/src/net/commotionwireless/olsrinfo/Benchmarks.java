@@ -0,0 +1,31 @@
+package net.commotionwireless.olsrinfo;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler on, so that allocation rates are
+ * reported alongside throughput and latency percentiles. Any JMH command
+ * line options are passed through, e.g. a regular expression to run only
+ * some of the benchmarks; without one, all of them run.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public class Benchmarks {
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options)
+				.addProfiler(GCProfiler.class);
+		if (options.getIncludes().isEmpty())
+			builder.include(Benchmarks.class.getPackage().getName()
+					+ ".*Benchmark");
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,84 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The client paths end to end, against stand-ins for the jsoninfo and
+ * txtinfo plugins on the loopback interface: connecting, sending the
+ * command, reading the reply and parsing it.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClientBenchmark {
+
+	@Param({ "0", "10", "100", "1000", "10000" })
+	public int nodes;
+
+	private StandIn jsonServer;
+	private StandIn txtServer;
+	private JsonInfo jsoninfo;
+	private TxtInfo txtinfo;
+	private TxtTable table;
+
+	@Setup
+	public void setUp() throws IOException {
+		jsonServer = new StandIn(Payloads.jsoninfo(nodes));
+		txtServer = new StandIn(Payloads.txtinfoTopology(nodes));
+		jsoninfo = new JsonInfo("127.0.0.1", jsonServer.getPort());
+		txtinfo = new TxtInfo("127.0.0.1", txtServer.getPort());
+		table = new TxtTable();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		jsonServer.close();
+		txtServer.close();
+	}
+
+	/** the default path: parsed straight off the socket */
+	@Benchmark
+	public OlsrDataDump parseCommand() {
+		return jsoninfo.parseCommand("/all");
+	}
+
+	/** the reply as lines of text, without parsing */
+	@Benchmark
+	public String[] request() throws IOException {
+		return jsoninfo.request("/all");
+	}
+
+	/** the old row-wise txtinfo interface */
+	@Benchmark
+	public String[][] txtCommand() {
+		return txtinfo.command("/top");
+	}
+
+	/** txtinfo into a reused table, with the numbers parsed */
+	@Benchmark
+	public float[] txtTable() throws IOException {
+		txtinfo.table("/top", table);
+		return table.floats(4);
+	}
+}
@@ -0,0 +1,98 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding a single report of a scaled mesh with the {@link ObjectMapper},
+ * one datatype at a time, to see which datatypes dominate the cost of a
+ * full reply.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DatabindBenchmark {
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int nodes;
+
+	@Param({ "config", "gateways", "hna", "interfaces", "links", "mid",
+			"neighbors", "routes", "topology" })
+	public String report;
+
+	private ObjectMapper mapper;
+	private byte[] payload;
+	private Class<?> type;
+
+	@Setup
+	public void setUp() throws IOException {
+		mapper = new JsonInfo().getMapper();
+		OlsrDataDump dump = JsonInfo.fillBlanks(Payloads.mesh(nodes));
+		Object value;
+		if (report.equals("config")) {
+			value = dump.config;
+			type = Config.class;
+		} else if (report.equals("gateways")) {
+			value = dump.gateways;
+			type = Gateway[].class;
+		} else if (report.equals("hna")) {
+			value = dump.hna;
+			type = HNA[].class;
+		} else if (report.equals("interfaces")) {
+			value = dump.interfaces;
+			type = Interface[].class;
+		} else if (report.equals("links")) {
+			value = dump.links;
+			type = Link[].class;
+		} else if (report.equals("mid")) {
+			value = dump.mid;
+			type = MID[].class;
+		} else if (report.equals("neighbors")) {
+			value = dump.neighbors;
+			type = Neighbor[].class;
+		} else if (report.equals("routes")) {
+			value = dump.routes;
+			type = Route[].class;
+		} else if (report.equals("topology")) {
+			value = dump.topology;
+			type = Node[].class;
+		} else {
+			throw new IllegalArgumentException("Unknown report: " + report);
+		}
+		payload = mapper.writeValueAsBytes(value);
+	}
+
+	@Benchmark
+	public Object bind() throws IOException {
+		return mapper.readValue(payload, type);
+	}
+}
@@ -0,0 +1,70 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a whole jsoninfo reply from memory, with the streaming readers
+ * that {@link JsonInfo} uses by default, with the readers recycling the
+ * same dump each time, and with the {@link
+ * org.codehaus.jackson.map.ObjectMapper} fallback. A mesh size of 0 is the
+ * bundled <tt>example.json</tt> as it is.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({ "0", "10", "100", "1000", "10000" })
+	public int nodes;
+
+	private byte[] payload;
+	private JsonInfo readers;
+	private JsonInfo databind;
+	private final OlsrDataDump recycled = new OlsrDataDump();
+
+	@Setup
+	public void setUp() throws IOException {
+		payload = Payloads.jsoninfo(nodes);
+		readers = new JsonInfo();
+		readers.setKeepRaw(false);
+		databind = new JsonInfo();
+		databind.setKeepRaw(false);
+		databind.setDatabind(true);
+	}
+
+	@Benchmark
+	public OlsrDataDump readers() throws IOException {
+		return readers.parse(new ByteArrayInputStream(payload));
+	}
+
+	@Benchmark
+	public OlsrDataDump readersRecycled() throws IOException {
+		return readers.parse(new ByteArrayInputStream(payload), recycled);
+	}
+
+	@Benchmark
+	public OlsrDataDump databind() throws IOException {
+		return databind.parse(new ByteArrayInputStream(payload));
+	}
+}
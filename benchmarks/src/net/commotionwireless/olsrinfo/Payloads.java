@@ -0,0 +1,228 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * Benchmark payloads: the bundled <tt>example.json</tt>, and meshes of any
+ * size scaled up from it. The links, neighbors and interfaces of the example
+ * are used as templates, and the mesh is a ring where each node links to its
+ * nearest {@link #DEGREE} nodes, so the topology, routes, HNA and MID reports
+ * all grow with the number of nodes. The same seed always gives the same
+ * payload.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+final class Payloads {
+
+	/** links per node */
+	static final int DEGREE = 6;
+
+	private Payloads() {
+	}
+
+	/**
+	 * @return the bundled example reply, as it is
+	 */
+	static byte[] example() throws IOException {
+		InputStream in = Payloads.class.getResourceAsStream("example.json");
+		if (in == null)
+			throw new IOException("example.json is not on the classpath");
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = in.read(buf)) != -1)
+				out.write(buf, 0, n);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @param nodes the size of the mesh, or 0 for the example as it is
+	 * @return a jsoninfo reply to <tt>/all</tt>
+	 */
+	static byte[] jsoninfo(int nodes) throws IOException {
+		if (nodes == 0)
+			return example();
+		return new JsonInfo().getMapper().writeValueAsBytes(mesh(nodes));
+	}
+
+	/**
+	 * @param nodes the size of the mesh, at least 2
+	 * @return a txtinfo reply to <tt>/top</tt>
+	 */
+	static byte[] txtinfoTopology(int nodes) throws IOException {
+		StringBuilder sb = new StringBuilder("Table: Topology\n"
+				+ "Dest. IP\tLast hop IP\tLQ\tNLQ\tCost\n");
+		for (Node n : mesh(Math.max(2, nodes)).topology)
+			sb.append(n.destinationIP).append('\t').append(n.lastHopIP)
+					.append('\t').append(lq(n.linkQuality)).append('\t')
+					.append(lq(n.neighborLinkQuality)).append('\t')
+					.append(lq(n.tcEdgeCost / 1024f)).append('\n');
+		sb.append('\n');
+		return sb.toString().getBytes("UTF-8");
+	}
+
+	/**
+	 * @param nodes the size of the mesh, at least 2
+	 * @return a snapshot of the mesh as seen from node 0
+	 */
+	static OlsrDataDump mesh(int nodes) throws IOException {
+		OlsrDataDump example = JsonInfo.fillBlanks(new JsonInfo()
+				.parse(new ByteArrayInputStream(example())));
+		Link linkTemplate = first(example.links, new Link());
+		Neighbor neighborTemplate = first(example.neighbors, new Neighbor());
+		Random random = new Random(nodes);
+		int degree = Math.min(DEGREE, nodes - 1);
+
+		OlsrDataDump ret = new OlsrDataDump();
+		ret.systemTime = example.systemTime;
+		ret.timeSinceStartup = 3600000;
+		ret.interfaces = example.interfaces;
+		ret.links = new ArrayList<Link>(degree);
+		ret.neighbors = new ArrayList<Neighbor>(degree);
+		for (int j = 1; j <= degree; j++) {
+			int remote = neighbor(0, j, nodes);
+			Link l = new Link();
+			l.localIP = address(0);
+			l.remoteIP = address(remote);
+			l.validityTime = linkTemplate.validityTime;
+			l.linkQuality = quality(random);
+			l.neighborLinkQuality = quality(random);
+			l.linkCost = cost(l.linkQuality, l.neighborLinkQuality);
+			ret.links.add(l);
+
+			Neighbor n = new Neighbor();
+			n.ipv4Address = address(remote);
+			n.symmetric = true;
+			n.multiPointRelay = j % 2 == 0;
+			n.multiPointRelaySelector = j % 3 == 0;
+			n.willingness = neighborTemplate.willingness;
+			List<String> twoHop = new ArrayList<String>(degree);
+			for (int k = 1; k <= degree; k++) {
+				int t = neighbor(remote, k, nodes);
+				if (t != 0)
+					twoHop.add(address(t));
+			}
+			n.twoHopNeighbors = twoHop;
+			n.twoHopNeighborCount = twoHop.size();
+			ret.neighbors.add(n);
+		}
+
+		ret.topology = new ArrayList<Node>(nodes * degree);
+		for (int i = 0; i < nodes; i++) {
+			for (int j = 1; j <= degree; j++) {
+				Node n = new Node();
+				n.lastHopIP = address(i);
+				n.destinationIP = address(neighbor(i, j, nodes));
+				n.linkQuality = quality(random);
+				n.neighborLinkQuality = quality(random);
+				n.tcEdgeCost = cost(n.linkQuality, n.neighborLinkQuality);
+				n.validityTime = 300000;
+				ret.topology.add(n);
+			}
+		}
+
+		ret.routes = new ArrayList<Route>(nodes - 1);
+		for (int i = 1; i < nodes; i++) {
+			Route r = new Route();
+			r.destination = address(i);
+			r.genmask = 32;
+			r.gateway = address(neighbor(0, 1 + i % degree, nodes));
+			r.metric = 1 + Math.min(i, nodes - i) / (degree / 2 + 1);
+			r.rtpMetricCost = 1024 * r.metric;
+			r.networkInterface = "wlan0";
+			ret.routes.add(r);
+		}
+
+		int announced = Math.max(1, nodes / 20);
+		ret.hna = new ArrayList<HNA>(announced);
+		ret.mid = new ArrayList<MID>(announced);
+		ret.gateways = new ArrayList<Gateway>(announced);
+		for (int i = 0; i < announced; i++) {
+			int owner = (i * 20) % nodes;
+			HNA h = new HNA();
+			h.destination = "172." + (16 + i / 256 % 16) + "." + (i % 256) + ".0";
+			h.genmask = 24;
+			h.gateway = address(owner);
+			h.validityTime = 300000;
+			ret.hna.add(h);
+
+			MID m = new MID();
+			m.ipAddress = address(owner);
+			MIDAlias alias = new MIDAlias();
+			alias.ipAddress = "192.168." + (i / 256 % 256) + "." + (i % 256);
+			alias.validityTime = 300000;
+			List<MIDAlias> aliases = new ArrayList<MIDAlias>(1);
+			aliases.add(alias);
+			m.aliases = aliases;
+			ret.mid.add(m);
+
+			Gateway g = new Gateway();
+			g.ipAddress = address(owner);
+			g.ipv4 = true;
+			g.ipv4Status = "u";
+			g.ipType = "ipv4";
+			g.hopCount = 1 + i % 5;
+			g.tcPathCost = 1024 * g.hopCount;
+			g.uplinkSpeed = 1024;
+			g.downlinkSpeed = 2048;
+			g.externalPrefix = "0.0.0.0/0";
+			ret.gateways.add(g);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the address of the node with this index, 10.0.0.1 for node 0
+	 */
+	static String address(int node) {
+		return Ipv4.toString(0x0a000001 + node);
+	}
+
+	private static int neighbor(int node, int j, int nodes) {
+		// alternate sides of the ring: +1, -1, +2, -2, ...
+		int step = (j + 1) / 2;
+		int offset = j % 2 == 1 ? step : nodes - step;
+		return (node + offset) % nodes;
+	}
+
+	private static float quality(Random random) {
+		// mostly good links, with a tail of poor ones
+		float q = 1f - (float) Math.abs(random.nextGaussian()) * 0.2f;
+		return Math.max(0.05f, Math.min(1f, Math.round(q * 1000) / 1000f));
+	}
+
+	private static int cost(float lq, float nlq) {
+		// ETX, scaled by 1024 as olsrd does
+		return (int) (1024 / (lq * nlq));
+	}
+
+	private static String lq(float f) {
+		return String.format(Locale.US, "%.3f", f);
+	}
+
+	private static <T> T first(Collection<T> c, T otherwise) {
+		return c == null || c.isEmpty() ? otherwise : c.iterator().next();
+	}
+}
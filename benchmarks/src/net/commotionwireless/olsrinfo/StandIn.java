@@ -0,0 +1,65 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * An in-process stand-in for the jsoninfo or txtinfo plugin, for the client
+ * benchmarks: it accepts connections on the loopback interface, reads one
+ * request line, writes a canned reply and closes the connection, as the
+ * plugins do. Connections are served one at a time on a daemon thread.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+final class StandIn implements Runnable {
+
+	private final ServerSocket server;
+	private final byte[] reply;
+
+	StandIn(byte[] reply) throws IOException {
+		this.reply = reply;
+		server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread t = new Thread(this, "StandIn-" + server.getLocalPort());
+		t.setDaemon(true);
+		t.start();
+	}
+
+	int getPort() {
+		return server.getLocalPort();
+	}
+
+	void close() throws IOException {
+		server.close();
+	}
+
+	@Override
+	public void run() {
+		while (!server.isClosed()) {
+			Socket sock = null;
+			try {
+				sock = server.accept();
+				InputStream in = sock.getInputStream();
+				int c;
+				while ((c = in.read()) != -1 && c != '\n')
+					;
+				OutputStream out = sock.getOutputStream();
+				out.write(reply);
+				out.flush();
+			} catch (IOException e) {
+				// closed, or the client went away
+			} finally {
+				if (sock != null) {
+					try {
+						sock.close();
+					} catch (IOException e) {
+						// nothing more to do with it
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns stable, dense node IDs to addresses, so that the addresses in a
+ * snapshot can be stored and compared as small <tt>int</tt>s. IDs count up
+ * from 0 in the order addresses are first seen, and an address keeps its ID
+ * for the life of the dictionary, so IDs can be compared across snapshots
+ * and used directly as array indexes or bit positions.
+ * <p>
+ * IPv4 addresses are parsed into packed <tt>int</tt>s once and looked up in
+ * an open addressing table, without allocating. Anything else, such as IPv6
+ * addresses, is looked up by its string.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see Ipv4
+ * @see IndexedDump
+ */
+public class AddressDictionary {
+
+	/** returned by lookups for addresses that have no ID */
+	public static final int NONE = -1;
+
+	// packed IPv4 address to ID, open addressing, -1 marks a free slot
+	private int[] keys = new int[64];
+	private int[] values = new int[64];
+	private int ipv4Count = 0;
+
+	private final Map<String, Integer> others = new HashMap<String, Integer>();
+
+	// ID to packed IPv4 address, and to the string it was first seen as
+	private int[] addresses = new int[32];
+	private String[] names = new String[32];
+	private boolean[] isIpv4 = new boolean[32];
+	private int size = 0;
+
+	public AddressDictionary() {
+		Arrays.fill(values, NONE);
+	}
+
+	/**
+	 * @return the number of IDs assigned so far
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the ID of an address, assigning the next free ID if it has none.
+	 *
+	 * @param address an address in string form
+	 * @return the ID, or {@link #NONE} if the address is null
+	 */
+	public int id(String address) {
+		if (address == null)
+			return NONE;
+		long packed = Ipv4.parse(address);
+		if (packed >= 0)
+			return id((int) packed, address);
+		Integer id = others.get(address);
+		if (id != null)
+			return id;
+		int ret = add(0, address, false);
+		others.put(address, ret);
+		return ret;
+	}
+
+	/**
+	 * Get the ID of a packed IPv4 address, assigning the next free ID if it
+	 * has none.
+	 */
+	public int id(int address) {
+		return id(address, null);
+	}
+
+	private int id(int address, String name) {
+		int mask = keys.length - 1;
+		int i = hash(address) & mask;
+		while (values[i] != NONE) {
+			if (keys[i] == address)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		int ret = add(address, name, true);
+		keys[i] = address;
+		values[i] = ret;
+		if (++ipv4Count * 2 > keys.length)
+			rehash();
+		return ret;
+	}
+
+	/**
+	 * Get the ID of an address without assigning one.
+	 *
+	 * @return the ID, or {@link #NONE} if the address has none
+	 */
+	public int lookup(String address) {
+		if (address == null)
+			return NONE;
+		long packed = Ipv4.parse(address);
+		if (packed >= 0)
+			return lookup((int) packed);
+		Integer id = others.get(address);
+		return id == null ? NONE : id;
+	}
+
+	/**
+	 * Get the ID of a packed IPv4 address without assigning one.
+	 *
+	 * @return the ID, or {@link #NONE} if the address has none
+	 */
+	public int lookup(int address) {
+		int mask = keys.length - 1;
+		int i = hash(address) & mask;
+		while (values[i] != NONE) {
+			if (keys[i] == address)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return NONE;
+	}
+
+	/**
+	 * @return whether the address with this ID is an IPv4 address
+	 */
+	public boolean isIpv4(int id) {
+		return isIpv4[id];
+	}
+
+	/**
+	 * @return the packed IPv4 address with this ID, or 0 if it is not IPv4
+	 */
+	public int address(int id) {
+		return addresses[id];
+	}
+
+	/**
+	 * @return the address with this ID in string form. The same String
+	 *         instance is returned every time.
+	 */
+	public String toString(int id) {
+		if (names[id] == null)
+			names[id] = Ipv4.toString(addresses[id]);
+		return names[id];
+	}
+
+	private int add(int address, String name, boolean ipv4) {
+		if (size == addresses.length) {
+			int length = size * 2;
+			addresses = Arrays.copyOf(addresses, length);
+			names = Arrays.copyOf(names, length);
+			isIpv4 = Arrays.copyOf(isIpv4, length);
+		}
+		addresses[size] = address;
+		names[size] = name;
+		isIpv4[size] = ipv4;
+		return size++;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		Arrays.fill(values, NONE);
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] == NONE)
+				continue;
+			int i = hash(oldKeys[j]) & mask;
+			while (values[i] != NONE)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	private static int hash(int address) {
+		int h = address * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,46 @@
+package net.commotionwireless.olsrinfo;
+
+/**
+ * A hash key made of two addresses, such as the local and remote IP of a
+ * link, or the destination and last hop of a topology entry. The order of
+ * the addresses matters.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+final class AddressPair {
+	final String first;
+	final String second;
+	private final int hash;
+
+	AddressPair(String first, String second) {
+		this.first = first;
+		this.second = second;
+		int h = first == null ? 0 : first.hashCode();
+		hash = 31 * h + (second == null ? 0 : second.hashCode());
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof AddressPair))
+			return false;
+		AddressPair other = (AddressPair) o;
+		return hash == other.hash && equal(first, other.first)
+				&& equal(second, other.second);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@Override
+	public String toString() {
+		return first + "/" + second;
+	}
+}
@@ -0,0 +1,316 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Plugin;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * An asynchronous front end to a {@link JsonInfo}. Every query runs on an
+ * executor and returns a {@link Future} straight away, so several queries
+ * can run in parallel, and each one has a deadline covering both connecting
+ * to the jsoninfo plugin and reading its reply, so a hung <tt>olsrd</tt>
+ * does not park a thread forever.
+ *
+ * Unlike {@link JsonInfo}, errors are not swallowed: if a query fails or
+ * misses its deadline, {@link Future#get()} throws an
+ * {@link ExecutionException} whose cause is the {@link IOException}, and the
+ * callback, if any, gets {@link Callback#onError(IOException)}.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfo
+ */
+public class AsyncJsonInfo {
+
+	/**
+	 * Notified on the executor thread when a query completes.
+	 *
+	 * @param <T> the type of the query result
+	 */
+	public interface Callback<T> {
+		void onResult(T result);
+
+		void onError(IOException e);
+	}
+
+	private static ExecutorService sharedExecutor = null;
+
+	private final JsonInfo jsoninfo;
+	private final Executor executor;
+	private long timeout = 5000;
+
+	/**
+	 * Run queries against the given {@link JsonInfo} on a shared pool of
+	 * daemon threads.
+	 */
+	public AsyncJsonInfo(JsonInfo jsoninfo) {
+		this(jsoninfo, getSharedExecutor());
+	}
+
+	/**
+	 * Run queries against the given {@link JsonInfo} on the given executor.
+	 */
+	public AsyncJsonInfo(JsonInfo jsoninfo, Executor executor) {
+		this.jsoninfo = jsoninfo;
+		this.executor = executor;
+	}
+
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null)
+			sharedExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "AsyncJsonInfo");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		return sharedExecutor;
+	}
+
+	/**
+	 * @param millis the default deadline for each query, 5000 by default, or
+	 *            0 for none
+	 */
+	public void setTimeout(long millis) {
+		timeout = millis;
+	}
+
+	/**
+	 * Query the jsoninfo plugin with the default deadline.
+	 *
+	 * @see JsonInfo#parseCommand(String)
+	 */
+	public Future<OlsrDataDump> parseCommand(String cmd) {
+		return parseCommand(cmd, timeout, null);
+	}
+
+	/**
+	 * Query the jsoninfo plugin.
+	 *
+	 * @param cmd the command to query jsoninfo with
+	 * @param timeout the deadline in milliseconds, or 0 for none
+	 * @param callback notified when the query completes, or null
+	 * @return the pending result
+	 */
+	public Future<OlsrDataDump> parseCommand(String cmd, long timeout,
+			Callback<OlsrDataDump> callback) {
+		return submit(new Query<OlsrDataDump>(cmd, timeout) {
+			@Override
+			OlsrDataDump extract(OlsrDataDump dump) {
+				return dump;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Query the jsoninfo plugin, parsing the reply into a dump that the
+	 * caller reuses, with the deadline of the {@link JsonInfo}. Cancelling
+	 * the future does not stop the query, so the dump may still be written
+	 * to after that, and should not be reused.
+	 *
+	 * @see JsonInfo#parseInto(String, OlsrDataDump)
+	 */
+	public Future<OlsrDataDump> parseInto(final String cmd,
+			final OlsrDataDump into) {
+		return submit(new Query<OlsrDataDump>(cmd, timeout) {
+			@Override
+			OlsrDataDump run() throws IOException {
+				return jsoninfo.parseInto(cmd, into);
+			}
+
+			@Override
+			OlsrDataDump extract(OlsrDataDump dump) {
+				return dump;
+			}
+		}, null);
+	}
+
+	public Future<OlsrDataDump> all() {
+		return parseCommand("/all");
+	}
+
+	public Future<OlsrDataDump> runtime() {
+		return parseCommand("/runtime");
+	}
+
+	/**
+	 * @see JsonInfo#startup()
+	 */
+	public Future<OlsrDataDump> startup() {
+		return submit(new StartupQuery<OlsrDataDump>(timeout) {
+			@Override
+			OlsrDataDump extract(OlsrDataDump dump) {
+				return dump;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Neighbor>> neighbors() {
+		return submit(new Query<Collection<Neighbor>>("/neighbors", timeout) {
+			@Override
+			Collection<Neighbor> extract(OlsrDataDump dump) {
+				return dump.neighbors;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Link>> links() {
+		return submit(new Query<Collection<Link>>("/links", timeout) {
+			@Override
+			Collection<Link> extract(OlsrDataDump dump) {
+				return dump.links;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Route>> routes() {
+		return submit(new Query<Collection<Route>>("/routes", timeout) {
+			@Override
+			Collection<Route> extract(OlsrDataDump dump) {
+				return dump.routes;
+			}
+		}, null);
+	}
+
+	public Future<Collection<HNA>> hna() {
+		return submit(new Query<Collection<HNA>>("/hna", timeout) {
+			@Override
+			Collection<HNA> extract(OlsrDataDump dump) {
+				return dump.hna;
+			}
+		}, null);
+	}
+
+	public Future<Collection<MID>> mid() {
+		return submit(new Query<Collection<MID>>("/mid", timeout) {
+			@Override
+			Collection<MID> extract(OlsrDataDump dump) {
+				return dump.mid;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Node>> topology() {
+		return submit(new Query<Collection<Node>>("/topology", timeout) {
+			@Override
+			Collection<Node> extract(OlsrDataDump dump) {
+				return dump.topology;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Interface>> interfaces() {
+		return submit(new Query<Collection<Interface>>("/interfaces", timeout) {
+			@Override
+			Collection<Interface> extract(OlsrDataDump dump) {
+				return dump.interfaces;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Gateway>> gateways() {
+		return submit(new Query<Collection<Gateway>>("/gateways", timeout) {
+			@Override
+			Collection<Gateway> extract(OlsrDataDump dump) {
+				return dump.gateways;
+			}
+		}, null);
+	}
+
+	public Future<Config> config() {
+		return submit(new StartupQuery<Config>(timeout) {
+			@Override
+			Config extract(OlsrDataDump dump) {
+				return dump.config;
+			}
+		}, null);
+	}
+
+	public Future<Collection<Plugin>> plugins() {
+		return submit(new StartupQuery<Collection<Plugin>>(timeout) {
+			@Override
+			Collection<Plugin> extract(OlsrDataDump dump) {
+				return dump.plugins;
+			}
+		}, null);
+	}
+
+	/**
+	 * Run a query and pass its result or error to the callback, if any.
+	 */
+	private <T> Future<T> submit(final Query<T> query,
+			final Callback<T> callback) {
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws IOException {
+				T result;
+				try {
+					result = query.extract(query.run());
+				} catch (IOException e) {
+					if (callback != null)
+						callback.onError(e);
+					throw e;
+				}
+				if (callback != null)
+					callback.onResult(result);
+				return result;
+			}
+		});
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * A query of the jsoninfo plugin and what to take from its reply.
+	 */
+	private abstract class Query<T> {
+		final String cmd;
+		final long timeout;
+
+		Query(String cmd, long timeout) {
+			this.cmd = cmd;
+			this.timeout = timeout;
+		}
+
+		OlsrDataDump run() throws IOException {
+			return jsoninfo.query(cmd, timeout);
+		}
+
+		abstract T extract(OlsrDataDump dump);
+	}
+
+	/**
+	 * A query that is served from the startup reports that the
+	 * {@link JsonInfo} caches for each run of <tt>olsrd</tt>.
+	 */
+	private abstract class StartupQuery<T> extends Query<T> {
+		StartupQuery(long timeout) {
+			super("/startup", timeout);
+		}
+
+		@Override
+		OlsrDataDump run() throws IOException {
+			return jsoninfo.queryStartup(timeout);
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * A {@link JsonInfo} that keeps the last parsed result of each command and
+ * serves it for as long as it is younger than the maximum age of the reports
+ * in that command. The maximum age can be set per report, so that e.g.
+ * <tt>"config"</tt> can be kept much longer than <tt>"neighbors"</tt>.
+ *
+ * Optionally, a result that is a little older than its maximum age can still
+ * be served while a fresh one is fetched in the background
+ * (stale-while-revalidate), and served for a while longer if fetching a
+ * fresh one fails (stale-if-error), but never past those bounds. Results are
+ * shared between callers, not copied, so callers must not modify them or
+ * anything in them; only their top-level collections reject changes.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfo
+ */
+public class CachingJsonInfo extends JsonInfo {
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private long defaultMaxAge;
+	private long staleWindow = 0;
+	private long errorWindow = -1;
+	private final Map<String, Long> maxAges = new HashMap<String, Long>();
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	// bumped by each invalidation, so a load that was under way by then is
+	// not cached
+	private long generation = 0;
+	private final SingleFlight<OlsrDataDump> loads = new SingleFlight<OlsrDataDump>();
+	private Executor executor = null;
+
+	private static class Entry {
+		final OlsrDataDump dump;
+		final String[] reports;
+		final long loadedAt;
+		boolean refreshing = false;
+
+		Entry(OlsrDataDump dump, String[] reports, long loadedAt) {
+			this.dump = dump;
+			this.reports = reports;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	/**
+	 * @param maxAge how long to serve a result for, in milliseconds, for any
+	 *            report that has no maximum age of its own
+	 */
+	public CachingJsonInfo(long maxAge) {
+		super();
+		defaultMaxAge = maxAge * NANOS_PER_MILLI;
+	}
+
+	public CachingJsonInfo(String sethost, long maxAge) {
+		super(sethost);
+		defaultMaxAge = maxAge * NANOS_PER_MILLI;
+	}
+
+	public CachingJsonInfo(String sethost, int setport, long maxAge) {
+		super(sethost, setport);
+		defaultMaxAge = maxAge * NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Set how long results containing a given report may be served for. A
+	 * command is served for as long as the shortest maximum age among the
+	 * reports it includes, so e.g. <tt>"/all"</tt> is held to the maximum age
+	 * of <tt>"neighbors"</tt> too.
+	 *
+	 * @param report the report name, e.g. <tt>"neighbors"</tt>
+	 * @param maxAge the maximum age in milliseconds
+	 */
+	public synchronized void setMaxAge(String report, long maxAge) {
+		maxAges.put(report, maxAge * NANOS_PER_MILLI);
+	}
+
+	/**
+	 * Keep serving a result for this long past its maximum age, while a
+	 * fresh one is fetched in the background. Zero, the default, turns this
+	 * off.
+	 *
+	 * @param window how long past the maximum age, in milliseconds
+	 */
+	public synchronized void setStaleWhileRevalidate(long window) {
+		staleWindow = window * NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Keep serving a result for this long past its maximum age when querying
+	 * <tt>olsrd</tt> for a fresh one fails. Past that the failure is thrown,
+	 * so that a dead <tt>olsrd</tt> is not hidden. By default this is the
+	 * stale-while-revalidate window.
+	 *
+	 * @param window how long past the maximum age, in milliseconds
+	 */
+	public synchronized void setStaleIfError(long window) {
+		errorWindow = window * NANOS_PER_MILLI;
+	}
+
+	/**
+	 * Set where background refreshes run. By default they run on a single
+	 * daemon thread owned by this object.
+	 */
+	public synchronized void setExecutor(Executor e) {
+		executor = e;
+	}
+
+	/**
+	 * Drop every cached result that includes the given report, or is
+	 * included in it, e.g. <tt>"all"</tt> drops everything.
+	 *
+	 * @param report the report name, e.g. <tt>"links"</tt>
+	 */
+	public synchronized void invalidate(String report) {
+		generation++;
+		Iterator<Entry> i = entries.values().iterator();
+		while (i.hasNext()) {
+			for (String r : i.next().reports) {
+				if (covers(r, report) || covers(report, r)) {
+					i.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached result, including the startup reports.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+		invalidateStartup();
+	}
+
+	/**
+	 * Get the cached result for a command without going to <tt>olsrd</tt>.
+	 *
+	 * @param cmd the command, as passed to {@link #parseCommand(String)}
+	 * @return the cached result if it is fresh, or within the
+	 *         stale-while-revalidate window, otherwise null
+	 */
+	public OlsrDataDump peek(String cmd) {
+		long now = System.nanoTime();
+		synchronized (this) {
+			Entry e = entries.get(cmd);
+			if (e == null)
+				return null;
+			long age = now - e.loadedAt;
+			long maxAge = maxAge(e.reports);
+			if (age <= maxAge)
+				return e.dump;
+			if (age <= maxAge + staleWindow) {
+				refreshInBackground(cmd, e);
+				return e.dump;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Return the cached result for the command if it is fresh enough,
+	 * otherwise query the jsoninfo plugin. Concurrent misses for the same
+	 * command share a single query. If the query fails, the last result is
+	 * returned if it is still within the stale-if-error window.
+	 *
+	 * @see JsonInfo#query(String, long)
+	 */
+	@Override
+	OlsrDataDump query(String cmd, long timeout) throws IOException {
+		OlsrDataDump ret = peek(cmd);
+		if (ret != null)
+			return ret;
+		try {
+			return load(cmd, timeout);
+		} catch (IOException e) {
+			// don't cache failures, but keep serving what we had for a while
+			long now = System.nanoTime();
+			synchronized (this) {
+				Entry entry = entries.get(cmd);
+				if (entry != null
+						&& now - entry.loadedAt <= maxAge(entry.reports)
+								+ (errorWindow < 0 ? staleWindow : errorWindow))
+					return entry.dump;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Query the jsoninfo plugin as {@link JsonInfo#parseInto} does, always
+	 * going to <tt>olsrd</tt>, and cache a copy of the result, parsed afresh
+	 * from the same reply, so that e.g. polling keeps the cache fresh for
+	 * other callers without handing them the recycled dump.
+	 *
+	 * @see JsonInfo#parseInto(String, OlsrDataDump)
+	 */
+	@Override
+	public OlsrDataDump parseInto(String cmd, OlsrDataDump into)
+			throws IOException {
+		long started;
+		synchronized (this) {
+			started = generation;
+		}
+		ByteArrayOutputStream reply = new ByteArrayOutputStream(8192);
+		parseInto(cmd, into, reply);
+		OlsrDataDump copy;
+		try {
+			copy = unmodifiable(fillBlanks(parse(new ByteArrayInputStream(
+					reply.toByteArray()))));
+		} catch (IOException e) {
+			// it parsed once, so this should not happen; just don't cache it
+			return into;
+		}
+		copy.setRaw(into.toString());
+		synchronized (this) {
+			if (generation == started)
+				entries.put(cmd, new Entry(copy, reports(cmd),
+						System.nanoTime()));
+		}
+		return into;
+	}
+
+	private OlsrDataDump load(final String cmd, final long timeout)
+			throws IOException {
+		return loads.run(cmd, new SingleFlight.Loader<OlsrDataDump>() {
+			@Override
+			public OlsrDataDump load() throws IOException {
+				long started;
+				synchronized (CachingJsonInfo.this) {
+					started = generation;
+				}
+				OlsrDataDump dump = unmodifiable(fillBlanks(fetch(cmd, timeout)));
+				synchronized (CachingJsonInfo.this) {
+					// it may be from before e.g. olsrd was stopped
+					if (generation == started)
+						entries.put(cmd, new Entry(dump, reports(cmd),
+								System.nanoTime()));
+				}
+				return dump;
+			}
+		});
+	}
+
+	private void refreshInBackground(final String cmd, final Entry e) {
+		if (e.refreshing)
+			return;
+		e.refreshing = true;
+		if (executor == null)
+			executor = newRefreshExecutor();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					load(cmd, timeout);
+				} catch (IOException ex) {
+					// the next request will try again
+				} finally {
+					synchronized (CachingJsonInfo.this) {
+						e.refreshing = false;
+					}
+				}
+			}
+		});
+	}
+
+	private static ExecutorService newRefreshExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CachingJsonInfo-refresh");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	private long maxAge(String[] reports) {
+		long ret = Long.MAX_VALUE;
+		for (String r : reports) {
+			Long age = maxAges.get(r);
+			ret = Math.min(ret, age == null ? defaultMaxAge : age);
+		}
+		// and the reports that each one includes, e.g. "all" or "runtime"
+		for (Map.Entry<String, Long> e : maxAges.entrySet())
+			for (String r : reports)
+				if (covers(r, e.getKey()))
+					ret = Math.min(ret, e.getValue());
+		return ret == Long.MAX_VALUE ? defaultMaxAge : ret;
+	}
+
+	private static String[] reports(String cmd) {
+		int count = 0;
+		for (String s : cmd.split("/"))
+			if (!s.equals(""))
+				count++;
+		String[] ret = new String[count];
+		int i = 0;
+		for (String s : cmd.split("/"))
+			if (!s.equals(""))
+				ret[i++] = s;
+		return ret;
+	}
+
+	/**
+	 * Whether the reply to a report includes another report, e.g.
+	 * <tt>"all"</tt> includes <tt>"links"</tt>.
+	 */
+	static boolean covers(String report, String other) {
+		if (report.equals(other) || report.equals("all"))
+			return true;
+		if (report.equals("startup"))
+			return other.equals("config") || other.equals("plugins");
+		if (report.equals("runtime"))
+			return !other.equals("config") && !other.equals("plugins")
+					&& !other.equals("olsrd.conf");
+		return false;
+	}
+}
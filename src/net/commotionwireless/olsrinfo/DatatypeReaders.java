@@ -0,0 +1,1893 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.commotionwireless.olsrinfo.datatypes.AddressNetmask;
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.LinkQualityMultiplier;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Plugin;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Hand-written streaming readers for every class in
+ * {@link net.commotionwireless.olsrinfo.datatypes}, built on Jackson's
+ * {@link JsonParser} alone. Unlike the {@link ObjectMapper}, they use no
+ * reflection, so there is nothing to warm up and far less to allocate,
+ * which matters most on Dalvik.
+ * <p>
+ * Each datatype has a table mapping its JSON field names to the order of
+ * its Java fields; the readers must be kept in step with the datatypes when
+ * fields are added. Unknown fields are skipped. Numbers are coerced the way
+ * the {@link ObjectMapper} would, except that integers too large for an
+ * <tt>int</tt> keep their low 32 bits rather than failing, which preserves
+ * kernel counters that are reported as unsigned.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfo#setDatabind(boolean)
+ */
+final class DatatypeReaders {
+
+	private DatatypeReaders() {
+	}
+
+	private static Map<String, Integer> fields(String... names) {
+		Map<String, Integer> ret = new HashMap<String, Integer>(names.length * 2);
+		for (int i = 0; i < names.length; i++)
+			ret.put(names[i], i);
+		return ret;
+	}
+
+	/**
+	 * Read a complete jsoninfo reply, starting from the parser's current
+	 * token, which must be the start of the top-level object. Both the flat
+	 * reply format and the older one that wraps each report in a
+	 * <tt>"data"</tt> array are understood.
+	 */
+	static OlsrDataDump readOlsrDataDump(JsonParser p, OlsrDataDump v)
+			throws IOException {
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.getCurrentName();
+			JsonToken t = p.nextToken();
+			if (t == JsonToken.VALUE_NULL)
+				continue;
+			if (field.equals("data") && t == JsonToken.START_ARRAY) {
+				while (p.nextToken() == JsonToken.START_OBJECT)
+					readOlsrDataDump(p, v);
+			} else if (field.equals("config")) {
+				if (t == JsonToken.START_OBJECT)
+					v.config = readConfig(p, new Config());
+				else
+					p.skipChildren();
+			} else if (field.equals("gateways"))
+				v.gateways = readGateways(p);
+			else if (field.equals("hna"))
+				v.hna = readHNAs(p);
+			else if (field.equals("interfaces"))
+				v.interfaces = readInterfaces(p);
+			else if (field.equals("links"))
+				v.links = readLinks(p);
+			else if (field.equals("mid"))
+				v.mid = readMIDs(p);
+			else if (field.equals("neighbors"))
+				v.neighbors = readNeighbors(p);
+			else if (field.equals("topology"))
+				v.topology = readNodes(p);
+			else if (field.equals("plugins"))
+				v.plugins = readPlugins(p);
+			else if (field.equals("routes"))
+				v.routes = readRoutes(p);
+			else if (field.equals("systemTime"))
+				v.systemTime = readInt(p);
+			else if (field.equals("timeSinceStartup"))
+				v.timeSinceStartup = readInt(p);
+			else if (field.equals("uuid"))
+				v.uuid = readString(p);
+			else
+				p.skipChildren();
+		}
+		return v;
+	}
+
+	/**
+	 * Read a complete jsoninfo reply into a dump that is being recycled,
+	 * like {@link #readOlsrDataDump(JsonParser, OlsrDataDump)}, except that
+	 * the reports and the elements in them are overwritten rather than
+	 * allocated again wherever possible. Every report ends up non-null, and
+	 * those missing from the reply end up empty, with a blank config. Unlike
+	 * the other readers, this starts before the top-level object, so that an
+	 * empty reply empties the dump too.
+	 */
+	static OlsrDataDump readOlsrDataDumpInto(JsonParser p, OlsrDataDump v)
+			throws IOException {
+		Config config = v.config != null ? v.config : new Config();
+		v.config = null;
+		v.gateways = recycled(v.gateways);
+		v.hna = recycled(v.hna);
+		v.interfaces = recycled(v.interfaces);
+		v.links = recycled(v.links);
+		v.mid = recycled(v.mid);
+		v.neighbors = recycled(v.neighbors);
+		v.topology = recycled(v.topology);
+		v.plugins = recycled(v.plugins);
+		v.routes = recycled(v.routes);
+		v.systemTime = 0;
+		v.timeSinceStartup = 0;
+		v.uuid = "";
+		if (p.nextToken() == JsonToken.START_OBJECT)
+			readRecycledFields(p, v, config);
+		if (v.config == null)
+			v.config = resetConfig(config);
+		return v;
+	}
+
+	private static void readRecycledFields(JsonParser p, OlsrDataDump v,
+			Config config) throws IOException {
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.getCurrentName();
+			JsonToken t = p.nextToken();
+			if (t == JsonToken.VALUE_NULL)
+				continue;
+			if (field.equals("data") && t == JsonToken.START_ARRAY) {
+				while (p.nextToken() == JsonToken.START_OBJECT)
+					readRecycledFields(p, v, config);
+			} else if (field.equals("config")) {
+				if (t == JsonToken.START_OBJECT)
+					v.config = readConfig(p, config);
+				else
+					p.skipChildren();
+			} else if (field.equals("gateways"))
+				readGateways(p, (RecyclingList<Gateway>) v.gateways);
+			else if (field.equals("hna"))
+				readHNAs(p, (RecyclingList<HNA>) v.hna);
+			else if (field.equals("interfaces"))
+				readInterfaces(p, (RecyclingList<Interface>) v.interfaces);
+			else if (field.equals("links"))
+				readLinks(p, (RecyclingList<Link>) v.links);
+			else if (field.equals("mid"))
+				readMIDs(p, (RecyclingList<MID>) v.mid);
+			else if (field.equals("neighbors"))
+				readNeighbors(p, (RecyclingList<Neighbor>) v.neighbors);
+			else if (field.equals("topology"))
+				readNodes(p, (RecyclingList<Node>) v.topology);
+			else if (field.equals("plugins"))
+				readPlugins(p, (RecyclingList<Plugin>) v.plugins);
+			else if (field.equals("routes"))
+				readRoutes(p, (RecyclingList<Route>) v.routes);
+			else if (field.equals("systemTime"))
+				v.systemTime = readInt(p);
+			else if (field.equals("timeSinceStartup"))
+				v.timeSinceStartup = readInt(p);
+			else if (field.equals("uuid"))
+				v.uuid = readString(p);
+			else
+				p.skipChildren();
+		}
+	}
+
+	/**
+	 * @return the collection, emptied, if it is one that can be recycled,
+	 *         otherwise a new one to replace it
+	 */
+	private static <T> RecyclingList<T> recycled(Collection<T> c) {
+		if (c instanceof RecyclingList) {
+			RecyclingList<T> ret = (RecyclingList<T>) c;
+			ret.clear();
+			return ret;
+		}
+		return new RecyclingList<T>();
+	}
+
+	private static final Map<String, Integer> ADDRESS_NETMASK_FIELDS = fields(
+			"ipAddress", "netmask");
+
+	/**
+	 * Read an {@link AddressNetmask} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static AddressNetmask readAddressNetmask(JsonParser p, AddressNetmask v)
+			throws IOException {
+		v.ipAddress = null;
+		v.netmask = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = ADDRESS_NETMASK_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.ipAddress = readString(p);
+				break;
+			case 1:
+				v.netmask = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> CONFIG_FIELDS = fields(
+			"olsrPort", "debugLevel", "noFork", "hostEmulation", "ipVersion",
+			"allowNoInterfaces", "typeOfService", "rtProto", "rtTable",
+			"rtTableDefault", "rtTableTunnel", "rtTablePriority",
+			"rtTableTunnelPriority", "rtTableDefauiltOlsrPriority",
+			"rtTableDefaultPriority", "willingness", "willingnessAuto",
+			"brokenLinkCost", "brokenRouteCost", "fibMetrics",
+			"defaultIpv6Multicast", "defaultIpv4Broadcast", "defaultInterfaceMode",
+			"defaultHelloEmissionInterval", "defaultHelloValidityTime",
+			"defaultTcEmissionInterval", "defaultTcValidityTime",
+			"defaultMidEmissionInterval", "defaultMidValidityTime",
+			"defaultHnaEmissionInterval", "defaultHnaValidityTime",
+			"defaultAutoDetectChanges", "defaultLinkQualityMultipliers", "hna",
+			"ipcConnections", "totalIpcConnectionsAllowed", "ipcAllowedAddresses",
+			"pollRate", "nicChangePollInterval", "clearScreen", "tcRedundancy",
+			"mprCoverage", "linkQualityLevel", "linkQualityFisheye",
+			"linkQualityAging", "linkQualityAlgorithm", "minTcValidTime",
+			"setIpForward", "lockFile", "useNiit", "smartGateway", "mainIpAddress",
+			"unicastSourceIpAddress", "useSourceIpRoutes", "maxPrefixLength",
+			"ipSize", "deleteInternetGatewaysAtStartup", "willingnessUpdateInterval",
+			"maxSendMessageJitter", "exitValue", "maxTcValidTime",
+			"niit4to6InterfaceIndex", "niit6to4InterfaceIndex", "hasIpv4Gateway",
+			"hasIpv6Gateway", "ioctlSocket", "routeNetlinkSocket",
+			"routeMonitorSocket", "linkQualityNatThreshold", "olsrdVersion",
+			"olsrdBuildDate", "olsrdBuildHost", "os", "startTime");
+
+	/**
+	 * Read a {@link Config} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Config readConfig(JsonParser p, Config v) throws IOException {
+		resetConfig(v);
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = CONFIG_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.olsrPort = readInt(p);
+				break;
+			case 1:
+				v.debugLevel = readInt(p);
+				break;
+			case 2:
+				v.noFork = readBoolean(p);
+				break;
+			case 3:
+				v.hostEmulation = readBoolean(p);
+				break;
+			case 4:
+				v.ipVersion = readInt(p);
+				break;
+			case 5:
+				v.allowNoInterfaces = readBoolean(p);
+				break;
+			case 6:
+				v.typeOfService = readInt(p);
+				break;
+			case 7:
+				v.rtProto = readInt(p);
+				break;
+			case 8:
+				v.rtTable = readInt(p);
+				break;
+			case 9:
+				v.rtTableDefault = readInt(p);
+				break;
+			case 10:
+				v.rtTableTunnel = readInt(p);
+				break;
+			case 11:
+				v.rtTablePriority = readInt(p);
+				break;
+			case 12:
+				v.rtTableTunnelPriority = readInt(p);
+				break;
+			case 13:
+				v.rtTableDefauiltOlsrPriority = readInt(p);
+				break;
+			case 14:
+				v.rtTableDefaultPriority = readInt(p);
+				break;
+			case 15:
+				v.willingness = readInt(p);
+				break;
+			case 16:
+				v.willingnessAuto = readBoolean(p);
+				break;
+			case 17:
+				v.brokenLinkCost = readLong(p);
+				break;
+			case 18:
+				v.brokenRouteCost = readLong(p);
+				break;
+			case 19:
+				v.fibMetrics = readString(p);
+				break;
+			case 20:
+				v.defaultIpv6Multicast = readString(p);
+				break;
+			case 21:
+				v.defaultIpv4Broadcast = readString(p);
+				break;
+			case 22:
+				v.defaultInterfaceMode = readString(p);
+				break;
+			case 23:
+				v.defaultHelloEmissionInterval = readFloat(p);
+				break;
+			case 24:
+				v.defaultHelloValidityTime = readFloat(p);
+				break;
+			case 25:
+				v.defaultTcEmissionInterval = readFloat(p);
+				break;
+			case 26:
+				v.defaultTcValidityTime = readFloat(p);
+				break;
+			case 27:
+				v.defaultMidEmissionInterval = readFloat(p);
+				break;
+			case 28:
+				v.defaultMidValidityTime = readFloat(p);
+				break;
+			case 29:
+				v.defaultHnaEmissionInterval = readFloat(p);
+				break;
+			case 30:
+				v.defaultHnaValidityTime = readFloat(p);
+				break;
+			case 31:
+				v.defaultAutoDetectChanges = readBoolean(p);
+				break;
+			case 32:
+				v.defaultLinkQualityMultipliers = readLinkQualityMultipliers(p);
+				break;
+			case 33:
+				v.hna = readHNAs(p);
+				break;
+			case 34:
+				v.ipcConnections = readInt(p);
+				break;
+			case 35:
+				v.totalIpcConnectionsAllowed = readInt(p);
+				break;
+			case 36:
+				v.ipcAllowedAddresses = readAddressNetmasks(p);
+				break;
+			case 37:
+				v.pollRate = readInt(p);
+				break;
+			case 38:
+				v.nicChangePollInterval = readInt(p);
+				break;
+			case 39:
+				v.clearScreen = readBoolean(p);
+				break;
+			case 40:
+				v.tcRedundancy = readInt(p);
+				break;
+			case 41:
+				v.mprCoverage = readInt(p);
+				break;
+			case 42:
+				v.linkQualityLevel = readInt(p);
+				break;
+			case 43:
+				v.linkQualityFisheye = readBoolean(p);
+				break;
+			case 44:
+				v.linkQualityAging = readFloat(p);
+				break;
+			case 45:
+				v.linkQualityAlgorithm = readString(p);
+				break;
+			case 46:
+				v.minTcValidTime = readInt(p);
+				break;
+			case 47:
+				v.setIpForward = readBoolean(p);
+				break;
+			case 48:
+				v.lockFile = readString(p);
+				break;
+			case 49:
+				v.useNiit = readBoolean(p);
+				break;
+			case 50:
+				v.smartGateway = readBoolean(p);
+				break;
+			case 51:
+				v.mainIpAddress = readString(p);
+				break;
+			case 52:
+				v.unicastSourceIpAddress = readString(p);
+				break;
+			case 53:
+				v.useSourceIpRoutes = readBoolean(p);
+				break;
+			case 54:
+				v.maxPrefixLength = readInt(p);
+				break;
+			case 55:
+				v.ipSize = readInt(p);
+				break;
+			case 56:
+				v.deleteInternetGatewaysAtStartup = readBoolean(p);
+				break;
+			case 57:
+				v.willingnessUpdateInterval = readInt(p);
+				break;
+			case 58:
+				v.maxSendMessageJitter = readFloat(p);
+				break;
+			case 59:
+				v.exitValue = readInt(p);
+				break;
+			case 60:
+				v.maxTcValidTime = readInt(p);
+				break;
+			case 61:
+				v.niit4to6InterfaceIndex = readInt(p);
+				break;
+			case 62:
+				v.niit6to4InterfaceIndex = readInt(p);
+				break;
+			case 63:
+				v.hasIpv4Gateway = readBoolean(p);
+				break;
+			case 64:
+				v.hasIpv6Gateway = readBoolean(p);
+				break;
+			case 65:
+				v.ioctlSocket = readInt(p);
+				break;
+			case 66:
+				v.routeNetlinkSocket = readInt(p);
+				break;
+			case 67:
+				v.routeMonitorSocket = readInt(p);
+				break;
+			case 68:
+				v.linkQualityNatThreshold = readFloat(p);
+				break;
+			case 69:
+				v.olsrdVersion = readString(p);
+				break;
+			case 70:
+				v.olsrdBuildDate = readString(p);
+				break;
+			case 71:
+				v.olsrdBuildHost = readString(p);
+				break;
+			case 72:
+				v.os = readString(p);
+				break;
+			case 73:
+				v.startTime = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Reset every field of a {@link Config} to its default, as
+	 * {@link #readConfig(JsonParser, Config)} does before reading.
+	 */
+	static Config resetConfig(Config v) {
+		v.olsrPort = 0;
+		v.debugLevel = 0;
+		v.noFork = false;
+		v.hostEmulation = false;
+		v.ipVersion = 0;
+		v.allowNoInterfaces = false;
+		v.typeOfService = 0;
+		v.rtProto = 0;
+		v.rtTable = 0;
+		v.rtTableDefault = 0;
+		v.rtTableTunnel = 0;
+		v.rtTablePriority = 0;
+		v.rtTableTunnelPriority = 0;
+		v.rtTableDefauiltOlsrPriority = 0;
+		v.rtTableDefaultPriority = 0;
+		v.willingness = 0;
+		v.willingnessAuto = false;
+		v.brokenLinkCost = 0;
+		v.brokenRouteCost = 0;
+		v.fibMetrics = null;
+		v.defaultIpv6Multicast = null;
+		v.defaultIpv4Broadcast = null;
+		v.defaultInterfaceMode = null;
+		v.defaultHelloEmissionInterval = 0;
+		v.defaultHelloValidityTime = 0;
+		v.defaultTcEmissionInterval = 0;
+		v.defaultTcValidityTime = 0;
+		v.defaultMidEmissionInterval = 0;
+		v.defaultMidValidityTime = 0;
+		v.defaultHnaEmissionInterval = 0;
+		v.defaultHnaValidityTime = 0;
+		v.defaultAutoDetectChanges = false;
+		v.defaultLinkQualityMultipliers = null;
+		v.hna = null;
+		v.ipcConnections = 0;
+		v.totalIpcConnectionsAllowed = 0;
+		v.ipcAllowedAddresses = null;
+		v.pollRate = 0;
+		v.nicChangePollInterval = 0;
+		v.clearScreen = false;
+		v.tcRedundancy = 0;
+		v.mprCoverage = 0;
+		v.linkQualityLevel = 0;
+		v.linkQualityFisheye = false;
+		v.linkQualityAging = 0;
+		v.linkQualityAlgorithm = null;
+		v.minTcValidTime = 0;
+		v.setIpForward = false;
+		v.lockFile = null;
+		v.useNiit = false;
+		v.smartGateway = false;
+		v.mainIpAddress = null;
+		v.unicastSourceIpAddress = null;
+		v.useSourceIpRoutes = false;
+		v.maxPrefixLength = 0;
+		v.ipSize = 0;
+		v.deleteInternetGatewaysAtStartup = false;
+		v.willingnessUpdateInterval = 0;
+		v.maxSendMessageJitter = 0;
+		v.exitValue = 0;
+		v.maxTcValidTime = 0;
+		v.niit4to6InterfaceIndex = 0;
+		v.niit6to4InterfaceIndex = 0;
+		v.hasIpv4Gateway = false;
+		v.hasIpv6Gateway = false;
+		v.ioctlSocket = 0;
+		v.routeNetlinkSocket = 0;
+		v.routeMonitorSocket = 0;
+		v.linkQualityNatThreshold = 0;
+		v.olsrdVersion = null;
+		v.olsrdBuildDate = null;
+		v.olsrdBuildHost = null;
+		v.os = null;
+		v.startTime = 0;
+		return v;
+	}
+
+	private static final Map<String, Integer> GATEWAY_FIELDS = fields(
+			"ipv4Status", "ipv6Status", "ipType", "ipv4", "ipv4Nat", "ipv6",
+			"ipAddress", "tcPathCost", "hopCount", "uplinkSpeed", "downlinkSpeed",
+			"externalPrefix");
+
+	/**
+	 * Read a {@link Gateway} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Gateway readGateway(JsonParser p, Gateway v) throws IOException {
+		v.ipv4Status = null;
+		v.ipv6Status = null;
+		v.ipType = null;
+		v.ipv4 = false;
+		v.ipv4Nat = false;
+		v.ipv6 = false;
+		v.ipAddress = null;
+		v.tcPathCost = 0;
+		v.hopCount = 0;
+		v.uplinkSpeed = 0;
+		v.downlinkSpeed = 0;
+		v.externalPrefix = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = GATEWAY_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.ipv4Status = readString(p);
+				break;
+			case 1:
+				v.ipv6Status = readString(p);
+				break;
+			case 2:
+				v.ipType = readString(p);
+				break;
+			case 3:
+				v.ipv4 = readBoolean(p);
+				break;
+			case 4:
+				v.ipv4Nat = readBoolean(p);
+				break;
+			case 5:
+				v.ipv6 = readBoolean(p);
+				break;
+			case 6:
+				v.ipAddress = readString(p);
+				break;
+			case 7:
+				v.tcPathCost = readInt(p);
+				break;
+			case 8:
+				v.hopCount = readInt(p);
+				break;
+			case 9:
+				v.uplinkSpeed = readInt(p);
+				break;
+			case 10:
+				v.downlinkSpeed = readInt(p);
+				break;
+			case 11:
+				v.externalPrefix = readString(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> HNA_FIELDS = fields(
+			"destination", "genmask", "gateway", "validityTime");
+
+	/**
+	 * Read a {@link HNA} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static HNA readHNA(JsonParser p, HNA v) throws IOException {
+		v.destination = null;
+		v.genmask = 0;
+		v.gateway = null;
+		v.validityTime = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = HNA_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.destination = readString(p);
+				break;
+			case 1:
+				v.genmask = readInt(p);
+				break;
+			case 2:
+				v.gateway = readString(p);
+				break;
+			case 3:
+				v.validityTime = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> INTERFACE_FIELDS = fields(
+			"name", "nameFromKernel", "interfaceMode", "emulatedHostClientInterface",
+			"sendTcImmediately", "fishEyeTtlIndex", "olsrForwardingTimeout",
+			"olsrMessageSequenceNumber", "linkQualityMultipliers",
+			"olsrInterfaceMetric", "helloEmissionInterval", "helloValidityTime",
+			"tcValidityTime", "midValidityTime", "hnaValidityTime", "state", "mtu",
+			"olsrMTU", "wireless", "ipv4Address", "netmask", "broadcast",
+			"ipv6Address", "multicast", "icmpRedirect", "spoofFilter",
+			"kernelModule", "addressLength", "carrier", "dormant", "features",
+			"flags", "linkMode", "macAddress", "ethernetMTU", "operationalState",
+			"txQueueLength", "collisions", "multicastPackets", "rxBytes",
+			"rxCompressed", "rxCrcErrors", "rxDropped", "rxErrors", "rxFifoErrors",
+			"rxFrameErrors", "rxLengthErrors", "rxMissedErrors", "rxOverErrors",
+			"rxPackets", "txAbortedErrors", "txBytes", "txCarrierErrors",
+			"txCompressed", "txDropped", "txErrors", "txFifoErrors",
+			"txHeartbeatErrors", "txPackets", "txWindowErrors", "beaconing",
+			"encryptionKey", "fragmentationThreshold", "signalLevel", "linkQuality",
+			"misc", "noiseLevel", "nwid", "wirelessRetries", "wirelessStatus");
+
+	/**
+	 * Read an {@link Interface} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Interface readInterface(JsonParser p, Interface v)
+			throws IOException {
+		v.name = null;
+		v.nameFromKernel = null;
+		v.interfaceMode = 0;
+		v.emulatedHostClientInterface = false;
+		v.sendTcImmediately = false;
+		v.fishEyeTtlIndex = 0;
+		v.olsrForwardingTimeout = 0;
+		v.olsrMessageSequenceNumber = 0;
+		v.linkQualityMultipliers = null;
+		v.olsrInterfaceMetric = 0;
+		v.helloEmissionInterval = 0;
+		v.helloValidityTime = 0;
+		v.tcValidityTime = 0;
+		v.midValidityTime = 0;
+		v.hnaValidityTime = 0;
+		v.state = null;
+		v.mtu = 0;
+		v.olsrMTU = 0;
+		v.wireless = false;
+		v.ipv4Address = null;
+		v.netmask = null;
+		v.broadcast = null;
+		v.ipv6Address = null;
+		v.multicast = null;
+		v.icmpRedirect = false;
+		v.spoofFilter = false;
+		v.kernelModule = null;
+		v.addressLength = 0;
+		v.carrier = 0;
+		v.dormant = 0;
+		v.features = null;
+		v.flags = null;
+		v.linkMode = 0;
+		v.macAddress = null;
+		v.ethernetMTU = 0;
+		v.operationalState = null;
+		v.txQueueLength = 0;
+		v.collisions = 0;
+		v.multicastPackets = 0;
+		v.rxBytes = 0;
+		v.rxCompressed = 0;
+		v.rxCrcErrors = 0;
+		v.rxDropped = 0;
+		v.rxErrors = 0;
+		v.rxFifoErrors = 0;
+		v.rxFrameErrors = 0;
+		v.rxLengthErrors = 0;
+		v.rxMissedErrors = 0;
+		v.rxOverErrors = 0;
+		v.rxPackets = 0;
+		v.txAbortedErrors = 0;
+		v.txBytes = 0;
+		v.txCarrierErrors = 0;
+		v.txCompressed = 0;
+		v.txDropped = 0;
+		v.txErrors = 0;
+		v.txFifoErrors = 0;
+		v.txHeartbeatErrors = 0;
+		v.txPackets = 0;
+		v.txWindowErrors = 0;
+		v.beaconing = 0;
+		v.encryptionKey = 0;
+		v.fragmentationThreshold = 0;
+		v.signalLevel = 0;
+		v.linkQuality = 0;
+		v.misc = 0;
+		v.noiseLevel = 0;
+		v.nwid = 0;
+		v.wirelessRetries = 0;
+		v.wirelessStatus = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = INTERFACE_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.name = readString(p);
+				break;
+			case 1:
+				v.nameFromKernel = readString(p);
+				break;
+			case 2:
+				v.interfaceMode = readInt(p);
+				break;
+			case 3:
+				v.emulatedHostClientInterface = readBoolean(p);
+				break;
+			case 4:
+				v.sendTcImmediately = readBoolean(p);
+				break;
+			case 5:
+				v.fishEyeTtlIndex = readInt(p);
+				break;
+			case 6:
+				v.olsrForwardingTimeout = readInt(p);
+				break;
+			case 7:
+				v.olsrMessageSequenceNumber = readInt(p);
+				break;
+			case 8:
+				v.linkQualityMultipliers = readLinkQualityMultipliers(p);
+				break;
+			case 9:
+				v.olsrInterfaceMetric = readInt(p);
+				break;
+			case 10:
+				v.helloEmissionInterval = readInt(p);
+				break;
+			case 11:
+				v.helloValidityTime = readInt(p);
+				break;
+			case 12:
+				v.tcValidityTime = readInt(p);
+				break;
+			case 13:
+				v.midValidityTime = readInt(p);
+				break;
+			case 14:
+				v.hnaValidityTime = readInt(p);
+				break;
+			case 15:
+				v.state = readString(p);
+				break;
+			case 16:
+				v.mtu = readInt(p);
+				break;
+			case 17:
+				v.olsrMTU = readInt(p);
+				break;
+			case 18:
+				v.wireless = readBoolean(p);
+				break;
+			case 19:
+				v.ipv4Address = readString(p);
+				break;
+			case 20:
+				v.netmask = readString(p);
+				break;
+			case 21:
+				v.broadcast = readString(p);
+				break;
+			case 22:
+				v.ipv6Address = readString(p);
+				break;
+			case 23:
+				v.multicast = readString(p);
+				break;
+			case 24:
+				v.icmpRedirect = readBoolean(p);
+				break;
+			case 25:
+				v.spoofFilter = readBoolean(p);
+				break;
+			case 26:
+				v.kernelModule = readString(p);
+				break;
+			case 27:
+				v.addressLength = readInt(p);
+				break;
+			case 28:
+				v.carrier = readInt(p);
+				break;
+			case 29:
+				v.dormant = readInt(p);
+				break;
+			case 30:
+				v.features = readString(p);
+				break;
+			case 31:
+				v.flags = readString(p);
+				break;
+			case 32:
+				v.linkMode = readInt(p);
+				break;
+			case 33:
+				v.macAddress = readString(p);
+				break;
+			case 34:
+				v.ethernetMTU = readInt(p);
+				break;
+			case 35:
+				v.operationalState = readString(p);
+				break;
+			case 36:
+				v.txQueueLength = readInt(p);
+				break;
+			case 37:
+				v.collisions = readInt(p);
+				break;
+			case 38:
+				v.multicastPackets = readInt(p);
+				break;
+			case 39:
+				v.rxBytes = readInt(p);
+				break;
+			case 40:
+				v.rxCompressed = readInt(p);
+				break;
+			case 41:
+				v.rxCrcErrors = readInt(p);
+				break;
+			case 42:
+				v.rxDropped = readInt(p);
+				break;
+			case 43:
+				v.rxErrors = readInt(p);
+				break;
+			case 44:
+				v.rxFifoErrors = readInt(p);
+				break;
+			case 45:
+				v.rxFrameErrors = readInt(p);
+				break;
+			case 46:
+				v.rxLengthErrors = readInt(p);
+				break;
+			case 47:
+				v.rxMissedErrors = readInt(p);
+				break;
+			case 48:
+				v.rxOverErrors = readInt(p);
+				break;
+			case 49:
+				v.rxPackets = readInt(p);
+				break;
+			case 50:
+				v.txAbortedErrors = readInt(p);
+				break;
+			case 51:
+				v.txBytes = readInt(p);
+				break;
+			case 52:
+				v.txCarrierErrors = readInt(p);
+				break;
+			case 53:
+				v.txCompressed = readInt(p);
+				break;
+			case 54:
+				v.txDropped = readInt(p);
+				break;
+			case 55:
+				v.txErrors = readInt(p);
+				break;
+			case 56:
+				v.txFifoErrors = readInt(p);
+				break;
+			case 57:
+				v.txHeartbeatErrors = readInt(p);
+				break;
+			case 58:
+				v.txPackets = readInt(p);
+				break;
+			case 59:
+				v.txWindowErrors = readInt(p);
+				break;
+			case 60:
+				v.beaconing = readInt(p);
+				break;
+			case 61:
+				v.encryptionKey = readInt(p);
+				break;
+			case 62:
+				v.fragmentationThreshold = readInt(p);
+				break;
+			case 63:
+				v.signalLevel = readInt(p);
+				break;
+			case 64:
+				v.linkQuality = readInt(p);
+				break;
+			case 65:
+				v.misc = readInt(p);
+				break;
+			case 66:
+				v.noiseLevel = readInt(p);
+				break;
+			case 67:
+				v.nwid = readInt(p);
+				break;
+			case 68:
+				v.wirelessRetries = readInt(p);
+				break;
+			case 69:
+				v.wirelessStatus = readString(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> LINK_FIELDS = fields(
+			"localIP", "remoteIP", "validityTime", "linkQuality",
+			"neighborLinkQuality", "linkCost");
+
+	/**
+	 * Read a {@link Link} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Link readLink(JsonParser p, Link v) throws IOException {
+		v.localIP = null;
+		v.remoteIP = null;
+		v.validityTime = 0;
+		v.linkQuality = 0;
+		v.neighborLinkQuality = 0;
+		v.linkCost = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = LINK_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.localIP = readString(p);
+				break;
+			case 1:
+				v.remoteIP = readString(p);
+				break;
+			case 2:
+				v.validityTime = readInt(p);
+				break;
+			case 3:
+				v.linkQuality = readFloat(p);
+				break;
+			case 4:
+				v.neighborLinkQuality = readFloat(p);
+				break;
+			case 5:
+				v.linkCost = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> LINK_QUALITY_MULTIPLIER_FIELDS = fields(
+			"route", "multiplier");
+
+	/**
+	 * Read a {@link LinkQualityMultiplier} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static LinkQualityMultiplier readLinkQualityMultiplier(JsonParser p, LinkQualityMultiplier v)
+			throws IOException {
+		v.route = null;
+		v.multiplier = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = LINK_QUALITY_MULTIPLIER_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.route = readString(p);
+				break;
+			case 1:
+				v.multiplier = readFloat(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> MID_FIELDS = fields(
+			"ipAddress", "aliases");
+
+	/**
+	 * Read a {@link MID} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static MID readMID(JsonParser p, MID v) throws IOException {
+		v.ipAddress = null;
+		v.aliases = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = MID_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.ipAddress = readString(p);
+				break;
+			case 1:
+				v.aliases = readMIDAliases(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> MID_ALIAS_FIELDS = fields(
+			"ipAddress", "validityTime");
+
+	/**
+	 * Read a {@link MIDAlias} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static MIDAlias readMIDAlias(JsonParser p, MIDAlias v) throws IOException {
+		v.ipAddress = null;
+		v.validityTime = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = MID_ALIAS_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.ipAddress = readString(p);
+				break;
+			case 1:
+				v.validityTime = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> NEIGHBOR_FIELDS = fields(
+			"ipv4Address", "symmetric", "multiPointRelay", "multiPointRelaySelector",
+			"willingness", "twoHopNeighborCount", "twoHopNeighbors");
+
+	/**
+	 * Read a {@link Neighbor} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Neighbor readNeighbor(JsonParser p, Neighbor v) throws IOException {
+		v.ipv4Address = null;
+		v.symmetric = false;
+		v.multiPointRelay = false;
+		v.multiPointRelaySelector = false;
+		v.willingness = 0;
+		v.twoHopNeighborCount = 0;
+		v.twoHopNeighbors = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = NEIGHBOR_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.ipv4Address = readString(p);
+				break;
+			case 1:
+				v.symmetric = readBoolean(p);
+				break;
+			case 2:
+				v.multiPointRelay = readBoolean(p);
+				break;
+			case 3:
+				v.multiPointRelaySelector = readBoolean(p);
+				break;
+			case 4:
+				v.willingness = readInt(p);
+				break;
+			case 5:
+				v.twoHopNeighborCount = readInt(p);
+				break;
+			case 6:
+				v.twoHopNeighbors = readStrings(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> NODE_FIELDS = fields(
+			"destinationIP", "lastHopIP", "linkQuality", "neighborLinkQuality",
+			"tcEdgeCost", "validityTime");
+
+	/**
+	 * Read a {@link Node} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Node readNode(JsonParser p, Node v) throws IOException {
+		v.destinationIP = null;
+		v.lastHopIP = null;
+		v.linkQuality = 0;
+		v.neighborLinkQuality = 0;
+		v.tcEdgeCost = 0;
+		v.validityTime = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = NODE_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.destinationIP = readString(p);
+				break;
+			case 1:
+				v.lastHopIP = readString(p);
+				break;
+			case 2:
+				v.linkQuality = readFloat(p);
+				break;
+			case 3:
+				v.neighborLinkQuality = readFloat(p);
+				break;
+			case 4:
+				v.tcEdgeCost = readInt(p);
+				break;
+			case 5:
+				v.validityTime = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> PLUGIN_FIELDS = fields(
+			"plugin", "host", "net", "ping", "hna", "accept", "port", "uuidfile",
+			"keyfile", "checkinterval", "pinginterval");
+
+	/**
+	 * Read a {@link Plugin} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Plugin readPlugin(JsonParser p, Plugin v) throws IOException {
+		v.plugin = null;
+		v.host = null;
+		v.net = null;
+		v.ping = null;
+		v.hna = null;
+		v.accept = null;
+		v.port = 0;
+		v.uuidfile = null;
+		v.keyfile = null;
+		v.checkinterval = 0;
+		v.pinginterval = 0;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = PLUGIN_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.plugin = readString(p);
+				break;
+			case 1:
+				v.host = readString(p);
+				break;
+			case 2:
+				v.net = readString(p);
+				break;
+			case 3:
+				v.ping = readString(p);
+				break;
+			case 4:
+				v.hna = readString(p);
+				break;
+			case 5:
+				v.accept = readString(p);
+				break;
+			case 6:
+				v.port = readInt(p);
+				break;
+			case 7:
+				v.uuidfile = readString(p);
+				break;
+			case 8:
+				v.keyfile = readString(p);
+				break;
+			case 9:
+				v.checkinterval = readInt(p);
+				break;
+			case 10:
+				v.pinginterval = readInt(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+	private static final Map<String, Integer> ROUTE_FIELDS = fields(
+			"destination", "genmask", "gateway", "metric", "rtpMetricCost",
+			"networkInterface");
+
+	/**
+	 * Read a {@link Route} from the object at the parser's current token,
+	 * resetting every field of the given instance first.
+	 */
+	static Route readRoute(JsonParser p, Route v) throws IOException {
+		v.destination = null;
+		v.genmask = 0;
+		v.gateway = null;
+		v.metric = 0;
+		v.rtpMetricCost = 0;
+		v.networkInterface = null;
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			Integer field = ROUTE_FIELDS.get(p.getCurrentName());
+			p.nextToken();
+			if (field == null) {
+				p.skipChildren();
+				continue;
+			}
+			switch (field) {
+			case 0:
+				v.destination = readString(p);
+				break;
+			case 1:
+				v.genmask = readInt(p);
+				break;
+			case 2:
+				v.gateway = readString(p);
+				break;
+			case 3:
+				v.metric = readInt(p);
+				break;
+			case 4:
+				v.rtpMetricCost = readInt(p);
+				break;
+			case 5:
+				v.networkInterface = readString(p);
+				break;
+			}
+		}
+		return v;
+	}
+
+
+	/**
+	 * Read an array of {@link AddressNetmask} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<AddressNetmask> readAddressNetmasks(JsonParser p)
+			throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<AddressNetmask> ret = new ArrayList<AddressNetmask>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readAddressNetmask(p, new AddressNetmask()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Gateway} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Gateway> readGateways(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Gateway> ret = new ArrayList<Gateway>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readGateway(p, new Gateway()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link HNA} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<HNA> readHNAs(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<HNA> ret = new ArrayList<HNA>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readHNA(p, new HNA()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Interface} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Interface> readInterfaces(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Interface> ret = new ArrayList<Interface>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readInterface(p, new Interface()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Link} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Link> readLinks(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Link> ret = new ArrayList<Link>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readLink(p, new Link()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link LinkQualityMultiplier} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<LinkQualityMultiplier> readLinkQualityMultipliers(JsonParser p)
+			throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<LinkQualityMultiplier> ret = new ArrayList<LinkQualityMultiplier>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readLinkQualityMultiplier(p, new LinkQualityMultiplier()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link MID} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<MID> readMIDs(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<MID> ret = new ArrayList<MID>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readMID(p, new MID()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link MIDAlias} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<MIDAlias> readMIDAliases(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<MIDAlias> ret = new ArrayList<MIDAlias>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readMIDAlias(p, new MIDAlias()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Neighbor} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Neighbor> readNeighbors(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Neighbor> ret = new ArrayList<Neighbor>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readNeighbor(p, new Neighbor()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Node} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Node> readNodes(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Node> ret = new ArrayList<Node>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readNode(p, new Node()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Plugin} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Plugin> readPlugins(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Plugin> ret = new ArrayList<Plugin>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readPlugin(p, new Plugin()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Route} from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<Route> readRoutes(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<Route> ret = new ArrayList<Route>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT)
+				ret.add(readRoute(p, new Route()));
+			else
+				p.skipChildren();
+		}
+		return ret;
+	}
+
+	/**
+	 * Read an array of {@link Gateway} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Gateway> readGateways(JsonParser p, RecyclingList<Gateway> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Gateway v = into.recycle();
+				into.add(readGateway(p, v != null ? v : new Gateway()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link HNA} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<HNA> readHNAs(JsonParser p, RecyclingList<HNA> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				HNA v = into.recycle();
+				into.add(readHNA(p, v != null ? v : new HNA()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Interface} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Interface> readInterfaces(JsonParser p, RecyclingList<Interface> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Interface v = into.recycle();
+				into.add(readInterface(p, v != null ? v : new Interface()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Link} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Link> readLinks(JsonParser p, RecyclingList<Link> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Link v = into.recycle();
+				into.add(readLink(p, v != null ? v : new Link()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link MID} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<MID> readMIDs(JsonParser p, RecyclingList<MID> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				MID v = into.recycle();
+				into.add(readMID(p, v != null ? v : new MID()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Neighbor} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Neighbor> readNeighbors(JsonParser p, RecyclingList<Neighbor> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Neighbor v = into.recycle();
+				into.add(readNeighbor(p, v != null ? v : new Neighbor()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Node} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Node> readNodes(JsonParser p, RecyclingList<Node> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Node v = into.recycle();
+				into.add(readNode(p, v != null ? v : new Node()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Plugin} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Plugin> readPlugins(JsonParser p, RecyclingList<Plugin> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Plugin v = into.recycle();
+				into.add(readPlugin(p, v != null ? v : new Plugin()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of {@link Route} from the parser's current token into a
+	 * recycled list, overwriting the elements it had before where it can.
+	 *
+	 * @return the list, which is left empty if the value is null
+	 */
+	static RecyclingList<Route> readRoutes(JsonParser p, RecyclingList<Route> into)
+			throws IOException {
+		into.clear();
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return into;
+		}
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+			if (t == JsonToken.START_OBJECT) {
+				Route v = into.recycle();
+				into.add(readRoute(p, v != null ? v : new Route()));
+			} else
+				p.skipChildren();
+		}
+		return into;
+	}
+
+	/**
+	 * Read an array of strings from the parser's current token.
+	 *
+	 * @return the list, or null if the value is null
+	 */
+	static List<String> readStrings(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+			p.skipChildren();
+			return null;
+		}
+		List<String> ret = new ArrayList<String>();
+		JsonToken t;
+		while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null)
+			ret.add(readString(p));
+		return ret;
+	}
+
+	static String readString(JsonParser p) throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if (t == JsonToken.VALUE_STRING || t == JsonToken.VALUE_NUMBER_INT
+				|| t == JsonToken.VALUE_NUMBER_FLOAT
+				|| t == JsonToken.VALUE_TRUE || t == JsonToken.VALUE_FALSE)
+			return p.getText();
+		p.skipChildren();
+		return null;
+	}
+
+	static int readInt(JsonParser p) throws IOException {
+		return (int) readLong(p);
+	}
+
+	static long readLong(JsonParser p) throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if (t == JsonToken.VALUE_NUMBER_INT)
+			return p.getLongValue();
+		if (t == JsonToken.VALUE_NUMBER_FLOAT)
+			return (long) p.getDoubleValue();
+		if (t == JsonToken.VALUE_TRUE)
+			return 1;
+		if (t == JsonToken.VALUE_STRING) {
+			try {
+				return Long.parseLong(p.getText().trim());
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		p.skipChildren();
+		return 0;
+	}
+
+	static float readFloat(JsonParser p) throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if (t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NUMBER_FLOAT)
+			return p.getFloatValue();
+		if (t == JsonToken.VALUE_STRING) {
+			try {
+				return Float.parseFloat(p.getText().trim());
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+		p.skipChildren();
+		return 0;
+	}
+
+	static boolean readBoolean(JsonParser p) throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if (t == JsonToken.VALUE_TRUE)
+			return true;
+		if (t == JsonToken.VALUE_NUMBER_INT)
+			return p.getLongValue() != 0;
+		if (t == JsonToken.VALUE_STRING)
+			return p.getText().trim().equalsIgnoreCase("true");
+		p.skipChildren();
+		return false;
+	}
+}
@@ -0,0 +1,108 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * The changes between two successive
+ * {@link net.commotionwireless.olsrinfo.datatypes.OlsrDataDump} snapshots, as
+ * computed by {@link DumpDiff}. Added and removed entries are the objects
+ * from the newer and older snapshot respectively, changed entries carry
+ * both.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see DumpDiff
+ */
+public class DumpDelta {
+
+	/**
+	 * An entry that is present in both snapshots but has changed.
+	 *
+	 * @param <T> the datatype that changed
+	 */
+	public static class Change<T> {
+		public final T before;
+		public final T after;
+
+		public Change(T before, T after) {
+			this.before = before;
+			this.after = after;
+		}
+	}
+
+	public final Collection<Neighbor> neighborsAdded = new ArrayList<Neighbor>();
+	public final Collection<Neighbor> neighborsRemoved = new ArrayList<Neighbor>();
+	/** symmetry, MPR, willingness or two-hop neighbors changed */
+	public final Collection<Change<Neighbor>> neighborsChanged = new ArrayList<Change<Neighbor>>();
+
+	public final Collection<Link> linksAdded = new ArrayList<Link>();
+	public final Collection<Link> linksRemoved = new ArrayList<Link>();
+	/** quality or cost changed by more than the threshold */
+	public final Collection<Change<Link>> linksChanged = new ArrayList<Change<Link>>();
+
+	public final Collection<Route> routesAdded = new ArrayList<Route>();
+	public final Collection<Route> routesRemoved = new ArrayList<Route>();
+	/** next hop or interface changed */
+	public final Collection<Change<Route>> routesChanged = new ArrayList<Change<Route>>();
+
+	public final Collection<Node> topologyAdded = new ArrayList<Node>();
+	public final Collection<Node> topologyRemoved = new ArrayList<Node>();
+	/** quality or cost changed by more than the threshold */
+	public final Collection<Change<Node>> topologyChanged = new ArrayList<Change<Node>>();
+
+	/**
+	 * @return whether the set of one-hop neighbors, or anything about them,
+	 *         has changed
+	 */
+	public boolean hasNeighborChanges() {
+		return !neighborsAdded.isEmpty() || !neighborsRemoved.isEmpty()
+				|| !neighborsChanged.isEmpty();
+	}
+
+	/**
+	 * @return whether links, routes or the topology have changed
+	 */
+	public boolean hasTopologyChanges() {
+		return !linksAdded.isEmpty() || !linksRemoved.isEmpty()
+				|| !linksChanged.isEmpty() || !routesAdded.isEmpty()
+				|| !routesRemoved.isEmpty() || !routesChanged.isEmpty()
+				|| !topologyAdded.isEmpty() || !topologyRemoved.isEmpty()
+				|| !topologyChanged.isEmpty();
+	}
+
+	/**
+	 * @return whether nothing at all has changed
+	 */
+	public boolean isEmpty() {
+		return !hasNeighborChanges() && !hasTopologyChanges();
+	}
+
+	/**
+	 * @return the total number of added, removed and changed entries
+	 */
+	public int size() {
+		return neighborsAdded.size() + neighborsRemoved.size()
+				+ neighborsChanged.size() + linksAdded.size()
+				+ linksRemoved.size() + linksChanged.size()
+				+ routesAdded.size() + routesRemoved.size()
+				+ routesChanged.size() + topologyAdded.size()
+				+ topologyRemoved.size() + topologyChanged.size();
+	}
+
+	@Override
+	public String toString() {
+		return "neighbors +" + neighborsAdded.size() + " -"
+				+ neighborsRemoved.size() + " ~" + neighborsChanged.size()
+				+ ", links +" + linksAdded.size() + " -" + linksRemoved.size()
+				+ " ~" + linksChanged.size() + ", routes +"
+				+ routesAdded.size() + " -" + routesRemoved.size() + " ~"
+				+ routesChanged.size() + ", topology +" + topologyAdded.size()
+				+ " -" + topologyRemoved.size() + " ~" + topologyChanged.size();
+	}
+}
@@ -0,0 +1,216 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * Compute the changes between two {@link OlsrDataDump} snapshots. Entries are
+ * matched by hashed keys, so a diff runs in time linear in the size of the
+ * snapshots:
+ * <ul>
+ * <li>neighbors by <tt>ipv4Address</tt></li>
+ * <li>links by <tt>localIP</tt> and <tt>remoteIP</tt></li>
+ * <li>routes by <tt>destination</tt> and <tt>genmask</tt></li>
+ * <li>topology by <tt>destinationIP</tt> and <tt>lastHopIP</tt></li>
+ * </ul>
+ * Small fluctuations in link quality and cost are ignored, so that only
+ * changes above the configured thresholds are reported.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see DumpDelta
+ */
+public class DumpDiff {
+
+	private float qualityThreshold = 0.05f;
+	private float costThreshold = 0.1f;
+
+	/**
+	 * Report a link or topology entry as changed when its LQ or NLQ moves by
+	 * more than this much. The default is 0.05.
+	 *
+	 * @param threshold the absolute change in link quality
+	 */
+	public void setQualityThreshold(float threshold) {
+		qualityThreshold = threshold;
+	}
+
+	/**
+	 * Report a link or topology entry as changed when its cost moves by more
+	 * than this fraction of the old cost. The default is 0.1, i.e. 10%.
+	 *
+	 * @param threshold the relative change in cost
+	 */
+	public void setCostThreshold(float threshold) {
+		costThreshold = threshold;
+	}
+
+	/**
+	 * Compare two snapshots. Either may be null, which is treated as empty;
+	 * sections that were not part of a query should be empty rather than
+	 * null, as {@link JsonInfo#parseCommand(String)} returns them.
+	 *
+	 * @param before the older snapshot
+	 * @param after the newer snapshot
+	 * @return everything that was added, removed or changed
+	 */
+	public DumpDelta diff(OlsrDataDump before, OlsrDataDump after) {
+		DumpDelta ret = new DumpDelta();
+		if (before == null)
+			before = new OlsrDataDump();
+		if (after == null)
+			after = new OlsrDataDump();
+		diffNeighbors(before.neighbors, after.neighbors, ret);
+		diffLinks(before.links, after.links, ret);
+		diffRoutes(before.routes, after.routes, ret);
+		diffTopology(before.topology, after.topology, ret);
+		return ret;
+	}
+
+	void diffNeighbors(Collection<Neighbor> before, Collection<Neighbor> after,
+			DumpDelta ret) {
+		Map<String, Neighbor> old = new LinkedHashMap<String, Neighbor>();
+		if (before != null)
+			for (Neighbor n : before)
+				old.put(n.ipv4Address, n);
+		if (after != null) {
+			for (Neighbor n : after) {
+				Neighbor o = old.remove(n.ipv4Address);
+				if (o == null)
+					ret.neighborsAdded.add(n);
+				else if (neighborChanged(o, n))
+					ret.neighborsChanged.add(new DumpDelta.Change<Neighbor>(o, n));
+			}
+		}
+		ret.neighborsRemoved.addAll(old.values());
+	}
+
+	void diffLinks(Collection<Link> before, Collection<Link> after,
+			DumpDelta ret) {
+		Map<AddressPair, Link> old = new LinkedHashMap<AddressPair, Link>();
+		if (before != null)
+			for (Link l : before)
+				old.put(new AddressPair(l.localIP, l.remoteIP), l);
+		if (after != null) {
+			for (Link l : after) {
+				Link o = old.remove(new AddressPair(l.localIP, l.remoteIP));
+				if (o == null)
+					ret.linksAdded.add(l);
+				else if (qualityChanged(o.linkQuality, l.linkQuality)
+						|| qualityChanged(o.neighborLinkQuality,
+								l.neighborLinkQuality)
+						|| costChanged(o.linkCost, l.linkCost))
+					ret.linksChanged.add(new DumpDelta.Change<Link>(o, l));
+			}
+		}
+		ret.linksRemoved.addAll(old.values());
+	}
+
+	void diffRoutes(Collection<Route> before, Collection<Route> after,
+			DumpDelta ret) {
+		Map<RouteKey, Route> old = new LinkedHashMap<RouteKey, Route>();
+		if (before != null)
+			for (Route r : before)
+				old.put(new RouteKey(r), r);
+		if (after != null) {
+			for (Route r : after) {
+				Route o = old.remove(new RouteKey(r));
+				if (o == null)
+					ret.routesAdded.add(r);
+				else if (!equal(o.gateway, r.gateway)
+						|| !equal(o.networkInterface, r.networkInterface))
+					ret.routesChanged.add(new DumpDelta.Change<Route>(o, r));
+			}
+		}
+		ret.routesRemoved.addAll(old.values());
+	}
+
+	void diffTopology(Collection<Node> before, Collection<Node> after,
+			DumpDelta ret) {
+		Map<AddressPair, Node> old = new LinkedHashMap<AddressPair, Node>();
+		if (before != null)
+			for (Node n : before)
+				old.put(new AddressPair(n.destinationIP, n.lastHopIP), n);
+		if (after != null) {
+			for (Node n : after) {
+				Node o = old.remove(new AddressPair(n.destinationIP,
+						n.lastHopIP));
+				if (o == null)
+					ret.topologyAdded.add(n);
+				else if (qualityChanged(o.linkQuality, n.linkQuality)
+						|| qualityChanged(o.neighborLinkQuality,
+								n.neighborLinkQuality)
+						|| costChanged(o.tcEdgeCost, n.tcEdgeCost))
+					ret.topologyChanged.add(new DumpDelta.Change<Node>(o, n));
+			}
+		}
+		ret.topologyRemoved.addAll(old.values());
+	}
+
+	private boolean qualityChanged(float before, float after) {
+		return Math.abs(after - before) > qualityThreshold;
+	}
+
+	private boolean costChanged(int before, int after) {
+		if (before == after)
+			return false;
+		if (before == 0)
+			return true;
+		return Math.abs((float) (after - before) / before) > costThreshold;
+	}
+
+	private static boolean neighborChanged(Neighbor before, Neighbor after) {
+		if (before.symmetric != after.symmetric
+				|| before.multiPointRelay != after.multiPointRelay
+				|| before.multiPointRelaySelector != after.multiPointRelaySelector
+				|| before.willingness != after.willingness
+				|| before.twoHopNeighborCount != after.twoHopNeighborCount)
+			return true;
+		Collection<String> b = before.twoHopNeighbors;
+		Collection<String> a = after.twoHopNeighbors;
+		if (b == null || a == null)
+			return (b == null ? 0 : b.size()) != (a == null ? 0 : a.size());
+		if (b.size() != a.size())
+			return true;
+		if (b.equals(a))
+			return false;
+		return !new HashSet<String>(b).containsAll(a);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private static final class RouteKey {
+		final String destination;
+		final int genmask;
+
+		RouteKey(Route r) {
+			destination = r.destination;
+			genmask = r.genmask;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (destination == null ? 0 : destination.hashCode())
+					+ genmask;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RouteKey))
+				return false;
+			RouteKey other = (RouteKey) o;
+			return genmask == other.genmask
+					&& equal(destination, other.destination);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values that can be recorded from many threads
+ * at once without locking. Values below 16 each have their own bucket, and
+ * above that each power of two is split into 8 buckets, so percentiles are
+ * accurate to within 12.5% over the whole range of a <tt>long</tt>, in a
+ * fixed 4KB of counters. Recording is a handful of atomic increments.
+ * <p>
+ * Readers take a {@link Snapshot}, which is consistent enough for
+ * monitoring: values recorded while it is being taken may be only partly
+ * counted.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public class Histogram {
+
+	private static final int LINEAR = 16;
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = LINEAR + (63 - 4) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Record a value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m;
+		while (value < (m = min.get()) && !min.compareAndSet(m, value))
+			;
+		while (value > (m = max.get()) && !max.compareAndSet(m, value))
+			;
+	}
+
+	/**
+	 * Forget everything recorded so far.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(Long.MIN_VALUE);
+	}
+
+	public Snapshot snapshot() {
+		long[] c = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			c[i] = counts.get(i);
+			total += c[i];
+		}
+		return new Snapshot(c, total, sum.get(), min.get(), max.get());
+	}
+
+	static int bucket(long value) {
+		if (value < LINEAR)
+			return (int) value;
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exp - 4) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the highest value that falls in the bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < LINEAR)
+			return bucket;
+		int exp = (bucket - LINEAR) / SUB_BUCKETS + 4;
+		long sub = (bucket - LINEAR) % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS + sub) << (exp - SUB_BITS);
+		return lower + (1L << (exp - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * The state of a {@link Histogram} at one moment.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		public final long count;
+		public final long sum;
+		/** the smallest value recorded, or 0 if there are none */
+		public final long min;
+		/** the largest value recorded, or 0 if there are none */
+		public final long max;
+
+		Snapshot(long[] counts, long count, long sum, long min, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.min = count == 0 ? 0 : min;
+			this.max = count == 0 ? 0 : max;
+		}
+
+		public double mean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/**
+		 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+		 * @return a value that at least that share of the recorded values
+		 *         are no greater than, or 0 if there are none
+		 */
+		public long percentile(double quantile) {
+			if (count == 0)
+				return 0;
+			long rank = (long) Math.ceil(quantile * count);
+			if (rank < 1)
+				rank = 1;
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank)
+					return Math.max(min, Math.min(max, upperBound(i)));
+			}
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "n=" + count + " min=" + min + " p50=" + percentile(0.5)
+					+ " p90=" + percentile(0.9) + " p99=" + percentile(0.99)
+					+ " max=" + max;
+		}
+	}
+}
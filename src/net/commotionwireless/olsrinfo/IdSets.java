@@ -0,0 +1,88 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on node IDs from an {@link AddressDictionary}, stored as
+ * sorted <tt>int</tt> arrays without duplicates. Each operation is a single
+ * linear merge.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public final class IdSets {
+
+	private IdSets() {
+	}
+
+	/**
+	 * @return the first <tt>count</tt> IDs as a new set
+	 */
+	public static int[] sorted(int[] ids, int count) {
+		int[] ret = Arrays.copyOf(ids, count);
+		Arrays.sort(ret);
+		int n = 0;
+		for (int i = 0; i < count; i++)
+			if (n == 0 || ret[n - 1] != ret[i])
+				ret[n++] = ret[i];
+		return n == count ? ret : Arrays.copyOf(ret, n);
+	}
+
+	public static boolean contains(int[] set, int id) {
+		return Arrays.binarySearch(set, id) >= 0;
+	}
+
+	public static int[] union(int[] a, int[] b) {
+		int[] ret = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j])
+				ret[n++] = a[i++];
+			else if (a[i] > b[j])
+				ret[n++] = b[j++];
+			else {
+				ret[n++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length)
+			ret[n++] = a[i++];
+		while (j < b.length)
+			ret[n++] = b[j++];
+		return Arrays.copyOf(ret, n);
+	}
+
+	public static int[] intersection(int[] a, int[] b) {
+		int[] ret = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j])
+				i++;
+			else if (a[i] > b[j])
+				j++;
+			else {
+				ret[n++] = a[i++];
+				j++;
+			}
+		}
+		return Arrays.copyOf(ret, n);
+	}
+
+	/**
+	 * @return the IDs in <tt>a</tt> that are not in <tt>b</tt>
+	 */
+	public static int[] difference(int[] a, int[] b) {
+		int[] ret = new int[a.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length) {
+			if (j == b.length || a[i] < b[j])
+				ret[n++] = a[i++];
+			else if (a[i] > b[j])
+				j++;
+			else {
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(ret, n);
+	}
+}
@@ -0,0 +1,294 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * A view of the address-bearing reports of an {@link OlsrDataDump} as
+ * parallel primitive arrays, with every address replaced by its node ID from
+ * an {@link AddressDictionary}. Each report has a count and one array per
+ * field; only the first <tt>count</tt> entries of each array are valid.
+ * Lists of addresses, i.e. two-hop neighbors and MID aliases, are stored
+ * CSR-style: the entries of row <tt>i</tt> are
+ * <tt>ids[start[i]]</tt> to <tt>ids[start[i + 1] - 1]</tt>.
+ * <p>
+ * {@link #index(OlsrDataDump)} can be called again with each new snapshot;
+ * it reuses the arrays, so polling does not allocate once they have grown
+ * to the size of the mesh.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see AddressDictionary
+ */
+public class IndexedDump {
+
+	public static final int SYMMETRIC = 1;
+	public static final int MULTI_POINT_RELAY = 2;
+	public static final int MULTI_POINT_RELAY_SELECTOR = 4;
+
+	public final AddressDictionary dictionary;
+
+	public int neighborCount;
+	public int[] neighborIds = new int[0];
+	/** {@link #SYMMETRIC}, {@link #MULTI_POINT_RELAY}, etc. */
+	public int[] neighborFlags = new int[0];
+	public int[] neighborWillingness = new int[0];
+	public int[] twoHopStart = new int[1];
+	public int[] twoHopIds = new int[0];
+
+	public int linkCount;
+	public int[] linkLocal = new int[0];
+	public int[] linkRemote = new int[0];
+	public float[] linkQuality = new float[0];
+	public float[] linkNeighborQuality = new float[0];
+	public int[] linkCost = new int[0];
+	public int[] linkValidityTime = new int[0];
+
+	public int nodeCount;
+	public int[] nodeDestination = new int[0];
+	public int[] nodeLastHop = new int[0];
+	public float[] nodeQuality = new float[0];
+	public float[] nodeNeighborQuality = new float[0];
+	public int[] nodeCost = new int[0];
+	public int[] nodeValidityTime = new int[0];
+
+	public int routeCount;
+	public int[] routeDestination = new int[0];
+	public int[] routeGenmask = new int[0];
+	public int[] routeGateway = new int[0];
+	public int[] routeMetric = new int[0];
+	public int[] routeCost = new int[0];
+	public String[] routeInterface = new String[0];
+
+	public int hnaCount;
+	public int[] hnaDestination = new int[0];
+	public int[] hnaGenmask = new int[0];
+	public int[] hnaGateway = new int[0];
+	public int[] hnaValidityTime = new int[0];
+
+	public int midCount;
+	public int[] midMain = new int[0];
+	public int[] aliasStart = new int[1];
+	public int[] aliasIds = new int[0];
+
+	public int gatewayCount;
+	public int[] gatewayIds = new int[0];
+	public int[] gatewayCost = new int[0];
+	public int[] gatewayHopCount = new int[0];
+
+	public IndexedDump(AddressDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Replace the contents of this view with the given snapshot, assigning
+	 * IDs to any addresses the dictionary has not seen yet. Null reports are
+	 * indexed as empty.
+	 *
+	 * @return this view
+	 */
+	public IndexedDump index(OlsrDataDump dump) {
+		indexNeighbors(dump);
+		indexLinks(dump);
+		indexTopology(dump);
+		indexRoutes(dump);
+		indexHna(dump);
+		indexMid(dump);
+		indexGateways(dump);
+		return this;
+	}
+
+	private void indexNeighbors(OlsrDataDump dump) {
+		int n = dump.neighbors == null ? 0 : dump.neighbors.size();
+		if (neighborIds.length < n) {
+			neighborIds = new int[n];
+			neighborFlags = new int[n];
+			neighborWillingness = new int[n];
+			twoHopStart = new int[n + 1];
+		}
+		neighborCount = 0;
+		int edges = 0;
+		if (n > 0) {
+			for (Neighbor nb : dump.neighbors) {
+				int i = neighborCount++;
+				neighborIds[i] = dictionary.id(nb.ipv4Address);
+				neighborFlags[i] = (nb.symmetric ? SYMMETRIC : 0)
+						| (nb.multiPointRelay ? MULTI_POINT_RELAY : 0)
+						| (nb.multiPointRelaySelector ? MULTI_POINT_RELAY_SELECTOR : 0);
+				neighborWillingness[i] = nb.willingness;
+				twoHopStart[i] = edges;
+				if (nb.twoHopNeighbors != null) {
+					if (twoHopIds.length < edges + nb.twoHopNeighbors.size())
+						twoHopIds = Arrays.copyOf(twoHopIds, Math.max(
+								twoHopIds.length * 2,
+								edges + nb.twoHopNeighbors.size()));
+					for (String s : nb.twoHopNeighbors)
+						twoHopIds[edges++] = dictionary.id(s);
+				}
+			}
+		}
+		twoHopStart[neighborCount] = edges;
+	}
+
+	private void indexLinks(OlsrDataDump dump) {
+		int n = dump.links == null ? 0 : dump.links.size();
+		if (linkLocal.length < n) {
+			linkLocal = new int[n];
+			linkRemote = new int[n];
+			linkQuality = new float[n];
+			linkNeighborQuality = new float[n];
+			linkCost = new int[n];
+			linkValidityTime = new int[n];
+		}
+		linkCount = 0;
+		if (n == 0)
+			return;
+		for (Link l : dump.links) {
+			int i = linkCount++;
+			linkLocal[i] = dictionary.id(l.localIP);
+			linkRemote[i] = dictionary.id(l.remoteIP);
+			linkQuality[i] = l.linkQuality;
+			linkNeighborQuality[i] = l.neighborLinkQuality;
+			linkCost[i] = l.linkCost;
+			linkValidityTime[i] = l.validityTime;
+		}
+	}
+
+	private void indexTopology(OlsrDataDump dump) {
+		int n = dump.topology == null ? 0 : dump.topology.size();
+		if (nodeDestination.length < n) {
+			nodeDestination = new int[n];
+			nodeLastHop = new int[n];
+			nodeQuality = new float[n];
+			nodeNeighborQuality = new float[n];
+			nodeCost = new int[n];
+			nodeValidityTime = new int[n];
+		}
+		nodeCount = 0;
+		if (n == 0)
+			return;
+		for (Node node : dump.topology) {
+			int i = nodeCount++;
+			nodeDestination[i] = dictionary.id(node.destinationIP);
+			nodeLastHop[i] = dictionary.id(node.lastHopIP);
+			nodeQuality[i] = node.linkQuality;
+			nodeNeighborQuality[i] = node.neighborLinkQuality;
+			nodeCost[i] = node.tcEdgeCost;
+			nodeValidityTime[i] = node.validityTime;
+		}
+	}
+
+	private void indexRoutes(OlsrDataDump dump) {
+		int n = dump.routes == null ? 0 : dump.routes.size();
+		if (routeDestination.length < n) {
+			routeDestination = new int[n];
+			routeGenmask = new int[n];
+			routeGateway = new int[n];
+			routeMetric = new int[n];
+			routeCost = new int[n];
+			routeInterface = new String[n];
+		}
+		routeCount = 0;
+		if (n == 0)
+			return;
+		for (Route r : dump.routes) {
+			int i = routeCount++;
+			routeDestination[i] = dictionary.id(r.destination);
+			routeGenmask[i] = r.genmask;
+			routeGateway[i] = dictionary.id(r.gateway);
+			routeMetric[i] = r.metric;
+			routeCost[i] = r.rtpMetricCost;
+			routeInterface[i] = r.networkInterface;
+		}
+	}
+
+	private void indexHna(OlsrDataDump dump) {
+		int n = dump.hna == null ? 0 : dump.hna.size();
+		if (hnaDestination.length < n) {
+			hnaDestination = new int[n];
+			hnaGenmask = new int[n];
+			hnaGateway = new int[n];
+			hnaValidityTime = new int[n];
+		}
+		hnaCount = 0;
+		if (n == 0)
+			return;
+		for (HNA h : dump.hna) {
+			int i = hnaCount++;
+			hnaDestination[i] = dictionary.id(h.destination);
+			hnaGenmask[i] = h.genmask;
+			hnaGateway[i] = dictionary.id(h.gateway);
+			hnaValidityTime[i] = h.validityTime;
+		}
+	}
+
+	private void indexMid(OlsrDataDump dump) {
+		int n = dump.mid == null ? 0 : dump.mid.size();
+		if (midMain.length < n) {
+			midMain = new int[n];
+			aliasStart = new int[n + 1];
+		}
+		midCount = 0;
+		int aliases = 0;
+		if (n > 0) {
+			for (MID m : dump.mid) {
+				int i = midCount++;
+				midMain[i] = dictionary.id(m.ipAddress);
+				aliasStart[i] = aliases;
+				if (m.aliases != null) {
+					if (aliasIds.length < aliases + m.aliases.size())
+						aliasIds = Arrays.copyOf(aliasIds, Math.max(
+								aliasIds.length * 2, aliases + m.aliases.size()));
+					for (MIDAlias a : m.aliases)
+						aliasIds[aliases++] = dictionary.id(a.ipAddress);
+				}
+			}
+		}
+		aliasStart[midCount] = aliases;
+	}
+
+	private void indexGateways(OlsrDataDump dump) {
+		int n = dump.gateways == null ? 0 : dump.gateways.size();
+		if (gatewayIds.length < n) {
+			gatewayIds = new int[n];
+			gatewayCost = new int[n];
+			gatewayHopCount = new int[n];
+		}
+		gatewayCount = 0;
+		if (n == 0)
+			return;
+		for (Gateway g : dump.gateways) {
+			int i = gatewayCount++;
+			gatewayIds[i] = dictionary.id(g.ipAddress);
+			gatewayCost[i] = g.tcPathCost;
+			gatewayHopCount[i] = g.hopCount;
+		}
+	}
+
+	/**
+	 * @return the IDs of the one-hop neighbors, sorted, for use with
+	 *         {@link IdSets}
+	 */
+	public int[] neighborSet() {
+		return IdSets.sorted(neighborIds, neighborCount);
+	}
+
+	/**
+	 * @return the IDs of every node in the topology, as destination or last
+	 *         hop, sorted and without duplicates
+	 */
+	public int[] topologySet() {
+		int[] ids = Arrays.copyOf(nodeDestination, nodeCount * 2);
+		System.arraycopy(nodeLastHop, 0, ids, nodeCount, nodeCount);
+		return IdSets.sorted(ids, ids.length);
+	}
+}
@@ -0,0 +1,241 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * Turns the traffic counters of each interface, as sampled from successive
+ * <tt>/interfaces</tt> reports, into rates.
+ * <p>
+ * The counters come from the kernel, and are at most 32 bits wide by the time
+ * they are read into an {@link Interface}, so they wrap around after 4GB, or
+ * seem to go negative after 2GB. Each is taken as an unsigned 32 bit value
+ * and widened into a 64 bit total: a counter that went backwards is taken to
+ * have wrapped if that means it moved by less than half its range, and to
+ * have been reset, e.g. by the interface being recreated, if not. This
+ * works as long as the interface is sampled at least once per wrap, i.e.
+ * every 17 seconds at 1Gbps.
+ * <p>
+ * The rate of each counter, per second, is smoothed with an exponentially
+ * weighted moving average whose weight depends on the time since the last
+ * sample, so that it behaves the same whatever the polling interval. The
+ * last {@value #HISTORY} smoothed rates of each interface are kept for
+ * plotting. Sampling allocates nothing once an interface has been seen.
+ * All methods are synchronized.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see LinkQualityStore
+ */
+public class InterfaceRates {
+
+	public static final int RX_BYTES = 0;
+	public static final int TX_BYTES = 1;
+	public static final int RX_PACKETS = 2;
+	public static final int TX_PACKETS = 3;
+	public static final int RX_ERRORS = 4;
+	public static final int TX_ERRORS = 5;
+	public static final int RX_DROPPED = 6;
+	public static final int TX_DROPPED = 7;
+	private static final int COUNTERS = 8;
+
+	/** how many smoothed rates are kept per interface */
+	public static final int HISTORY = 120;
+
+	private static final long RANGE = 1L << 32;
+	private static final long MASK = RANGE - 1;
+
+	private final Map<String, State> interfaces = new HashMap<String, State>();
+	private double timeConstant = 30;
+
+	private static final class State {
+		long lastTime;
+		final long[] last = new long[COUNTERS];
+		final long[] totals = new long[COUNTERS];
+		final double[] rates = new double[COUNTERS];
+		int samples = 0;
+		int wraps = 0;
+		int resets = 0;
+
+		// ring of smoothed rates
+		final long[] times = new long[HISTORY];
+		final float[][] history = new float[COUNTERS][HISTORY];
+		int head = 0;
+		int count = 0;
+	}
+
+	/**
+	 * @param millis the time constant of the smoothing, i.e. roughly how far
+	 *            back it remembers, 30 seconds by default
+	 */
+	public synchronized void setTimeConstant(long millis) {
+		timeConstant = Math.max(1, millis) / 1000.0;
+	}
+
+	/**
+	 * Sample the counters of every interface in a dump.
+	 *
+	 * @param time when the dump was taken, in milliseconds
+	 */
+	public synchronized void add(OlsrDataDump dump, long time) {
+		if (dump.interfaces == null)
+			return;
+		for (Interface i : dump.interfaces)
+			sample(i, time);
+	}
+
+	/**
+	 * Sample the counters of one interface.
+	 *
+	 * @param time when it was sampled, in milliseconds
+	 */
+	public synchronized void sample(Interface i, long time) {
+		if (i.name == null)
+			return;
+		State s = interfaces.get(i.name);
+		if (s == null) {
+			s = new State();
+			interfaces.put(i.name, s);
+		}
+		long[] now = s.last;
+		if (s.samples == 0) {
+			now[RX_BYTES] = i.rxBytes & MASK;
+			now[TX_BYTES] = i.txBytes & MASK;
+			now[RX_PACKETS] = i.rxPackets & MASK;
+			now[TX_PACKETS] = i.txPackets & MASK;
+			now[RX_ERRORS] = i.rxErrors & MASK;
+			now[TX_ERRORS] = i.txErrors & MASK;
+			now[RX_DROPPED] = i.rxDropped & MASK;
+			now[TX_DROPPED] = i.txDropped & MASK;
+			s.lastTime = time;
+			s.samples = 1;
+			return;
+		}
+		// a sample taken at the same time, or from before a clock change,
+		// says nothing about the rate; the next one will catch up
+		double seconds = (time - s.lastTime) / 1000.0;
+		if (seconds <= 0)
+			return;
+		double weight = 1 - Math.exp(-seconds / timeConstant);
+		boolean first = s.samples == 1;
+		update(s, RX_BYTES, i.rxBytes, seconds, weight, first);
+		update(s, TX_BYTES, i.txBytes, seconds, weight, first);
+		update(s, RX_PACKETS, i.rxPackets, seconds, weight, first);
+		update(s, TX_PACKETS, i.txPackets, seconds, weight, first);
+		update(s, RX_ERRORS, i.rxErrors, seconds, weight, first);
+		update(s, TX_ERRORS, i.txErrors, seconds, weight, first);
+		update(s, RX_DROPPED, i.rxDropped, seconds, weight, first);
+		update(s, TX_DROPPED, i.txDropped, seconds, weight, first);
+		s.lastTime = time;
+		s.samples++;
+		s.times[s.head] = time;
+		for (int c = 0; c < COUNTERS; c++)
+			s.history[c][s.head] = (float) s.rates[c];
+		s.head = (s.head + 1) % HISTORY;
+		s.count = Math.min(s.count + 1, HISTORY);
+	}
+
+	private static void update(State s, int counter, int value,
+			double seconds, double weight, boolean first) {
+		long now = value & MASK;
+		long delta = (now - s.last[counter]) & MASK;
+		if (now < s.last[counter]) {
+			if (delta < RANGE / 2) {
+				s.wraps++;
+			} else {
+				// it started again from 0
+				delta = now;
+				s.resets++;
+			}
+		}
+		s.last[counter] = now;
+		s.totals[counter] += delta;
+		double rate = delta / seconds;
+		s.rates[counter] = first ? rate : s.rates[counter] + weight
+				* (rate - s.rates[counter]);
+	}
+
+	/**
+	 * @return the names of the interfaces seen so far
+	 */
+	public synchronized Collection<String> names() {
+		return new ArrayList<String>(interfaces.keySet());
+	}
+
+	/**
+	 * @param counter one of the counters, such as {@link #RX_BYTES}
+	 * @return how far the counter has moved since the interface was first
+	 *         sampled, widened to 64 bits, or 0 if it has not been
+	 */
+	public synchronized long total(String name, int counter) {
+		State s = interfaces.get(name);
+		return s == null ? 0 : s.totals[counter];
+	}
+
+	/**
+	 * @param counter one of the counters, such as {@link #RX_BYTES}
+	 * @return the smoothed rate of the counter per second, or 0 if the
+	 *         interface has not been sampled twice
+	 */
+	public synchronized double rate(String name, int counter) {
+		State s = interfaces.get(name);
+		return s == null || s.samples < 2 ? 0 : s.rates[counter];
+	}
+
+	/**
+	 * @return the smoothed share of packets that were errors, in both
+	 *         directions, or 0 if there has been no traffic
+	 */
+	public synchronized double errorRate(String name) {
+		State s = interfaces.get(name);
+		if (s == null || s.samples < 2)
+			return 0;
+		double errors = s.rates[RX_ERRORS] + s.rates[TX_ERRORS];
+		double packets = s.rates[RX_PACKETS] + s.rates[TX_PACKETS] + errors;
+		return packets > 0 ? errors / packets : 0;
+	}
+
+	/**
+	 * @return how many times the counters of an interface have wrapped
+	 *         around, and been reset, as {wraps, resets}
+	 */
+	public synchronized int[] discontinuities(String name) {
+		State s = interfaces.get(name);
+		return s == null ? new int[2] : new int[] { s.wraps, s.resets };
+	}
+
+	/**
+	 * Copy the recent smoothed rates of a counter, oldest first.
+	 *
+	 * @param times filled with the time of each rate, in milliseconds
+	 * @param rates filled with the rates, per second
+	 * @return the number of rates copied, at most the length of the arrays
+	 */
+	public synchronized int history(String name, int counter, long[] times,
+			float[] rates) {
+		State s = interfaces.get(name);
+		if (s == null)
+			return 0;
+		int n = Math.min(s.count, Math.min(times.length, rates.length));
+		// the newest n, oldest first
+		for (int k = 0; k < n; k++) {
+			int slot = (s.head - n + k + HISTORY) % HISTORY;
+			times[k] = s.times[slot];
+			rates[k] = s.history[counter][slot];
+		}
+		return n;
+	}
+
+	/**
+	 * Forget an interface, e.g. when it has gone, so that it starts afresh
+	 * if it comes back.
+	 */
+	public synchronized void remove(String name) {
+		interfaces.remove(name);
+	}
+}
@@ -0,0 +1,130 @@
+package net.commotionwireless.olsrinfo;
+
+/**
+ * Conversions between dotted-quad IPv4 address strings and addresses packed
+ * into an <tt>int</tt>, most significant octet first. Parsing does not
+ * allocate.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public final class Ipv4 {
+
+	private Ipv4() {
+	}
+
+	/**
+	 * Parse a dotted-quad IPv4 address. Only the canonical form is accepted,
+	 * i.e. exactly four decimal octets without leading zeros, so that
+	 * {@link #toString(int)} gives back the same string.
+	 *
+	 * @param s the address, e.g. <tt>"192.168.1.50"</tt>
+	 * @return the packed address as an unsigned value, or -1 if the string
+	 *         is null or not a canonical IPv4 address
+	 */
+	public static long parse(CharSequence s) {
+		if (s == null)
+			return -1;
+		return parse(s, 0, s.length());
+	}
+
+	/**
+	 * Parse a dotted-quad IPv4 address from part of a string.
+	 *
+	 * @see #parse(CharSequence)
+	 */
+	public static long parse(CharSequence s, int start, int end) {
+		long ret = 0;
+		int octets = 0;
+		int i = start;
+		while (i < end) {
+			int value = 0;
+			int digits = 0;
+			while (i < end) {
+				char c = s.charAt(i);
+				if (c < '0' || c > '9')
+					break;
+				if (digits == 1 && value == 0)
+					return -1; // leading zero
+				value = value * 10 + (c - '0');
+				digits++;
+				i++;
+			}
+			if (digits == 0 || digits > 3 || value > 255)
+				return -1;
+			ret = (ret << 8) | value;
+			octets++;
+			if (i == end)
+				break;
+			if (octets == 4 || s.charAt(i) != '.')
+				return -1;
+			i++;
+			if (i == end)
+				return -1; // trailing dot
+		}
+		return octets == 4 ? ret : -1;
+	}
+
+	/**
+	 * Parse a dotted-quad IPv4 address from ASCII bytes.
+	 *
+	 * @return the packed address as an unsigned value, or -1 if the bytes are
+	 *         not a canonical IPv4 address
+	 * @see #parse(CharSequence)
+	 */
+	public static long parse(byte[] b, int start, int end) {
+		long ret = 0;
+		int octets = 0;
+		int i = start;
+		while (i < end) {
+			int value = 0;
+			int digits = 0;
+			while (i < end) {
+				int c = b[i];
+				if (c < '0' || c > '9')
+					break;
+				if (digits == 1 && value == 0)
+					return -1;
+				value = value * 10 + (c - '0');
+				digits++;
+				i++;
+			}
+			if (digits == 0 || digits > 3 || value > 255)
+				return -1;
+			ret = (ret << 8) | value;
+			octets++;
+			if (i == end)
+				break;
+			if (octets == 4 || b[i] != '.')
+				return -1;
+			i++;
+			if (i == end)
+				return -1;
+		}
+		return octets == 4 ? ret : -1;
+	}
+
+	/**
+	 * @param address the packed address
+	 * @return the address in dotted-quad form
+	 */
+	public static String toString(int address) {
+		StringBuilder sb = new StringBuilder(15);
+		sb.append((address >>> 24) & 0xff).append('.');
+		sb.append((address >>> 16) & 0xff).append('.');
+		sb.append((address >>> 8) & 0xff).append('.');
+		sb.append(address & 0xff);
+		return sb.toString();
+	}
+
+	/**
+	 * @param length the prefix length, 0 to 32
+	 * @return the netmask for that prefix length, e.g. 0xffffff00 for 24
+	 */
+	public static int netmask(int length) {
+		if (length <= 0)
+			return 0;
+		if (length >= 32)
+			return -1;
+		return -1 << (32 - length);
+	}
+}
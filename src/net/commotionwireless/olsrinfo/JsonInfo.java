@@ -1,10 +1,16 @@
 package net.commotionwireless.olsrinfo;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,9 +32,11 @@ import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
 import net.commotionwireless.olsrinfo.datatypes.Plugin;
 import net.commotionwireless.olsrinfo.datatypes.Route;
 
-import org.codehaus.jackson.JsonParseException;
-import org.codehaus.jackson.map.JsonMappingException;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
 
 /**
  * Parse the output of <tt>olsrd</tt>'s jsoninfo plugin, using the
@@ -48,6 +56,52 @@ public class JsonInfo {
 
 	ObjectMapper mapper = null;
 
+	/** parsers for the streaming readers, no databinding needed */
+	private static final JsonFactory factory = new JsonFactory();
+
+	/** bind with the reflective ObjectMapper instead of DatatypeReaders */
+	boolean databind = false;
+
+	/** keep a copy of the raw JSON text in each {@link OlsrDataDump} */
+	boolean keepRaw = true;
+
+	/** concurrent requests for the same command, when coalescing is on */
+	SingleFlight<OlsrDataDump> inFlight = null;
+
+	/** deadline for connecting and reading a reply, in ms, 0 for none */
+	long timeout = 0;
+
+	/** timings, sizes and failures of the queries made by fetch() */
+	private final QueryStats stats = new QueryStats();
+
+	/** config and plugins, loaded once per run of olsrd */
+	private OlsrDataDump startup = null;
+	private String olsrdConf = null;
+	private final SingleFlight<OlsrDataDump> startupLoads = new SingleFlight<OlsrDataDump>();
+	/**
+	 * how far, in milliseconds, the uptime may seem to go backwards between
+	 * requests before olsrd is taken to have restarted
+	 */
+	private static final int RESTART_SLACK = 1000;
+	/** the last timeSinceStartup seen, to notice when olsrd restarts */
+	private int uptime = 0;
+	/** when the request that uptime came from was made, by System.nanoTime() */
+	private long uptimeRequested = 0;
+	/** identifies the run of olsrd, e.g. its PID, if the caller knows it */
+	private Object instance = null;
+	/** bumped whenever the startup reports are dropped */
+	private int startupGeneration = 0;
+
+	private static final TypeReference<List<Gateway>> GATEWAYS = new TypeReference<List<Gateway>>() {};
+	private static final TypeReference<List<HNA>> HNAS = new TypeReference<List<HNA>>() {};
+	private static final TypeReference<List<Interface>> INTERFACES = new TypeReference<List<Interface>>() {};
+	private static final TypeReference<List<Link>> LINKS = new TypeReference<List<Link>>() {};
+	private static final TypeReference<List<MID>> MIDS = new TypeReference<List<MID>>() {};
+	private static final TypeReference<List<Neighbor>> NEIGHBORS = new TypeReference<List<Neighbor>>() {};
+	private static final TypeReference<List<Node>> TOPOLOGY = new TypeReference<List<Node>>() {};
+	private static final TypeReference<List<Plugin>> PLUGINS = new TypeReference<List<Plugin>>() {};
+	private static final TypeReference<List<Route>> ROUTES = new TypeReference<List<Route>>() {};
+
 	final Set<String> supportedCommands = new HashSet<String>(
 			Arrays.asList(new String[] {
 					// combined reports
@@ -144,7 +198,7 @@ public class JsonInfo {
 	 */
 	public String command(String cmdString) {
 		String[] data = new String[0];
-		String ret = "";
+		StringBuilder ret = new StringBuilder();
 
 		isCommandStringValid(cmdString);
 		try {
@@ -154,11 +208,254 @@ public class JsonInfo {
 					+ Integer.toString(port));
 		}
 		for (String s : data) {
-			ret += s + "\n";
+			ret.append(s).append('\n');
+		}
+		return ret.toString();
+	}
+
+	/**
+	 * Keep a copy of the raw JSON text in each parsed {@link OlsrDataDump}, so
+	 * that {@link OlsrDataDump#toString()} returns it. This is on by default;
+	 * turning it off saves a full copy of the reply on large meshes.
+	 *
+	 * @param keep whether to keep the raw text
+	 */
+	public void setKeepRaw(boolean keep) {
+		keepRaw = keep;
+	}
+
+	/**
+	 * Share one socket and one parse between concurrent callers of
+	 * {@link #parseCommand(String)} that ask for the same command. This is off
+	 * by default. When it is on, every caller of a shared request gets the
+	 * same {@link OlsrDataDump}, not a copy, so callers must not modify it
+	 * or anything in it: a change made by one caller is seen by all the
+	 * others. Only the top-level collections are wrapped to reject changes;
+	 * the elements, the lists inside them and the config are not.
+	 *
+	 * @param coalesce whether to coalesce concurrent requests
+	 */
+	public synchronized void setCoalescing(boolean coalesce) {
+		if (coalesce && inFlight == null)
+			inFlight = new SingleFlight<OlsrDataDump>();
+		else if (!coalesce)
+			inFlight = null;
+	}
+
+	/**
+	 * Give up on a query if connecting to the jsoninfo plugin and reading its
+	 * whole reply takes longer than this. The default of 0 waits forever.
+	 *
+	 * @param millis the deadline in milliseconds, or 0 for none
+	 */
+	public void setTimeout(long millis) {
+		timeout = millis;
+	}
+
+	/**
+	 * Parse replies with Jackson's reflective {@link ObjectMapper} rather than
+	 * the hand-written streaming readers, which are the default. The readers
+	 * are much cheaper to start up and allocate less, so this is only a
+	 * fallback, e.g. for a datatype field that the readers do not know yet.
+	 *
+	 * @param use whether to use the ObjectMapper
+	 */
+	public void setDatabind(boolean use) {
+		databind = use;
+	}
+
+	/**
+	 * @return the timings, sizes and failures of the queries this has made
+	 *         to the jsoninfo plugin, by command. Results served from a
+	 *         cache are not queries, and are not counted.
+	 */
+	public QueryStats getStats() {
+		return stats;
+	}
+
+	synchronized ObjectMapper getMapper() {
+		if (mapper == null)
+			mapper = new ObjectMapper();
+		return mapper;
+	}
+
+	/**
+	 * Send a command to the jsoninfo plugin and parse the reply straight off
+	 * the socket, without buffering the whole reply as text first.
+	 *
+	 * @param The command to query jsoninfo with
+	 * @param timeout the deadline for connecting and reading the whole reply,
+	 *            in milliseconds, or 0 for none
+	 * @return The JSON reply parsed into Java objects, with blank fields
+	 *         possibly left as null
+	 * @throws IOException when it cannot get or parse a result in time.
+	 */
+	OlsrDataDump fetch(String cmd, long timeout) throws IOException {
+		return fetch(cmd, timeout, null, null);
+	}
+
+	/**
+	 * Like {@link #fetch(String, long)}, but parse the reply into the given
+	 * dump, recycling its contents, unless it is null, and copy the reply
+	 * as it is read, unless <tt>reply</tt> is null.
+	 */
+	private OlsrDataDump fetch(String cmd, long timeout, OlsrDataDump into,
+			ByteArrayOutputStream reply) throws IOException {
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+		long start = System.nanoTime();
+		Socket sock = new Socket();
+		try {
+			InetSocketAddress address = new InetSocketAddress(host, port);
+			if (address.isUnresolved())
+				throw new UnknownHostException(host);
+			sock.connect(address, (int) Math.min(timeout, Integer.MAX_VALUE));
+			long connected = System.nanoTime();
+			PrintWriter out = new PrintWriter(sock.getOutputStream(), true);
+			out.println(cmd);
+			MeteredInputStream metered = new MeteredInputStream(
+					sock.getInputStream());
+			InputStream in = metered;
+			if (deadline > 0)
+				in = new DeadlineInputStream(in, sock, deadline);
+			ByteArrayOutputStream raw = reply;
+			if (raw == null && keepRaw)
+				raw = new ByteArrayOutputStream(8192);
+			if (raw != null)
+				in = new TeeInputStream(in, raw);
+			OlsrDataDump ret = into == null ? parse(in) : parse(in, into);
+			long parsed = System.nanoTime();
+			stats.success(cmd, connected - start, metered, parsed - connected);
+			if (keepRaw)
+				ret.setRaw(raw.toString("UTF-8"));
+			else if (into != null)
+				into.setRaw("");
+			observe(ret, start);
+			return ret;
+		} catch (IOException e) {
+			stats.failure(cmd, e);
+			// nothing is listening, so whatever answers next is a new run
+			if (e instanceof ConnectException)
+				invalidateStartup();
+			throw e;
+		} finally {
+			// the jsoninfo plugin drops the connection once it outputs
+			sock.close();
+		}
+	}
+
+	/**
+	 * Parse a jsoninfo reply incrementally from a stream. Each report is bound
+	 * as soon as the parser reaches it, and unknown top-level fields are
+	 * skipped. Both the flat reply format and the older one that wraps each
+	 * report in a <tt>"data"</tt> array are understood. Unless
+	 * {@link #setDatabind(boolean)} is on, this uses {@link DatatypeReaders}.
+	 *
+	 * @param in the stream to read the JSON reply from
+	 * @return the parsed reply, possibly with null fields
+	 * @throws IOException when the stream cannot be read or parsed
+	 */
+	OlsrDataDump parse(InputStream in) throws IOException {
+		OlsrDataDump ret = new OlsrDataDump();
+		if (!databind) {
+			JsonParser p = factory.createJsonParser(in);
+			try {
+				if (p.nextToken() == JsonToken.START_OBJECT)
+					DatatypeReaders.readOlsrDataDump(p, ret);
+			} finally {
+				p.close();
+			}
+			return ret;
+		}
+		ObjectMapper m = getMapper();
+		JsonParser p = m.getJsonFactory().createJsonParser(in);
+		try {
+			if (p.nextToken() == JsonToken.START_OBJECT)
+				parseFields(p, m, ret);
+		} finally {
+			p.close();
 		}
 		return ret;
 	}
 
+	/**
+	 * Parse a jsoninfo reply from a stream into a dump that is being
+	 * recycled. With the {@link DatatypeReaders}, the dump's reports and the
+	 * elements in them are overwritten rather than allocated again; with
+	 * databinding, its reports are simply replaced.
+	 *
+	 * @param in the stream to read the JSON reply from
+	 * @param into the dump to fill, whose previous contents are lost
+	 * @return the dump that was passed in, with every report non-null
+	 * @throws IOException when the stream cannot be read or parsed
+	 */
+	OlsrDataDump parse(InputStream in, OlsrDataDump into) throws IOException {
+		if (databind) {
+			OlsrDataDump dump = fillBlanks(parse(in));
+			into.config = dump.config;
+			into.gateways = dump.gateways;
+			into.hna = dump.hna;
+			into.interfaces = dump.interfaces;
+			into.links = dump.links;
+			into.mid = dump.mid;
+			into.neighbors = dump.neighbors;
+			into.topology = dump.topology;
+			into.plugins = dump.plugins;
+			into.routes = dump.routes;
+			into.systemTime = dump.systemTime;
+			into.timeSinceStartup = dump.timeSinceStartup;
+			into.uuid = dump.uuid;
+			return into;
+		}
+		JsonParser p = factory.createJsonParser(in);
+		try {
+			DatatypeReaders.readOlsrDataDumpInto(p, into);
+		} finally {
+			p.close();
+		}
+		return into;
+	}
+
+	private static void parseFields(JsonParser p, ObjectMapper mapper,
+			OlsrDataDump ret) throws IOException {
+		while (p.nextToken() == JsonToken.FIELD_NAME) {
+			String field = p.getCurrentName();
+			JsonToken t = p.nextToken();
+			if (t == JsonToken.VALUE_NULL)
+				continue;
+			if (field.equals("data") && t == JsonToken.START_ARRAY) {
+				while (p.nextToken() == JsonToken.START_OBJECT)
+					parseFields(p, mapper, ret);
+			} else if (field.equals("config"))
+				ret.config = mapper.readValue(p, Config.class);
+			else if (field.equals("gateways"))
+				ret.gateways = mapper.readValue(p, GATEWAYS);
+			else if (field.equals("hna"))
+				ret.hna = mapper.readValue(p, HNAS);
+			else if (field.equals("interfaces"))
+				ret.interfaces = mapper.readValue(p, INTERFACES);
+			else if (field.equals("links"))
+				ret.links = mapper.readValue(p, LINKS);
+			else if (field.equals("mid"))
+				ret.mid = mapper.readValue(p, MIDS);
+			else if (field.equals("neighbors"))
+				ret.neighbors = mapper.readValue(p, NEIGHBORS);
+			else if (field.equals("topology"))
+				ret.topology = mapper.readValue(p, TOPOLOGY);
+			else if (field.equals("plugins"))
+				ret.plugins = mapper.readValue(p, PLUGINS);
+			else if (field.equals("routes"))
+				ret.routes = mapper.readValue(p, ROUTES);
+			else if (field.equals("systemTime"))
+				ret.systemTime = p.getIntValue();
+			else if (field.equals("timeSinceStartup"))
+				ret.timeSinceStartup = p.getIntValue();
+			else if (field.equals("uuid"))
+				ret.uuid = p.getText();
+			else
+				p.skipChildren();
+		}
+	}
+
 	/**
 	 * Query the jsoninfo plugin over a network socket and return the results
 	 * parsed into Java objects.
@@ -167,34 +464,190 @@ public class JsonInfo {
 	 * @return The complete JSON reply parsed into Java objects.
 	 */
 	public OlsrDataDump parseCommand(String cmd) {
-		if (mapper == null)
-			mapper = new ObjectMapper();
-		OlsrDataDump ret = new OlsrDataDump();
-//		OlsrDataDumpWrapper wrapper = new OlsrDataDumpWrapper();
 		try {
-			String dump = command(cmd);
-			if (! dump.contentEquals(""))
-				ret = mapper.readValue(dump, OlsrDataDump.class);
-//			ret = wrapper.data.;
-			ret.setRaw(dump);
-			/*
-			// TODO Jackson is happier if it can download the stuff itself
-			// http://wiki.fasterxml.com/JacksonBestPracticesPerformance
-			URL url = new URL("http", host, port, cmd);
-			ret = mapper.readValue(url, OlsrDataDump.class);
-			*/
-		} catch (JsonParseException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (JsonMappingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			return query(cmd, timeout);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
+			printError(e);
+		}
+		return fillBlanks(null);
+	}
+
+	/**
+	 * Query the jsoninfo plugin and parse the reply into a dump that the
+	 * caller owns, so that repeated polls can reuse the same objects rather
+	 * than allocating new ones each time. The dump's reports, and the
+	 * {@link Neighbor}, {@link Link}, {@link Route}, {@link Node} and other
+	 * objects in them, are overwritten in place where possible: a report
+	 * with fewer rows than last time is shortened, and the spare objects are
+	 * kept for when rows come back. Strings, and the lists nested inside
+	 * elements such as two-hop neighbors, are still read afresh.
+	 * <p>
+	 * This means that anything taken from the dump before, including its
+	 * elements, changes when it is parsed into again. To compare one poll
+	 * with the next, e.g. with {@link DumpDiff}, alternate between two
+	 * dumps. The dump is never cached or shared with other callers, though a
+	 * {@link CachingJsonInfo} caches a copy of its own, and it must not be
+	 * used by another thread while it is being filled.
+	 *
+	 * @param cmd the command to query jsoninfo with
+	 * @param into the dump to fill, e.g. a new {@link OlsrDataDump} the
+	 *            first time and the same one after that
+	 * @return the dump that was passed in, with every report non-null, and
+	 *         empty if it was not in the reply
+	 * @throws IOException when it cannot get or parse a result in time, in
+	 *             which case the dump is left partly filled
+	 */
+	public OlsrDataDump parseInto(String cmd, OlsrDataDump into)
+			throws IOException {
+		return parseInto(cmd, into, null);
+	}
+
+	/**
+	 * Like {@link #parseInto(String, OlsrDataDump)}, but also copy the reply
+	 * as it is read, unless <tt>reply</tt> is null.
+	 */
+	OlsrDataDump parseInto(String cmd, OlsrDataDump into,
+			ByteArrayOutputStream reply) throws IOException {
+		isCommandStringValid(cmd);
+		return fetch(cmd, timeout, into, reply);
+	}
+
+	private void printError(IOException e) {
+		if (e instanceof UnknownHostException) {
+			System.err.println("Unknown host: " + host);
+		} else {
+			System.err.println("Failed to read data from " + host + ":"
+					+ Integer.toString(port));
 			e.printStackTrace();
 		}
+	}
+
+	/**
+	 * Query the jsoninfo plugin and return the parsed reply with its blanks
+	 * filled in, coalescing with concurrent callers if that is turned on.
+	 * This is what {@link #parseCommand(String)} does, except that errors are
+	 * thrown rather than reported.
+	 *
+	 * @param The command to query jsoninfo with
+	 * @param timeout the deadline in milliseconds, or 0 for none
+	 * @return The complete JSON reply parsed into Java objects.
+	 * @throws IOException when it cannot get or parse a result in time.
+	 */
+	OlsrDataDump query(final String cmd, final long timeout) throws IOException {
+		SingleFlight<OlsrDataDump> flights;
+		synchronized (this) {
+			flights = inFlight;
+		}
+		isCommandStringValid(cmd);
+		if (flights == null)
+			return fillBlanks(fetch(cmd, timeout));
+		return flights.run(cmd, new SingleFlight.Loader<OlsrDataDump>() {
+			@Override
+			public OlsrDataDump load() throws IOException {
+				return unmodifiable(fillBlanks(fetch(cmd, timeout)));
+			}
+		});
+	}
+
+	/**
+	 * Get the startup reports, config and plugins, loading them from the
+	 * jsoninfo plugin only if this is the first time since <tt>olsrd</tt>
+	 * started. The result is shared between callers, not copied, so callers
+	 * must not modify it or anything in it.
+	 *
+	 * @param timeout the deadline in milliseconds, or 0 for none
+	 * @throws IOException when it cannot get or parse a result in time.
+	 */
+	OlsrDataDump queryStartup(final long timeout) throws IOException {
+		synchronized (this) {
+			if (startup != null)
+				return startup;
+		}
+		return startupLoads.run("/startup", new SingleFlight.Loader<OlsrDataDump>() {
+			@Override
+			public OlsrDataDump load() throws IOException {
+				int generation;
+				synchronized (JsonInfo.this) {
+					generation = startupGeneration;
+				}
+				OlsrDataDump dump = unmodifiable(fillBlanks(fetch("/startup",
+						timeout)));
+				synchronized (JsonInfo.this) {
+					// if olsrd restarted meanwhile, this may be from the old run
+					if (startupGeneration == generation)
+						startup = dump;
+				}
+				return dump;
+			}
+		});
+	}
+
+	/**
+	 * Tell this which run of <tt>olsrd</tt> it is talking to, e.g. by its
+	 * PID, and drop the startup reports when that changes. This is needed to
+	 * notice restarts from runtime replies of <tt>olsrd</tt> versions whose
+	 * jsoninfo plugin does not report <tt>timeSinceStartup</tt>.
+	 *
+	 * @param id anything that is equal for the same run and differs between
+	 *            runs, or null if not known
+	 */
+	public synchronized void setInstance(Object id) {
+		if (instance != null && !instance.equals(id))
+			invalidateStartup();
+		instance = id;
+	}
+
+	/**
+	 * Forget the cached startup reports, so that the next request for them
+	 * goes to <tt>olsrd</tt>. This happens by itself when a reply shows that
+	 * <tt>olsrd</tt> has restarted, i.e. its <tt>timeSinceStartup</tt> has
+	 * gone backwards by more than a second since an earlier request, or its
+	 * config has a new <tt>startTime</tt> or <tt>olsrdVersion</tt>, when it
+	 * refuses a connection, and when {@link #setInstance(Object)} is given a
+	 * new run. So it is only needed when none of those can be seen, and
+	 * <tt>olsrd</tt> is known to have been restarted.
+	 */
+	public synchronized void invalidateStartup() {
+		startup = null;
+		olsrdConf = null;
+		startupGeneration++;
+	}
+
+	/**
+	 * Look for signs in a reply that <tt>olsrd</tt> has restarted since the
+	 * startup reports were cached. Replies to concurrent requests can arrive
+	 * in any order, so the uptime is only compared with that of a request
+	 * made earlier, and must have fallen by more than a little, in case
+	 * <tt>olsrd</tt> answered them the other way round.
+	 *
+	 * @param requested when the request was made, by System.nanoTime()
+	 */
+	private synchronized void observe(OlsrDataDump dump, long requested) {
+		boolean restarted = false;
+		if (dump.timeSinceStartup > 0
+				&& (uptime == 0 || requested - uptimeRequested >= 0)) {
+			restarted = dump.timeSinceStartup < uptime - RESTART_SLACK;
+			uptime = dump.timeSinceStartup;
+			uptimeRequested = requested;
+		}
+		if (startup != null && dump.config != null) {
+			Config c = dump.config;
+			if (c.startTime != 0 && c.startTime != startup.config.startTime)
+				restarted = true;
+			if (c.olsrdVersion != null
+					&& !c.olsrdVersion.equals(startup.config.olsrdVersion))
+				restarted = true;
+		}
+		if (restarted)
+			invalidateStartup();
+	}
 
-		// change nulls to blank objects so you can use this result in a for()
+	/**
+	 * Change nulls to blank objects so you can use this result in a for()
+	 */
+	static OlsrDataDump fillBlanks(OlsrDataDump ret) {
+		if (ret == null)
+			ret = new OlsrDataDump();
 		if (ret.config == null)
 			ret.config = new Config();
 		if (ret.gateways == null)
@@ -218,6 +671,27 @@ public class JsonInfo {
 		return ret;
 	}
 
+	/**
+	 * Wrap the top-level collections of a dump so that they cannot be
+	 * modified, for results that are shared between callers. This only
+	 * guards against adding or removing rows; the rows themselves, the lists
+	 * inside them and the config can still be changed, so callers must still
+	 * leave shared results alone. The dump must already have had its blanks
+	 * filled in.
+	 */
+	static OlsrDataDump unmodifiable(OlsrDataDump ret) {
+		ret.gateways = Collections.unmodifiableCollection(ret.gateways);
+		ret.hna = Collections.unmodifiableCollection(ret.hna);
+		ret.interfaces = Collections.unmodifiableCollection(ret.interfaces);
+		ret.links = Collections.unmodifiableCollection(ret.links);
+		ret.mid = Collections.unmodifiableCollection(ret.mid);
+		ret.neighbors = Collections.unmodifiableCollection(ret.neighbors);
+		ret.topology = Collections.unmodifiableCollection(ret.topology);
+		ret.plugins = Collections.unmodifiableCollection(ret.plugins);
+		ret.routes = Collections.unmodifiableCollection(ret.routes);
+		return ret;
+	}
+
 	/**
 	 * all of the runtime and startup status information in a single report
 	 *
@@ -229,23 +703,32 @@ public class JsonInfo {
 	}
 
 	/**
-	 * all of the runtime status information in a single report
+	 * all of the runtime status information in a single report, i.e.
+	 * everything except config and plugins
 	 *
-	 * @return array of per-IP arrays of IP address, SYM, MPR, MPRS,
-	 *         Willingness, and 2 Hop Neighbors
+	 * @return the gateways, HNA, interfaces, links, MID, neighbors, routes
+	 *         and topology
 	 */
 	public OlsrDataDump runtime() {
-		return parseCommand("/interfaces");
+		return parseCommand("/runtime");
 	}
 
 	/**
-	 * all of the startup config information in a single report
+	 * all of the startup config information in a single report. This does
+	 * not change while <tt>olsrd</tt> runs, so it is only fetched once per
+	 * run of <tt>olsrd</tt>, and shared between callers, who must not modify
+	 * it.
 	 *
-	 * @return array of per-IP arrays of IP address, SYM, MPR, MPRS,
-	 *         Willingness, and 2 Hop Neighbors
+	 * @return the config and plugins
+	 * @see #invalidateStartup()
 	 */
 	public OlsrDataDump startup() {
-		return parseCommand("/interfaces");
+		try {
+			return queryStartup(timeout);
+		} catch (IOException e) {
+			printError(e);
+		}
+		return fillBlanks(null);
 	}
 
 	/**
@@ -328,24 +811,40 @@ public class JsonInfo {
 	}
 
 	/**
-	 * The parsed configuration of olsrd in its current state
+	 * The parsed configuration of olsrd in its current state, from the
+	 * cached {@link #startup()} reports
 	 */
 	public Config config() {
-		return parseCommand("/config").config;
+		return startup().config;
 	}
 
 	/**
-	 * The parsed configuration of plugins in their current state
+	 * The parsed configuration of plugins in their current state, from the
+	 * cached {@link #startup()} reports
 	 */
 	public Collection<Plugin> plugins() {
-		return parseCommand("/plugins").plugins;
+		return startup().plugins;
 	}
 
 	/**
-	 * The current olsrd configuration in the olsrd.conf format, NOT json
+	 * The current olsrd configuration in the olsrd.conf format, NOT json.
+	 * Like {@link #startup()}, this is only fetched once per run of olsrd.
 	 */
 	public String olsrdconf() {
-		return command("/olsrd.conf");
+		int generation;
+		synchronized (this) {
+			if (olsrdConf != null)
+				return olsrdConf;
+			generation = startupGeneration;
+		}
+		String ret = command("/olsrd.conf");
+		if (!ret.equals("")) {
+			synchronized (this) {
+				if (startupGeneration == generation)
+					olsrdConf = ret;
+			}
+		}
+		return ret;
 	}
 
 	/**
@@ -382,4 +881,66 @@ public class JsonInfo {
 		for (Node node : dump.topology)
 			System.out.println("\t" + node.destinationIP);
 	}
+
+	/**
+	 * Copies everything read from a stream into a side buffer.
+	 */
+	private static class TeeInputStream extends FilterInputStream {
+		private final ByteArrayOutputStream copy;
+
+		TeeInputStream(InputStream in, ByteArrayOutputStream copy) {
+			super(in);
+			this.copy = copy;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1)
+				copy.write(b);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				copy.write(b, off, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Enforces an overall deadline on reading from a socket, by shrinking the
+	 * socket timeout before each read to the time that is left.
+	 */
+	private static class DeadlineInputStream extends FilterInputStream {
+		private final Socket sock;
+		private final long deadline;
+
+		DeadlineInputStream(InputStream in, Socket sock, long deadline) {
+			super(in);
+			this.sock = sock;
+			this.deadline = deadline;
+		}
+
+		private void setRemaining() throws IOException {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				throw new SocketTimeoutException("deadline passed");
+			sock.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+		}
+
+		@Override
+		public int read() throws IOException {
+			setRemaining();
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			setRemaining();
+			return super.read(b, off, len);
+		}
+	}
 }
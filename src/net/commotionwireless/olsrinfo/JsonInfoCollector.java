@@ -0,0 +1,279 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * Query the jsoninfo plugin of many <tt>olsrd</tt> nodes at once, using
+ * non-blocking sockets on a single {@link Selector}, so one thread can sweep
+ * hundreds of nodes. Each node has its own deadline covering connect, send
+ * and receive, so a dead or hung node only costs its own timeout, and the
+ * number of connections open at the same time can be limited.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfo
+ */
+public class JsonInfoCollector {
+
+	/**
+	 * The outcome of querying one node.
+	 */
+	public static class Result {
+		public final InetSocketAddress address;
+		/** the parsed reply, or null if the query failed */
+		public OlsrDataDump dump;
+		/** why the query failed, or null if it succeeded */
+		public IOException error;
+		/** time from starting to connect until done, in milliseconds */
+		public long elapsed;
+		/** bytes received */
+		public int bytes;
+
+		Result(InetSocketAddress address) {
+			this.address = address;
+		}
+
+		public boolean isTimedOut() {
+			return error instanceof SocketTimeoutException;
+		}
+	}
+
+	private static class Query {
+		final Result result;
+		SocketChannel channel;
+		long start;
+		long deadline;
+		ByteBuffer request;
+		byte[] data = new byte[4096];
+		int length;
+
+		Query(InetSocketAddress address) {
+			result = new Result(address);
+		}
+	}
+
+	private final List<InetSocketAddress> hosts = new ArrayList<InetSocketAddress>();
+	private long timeout = 5000;
+	private int maxConcurrent = 64;
+	private final JsonInfo parser = new JsonInfo();
+
+	public JsonInfoCollector() {
+		parser.setKeepRaw(false);
+	}
+
+	public JsonInfoCollector(List<InetSocketAddress> sethosts) {
+		this();
+		hosts.addAll(sethosts);
+	}
+
+	/**
+	 * Add a node to query, on the default jsoninfo port.
+	 */
+	public void addHost(String host) {
+		addHost(host, 9090);
+	}
+
+	public void addHost(String host, int port) {
+		hosts.add(new InetSocketAddress(host, port));
+	}
+
+	public List<InetSocketAddress> getHosts() {
+		return hosts;
+	}
+
+	/**
+	 * @param millis how long each node gets to connect and reply, 5000 by
+	 *            default
+	 */
+	public void setTimeout(long millis) {
+		timeout = millis;
+	}
+
+	/**
+	 * @param max how many nodes to query at the same time, 64 by default
+	 */
+	public void setMaxConcurrent(int max) {
+		maxConcurrent = Math.max(1, max);
+	}
+
+	/**
+	 * Keep a copy of the raw JSON text of each reply. Off by default.
+	 */
+	public void setKeepRaw(boolean keep) {
+		parser.setKeepRaw(keep);
+	}
+
+	/**
+	 * Send a command to every node and wait for all of them to reply, fail
+	 * or time out. This runs the selector on the calling thread.
+	 *
+	 * @param cmd the command to query jsoninfo with
+	 * @return a result per node, in the order the nodes were added
+	 * @throws IOException if the selector itself cannot be opened
+	 */
+	public Map<InetSocketAddress, Result> collect(String cmd) throws IOException {
+		byte[] request = (cmd + "\n").getBytes("UTF-8");
+		Map<InetSocketAddress, Result> ret = new LinkedHashMap<InetSocketAddress, Result>();
+		List<Query> pending = new ArrayList<Query>(hosts.size());
+		for (InetSocketAddress address : hosts) {
+			Query q = new Query(address);
+			ret.put(address, q.result);
+			pending.add(q);
+		}
+
+		Selector selector = Selector.open();
+		ByteBuffer readBuffer = ByteBuffer.allocateDirect(16384);
+		int next = 0;
+		int active = 0;
+		try {
+			while (next < pending.size() || active > 0) {
+				while (active < maxConcurrent && next < pending.size()) {
+					if (start(pending.get(next++), request, selector))
+						active++;
+				}
+
+				long now = System.currentTimeMillis();
+				long wait = Long.MAX_VALUE;
+				for (SelectionKey key : selector.keys())
+					if (key.isValid())
+						wait = Math.min(wait,
+								((Query) key.attachment()).deadline - now);
+				if (active > 0)
+					selector.select(Math.max(1, wait));
+
+				Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+				while (i.hasNext()) {
+					SelectionKey key = i.next();
+					i.remove();
+					if (!handle(key, readBuffer))
+						active--;
+				}
+
+				now = System.currentTimeMillis();
+				for (SelectionKey key : selector.keys()) {
+					Query q = (Query) key.attachment();
+					if (key.isValid() && now >= q.deadline) {
+						finish(key, new SocketTimeoutException("timed out after "
+								+ timeout + "ms"));
+						active--;
+					}
+				}
+			}
+		} finally {
+			for (SelectionKey key : selector.keys())
+				close(key.channel());
+			selector.close();
+		}
+		return ret;
+	}
+
+	/**
+	 * @return whether the query is now in progress on the selector
+	 */
+	private boolean start(Query q, byte[] request, Selector selector) {
+		q.start = System.currentTimeMillis();
+		q.deadline = q.start + timeout;
+		q.request = ByteBuffer.wrap(request);
+		try {
+			if (q.result.address.isUnresolved())
+				throw new IOException("Unknown host: "
+						+ q.result.address.getHostName());
+			q.channel = SocketChannel.open();
+			q.channel.configureBlocking(false);
+			if (q.channel.connect(q.result.address))
+				q.channel.register(selector, SelectionKey.OP_WRITE, q);
+			else
+				q.channel.register(selector, SelectionKey.OP_CONNECT, q);
+			return true;
+		} catch (IOException e) {
+			close(q.channel);
+			q.result.error = e;
+			q.result.elapsed = System.currentTimeMillis() - q.start;
+			return false;
+		}
+	}
+
+	/**
+	 * @return whether the query is still in progress
+	 */
+	private boolean handle(SelectionKey key, ByteBuffer readBuffer) {
+		Query q = (Query) key.attachment();
+		try {
+			if (key.isConnectable()) {
+				q.channel.finishConnect();
+				key.interestOps(SelectionKey.OP_WRITE);
+			} else if (key.isWritable()) {
+				q.channel.write(q.request);
+				if (!q.request.hasRemaining())
+					key.interestOps(SelectionKey.OP_READ);
+			} else if (key.isReadable()) {
+				readBuffer.clear();
+				int n = q.channel.read(readBuffer);
+				if (n < 0) {
+					// the jsoninfo plugin drops the connection once it outputs
+					finish(key, null);
+					return false;
+				}
+				readBuffer.flip();
+				if (q.length + n > q.data.length)
+					q.data = Arrays.copyOf(q.data,
+							Math.max(q.data.length * 2, q.length + n));
+				readBuffer.get(q.data, q.length, n);
+				q.length += n;
+			}
+			return true;
+		} catch (IOException e) {
+			finish(key, e);
+			return false;
+		}
+	}
+
+	private void finish(SelectionKey key, IOException error) {
+		Query q = (Query) key.attachment();
+		key.cancel();
+		close(q.channel);
+		q.result.elapsed = System.currentTimeMillis() - q.start;
+		q.result.bytes = q.length;
+		q.result.error = error;
+		if (error == null) {
+			try {
+				q.result.dump = JsonInfo.fillBlanks(parser.parse(new ByteArrayInputStream(
+						q.data, 0, q.length)));
+				if (parser.keepRaw)
+					q.result.dump.setRaw(new String(q.data, 0, q.length, "UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+			} catch (IOException e) {
+				q.result.error = e;
+			}
+		}
+		q.data = null;
+	}
+
+	private static void close(Channel channel) {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// nothing more to do with it
+		}
+	}
+}
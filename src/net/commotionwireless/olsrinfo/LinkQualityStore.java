@@ -0,0 +1,654 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * A time series store for the quality and cost of each link, which are
+ * otherwise thrown away after each poll. It keeps, for each link:
+ * <ul>
+ * <li>{@link #LINK_QUALITY}, {@link #NEIGHBOR_LINK_QUALITY} and
+ * {@link #LINK_COST} of each of the local node's links, keyed by local and
+ * remote IP
+ * <li>{@link #TC_EDGE_COST} of each topology entry, keyed by last hop and
+ * destination
+ * </ul>
+ * Every sample is rolled up into buckets of a second, a minute and an hour
+ * at once, each keeping the minimum, maximum, mean and number of samples,
+ * and, if its samples differ, a histogram of {@value #BINS} bins that double
+ * in width as needed to span them, so that percentiles can be estimated to
+ * within a bin however coarse the rollup.
+ * <p>
+ * Each series keeps each of its rollups in a fixed ring of small byte
+ * blocks. A finished bucket is written as a frame holding the gap since the
+ * last bucket and the differences from the last bucket's values, as varints,
+ * so a steady link costs a few bytes per bucket, and empty buckets cost
+ * nothing. Each block starts with an absolute frame, so the oldest block can
+ * be overwritten without losing the rest. Qualities are kept to a thousandth
+ * and costs exactly. With the default sizes a series takes at most 14KB,
+ * which for a steady link polled every few seconds holds about half an hour
+ * of seconds, most of a day of minutes and a month of hours, so hundreds of
+ * links fit in a few MB. A link whose quality moves within a bucket takes
+ * a few bytes more per bucket for its histogram.
+ * <p>
+ * Recording only touches primitive arrays, and allocates nothing once a
+ * series' blocks exist. Queries decode only the blocks that overlap the
+ * window. All methods are synchronized.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see SnapshotHistory
+ */
+public class LinkQualityStore {
+
+	public static final int LINK_QUALITY = 0;
+	public static final int NEIGHBOR_LINK_QUALITY = 1;
+	public static final int LINK_COST = 2;
+	public static final int TC_EDGE_COST = 3;
+
+	/** what each metric is multiplied by to store it as an integer */
+	private static final float[] SCALE = { 1000f, 1000f, 1f, 1f };
+
+	public static final int SECONDS = 0;
+	public static final int MINUTES = 1;
+	public static final int HOURS = 2;
+
+	private static final long[] WIDTH = { 1000L, 60 * 1000L, 60 * 60 * 1000L };
+	private static final int[] BLOCKS = { 4, 12, 12 };
+	private static final int BLOCK_SIZE = 512;
+	/** the number of bins in the histogram of each bucket */
+	private static final int BINS = 16;
+	/**
+	 * the most a frame can take: a gap, three values, a count, and the width,
+	 * offset and bins of a histogram
+	 */
+	private static final int MAX_FRAME = 10 + 3 * 10 + 5 + 2 * 10 + BINS * 5;
+
+	private final AddressDictionary dictionary = new AddressDictionary();
+
+	// series by key, open addressing, a null value marks a free slot
+	private long[] keys = new long[64];
+	private Series[] values = new Series[64];
+	private int seriesCount = 0;
+
+	private final Reader reader = new Reader();
+
+	/**
+	 * Receives the buckets of a series, oldest first.
+	 */
+	public interface BucketVisitor {
+		/**
+		 * @param time the start of the bucket, in milliseconds since the epoch
+		 * @param count the number of samples in the bucket
+		 */
+		void bucket(long time, float min, float mean, float max, int count);
+	}
+
+	/**
+	 * A summary of a series over a window of time.
+	 */
+	public static class Summary {
+		/** the number of samples */
+		public final long count;
+		public final float min;
+		public final float max;
+		/** the mean of every sample */
+		public final float mean;
+		/** the width of the buckets it was worked out from, in milliseconds */
+		public final long resolution;
+		// the histograms of the buckets, as the middle of each bin and the
+		// number of samples in it, in stored units
+		private final double[] values;
+		private final long[] weights;
+		private final float scale;
+
+		Summary(long count, float min, float max, float mean, long resolution,
+				double[] values, long[] weights, float scale) {
+			this.count = count;
+			this.min = min;
+			this.max = max;
+			this.mean = mean;
+			this.resolution = resolution;
+			this.values = values;
+			this.weights = weights;
+			this.scale = scale;
+		}
+
+		/**
+		 * A percentile of the samples, estimated from the histograms of the
+		 * buckets, so to within half a bin of the buckets it falls in.
+		 *
+		 * @param quantile between 0 and 1, e.g. 0.95 for the 95th percentile
+		 */
+		public float percentile(double quantile) {
+			double[] sorted = Arrays.copyOf(values, values.length);
+			Arrays.sort(sorted);
+			long rank = Math.max(1, (long) Math.ceil(quantile * count));
+			// the smallest value with at least rank samples at or below it
+			int lo = 0;
+			int hi = sorted.length - 1;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				long below = 0;
+				for (int i = 0; i < values.length; i++)
+					if (values[i] <= sorted[mid])
+						below += weights[i];
+				if (below >= rank)
+					hi = mid;
+				else
+					lo = mid + 1;
+			}
+			return (float) (sorted[lo] / scale);
+		}
+
+		@Override
+		public String toString() {
+			return "n=" + count + " min=" + min + " mean=" + mean + " p95="
+					+ percentile(0.95) + " max=" + max + " (" + resolution
+					+ "ms)";
+		}
+	}
+
+	private static final class Series {
+		final Tier[] tiers = new Tier[WIDTH.length];
+		long lastTime;
+
+		Series() {
+			for (int i = 0; i < tiers.length; i++)
+				tiers[i] = new Tier(WIDTH[i], BLOCKS[i]);
+		}
+	}
+
+	/**
+	 * One rollup of a series.
+	 */
+	private static final class Tier {
+		final long width;
+		final byte[][] blocks;
+		final int[] lengths;
+		/** the first and last bucket in each block */
+		final long[] first;
+		final long[] last;
+		int current = -1;
+		int used = 0;
+		/** whether a block has ever been overwritten */
+		boolean evicted = false;
+
+		// the last frame written, which the next is encoded against
+		long prevBucket;
+		long prevMin;
+		long prevMax;
+		long prevMean;
+
+		// the bucket that is still filling up, and its histogram, whose bins
+		// are 1 << openShift wide from openLow
+		long openBucket = -1;
+		long openMin;
+		long openMax;
+		long openSum;
+		int openCount;
+		long openLow;
+		int openShift;
+		final long[] openBins = new long[BINS];
+
+		Tier(long width, int blocks) {
+			this.width = width;
+			this.blocks = new byte[blocks][];
+			lengths = new int[blocks];
+			first = new long[blocks];
+			last = new long[blocks];
+		}
+
+		void add(long time, long v) {
+			long bucket = time / width;
+			if (bucket > openBucket) {
+				flush();
+				openBucket = bucket;
+				openMin = v;
+				openMax = v;
+				openSum = v;
+				openCount = 1;
+				openLow = v;
+				openShift = 0;
+				Arrays.fill(openBins, 0);
+				openBins[0] = 1;
+				return;
+			}
+			// the same bucket, or the clock went back
+			openMin = Math.min(openMin, v);
+			openMax = Math.max(openMax, v);
+			openSum += v;
+			openCount++;
+			while (v < openLow || v - openLow >= (long) BINS << openShift)
+				widen(v < openLow);
+			openBins[(int) ((v - openLow) >> openShift)]++;
+		}
+
+		/**
+		 * Double the width of the bins, merging them in pairs, to span twice
+		 * the range, extending it downwards or upwards.
+		 */
+		private void widen(boolean down) {
+			int half = BINS / 2;
+			if (down) {
+				for (int k = half - 1; k >= 0; k--)
+					openBins[half + k] = openBins[2 * k] + openBins[2 * k + 1];
+				Arrays.fill(openBins, 0, half, 0);
+				openLow -= (long) BINS << openShift;
+			} else {
+				for (int k = 0; k < half; k++)
+					openBins[k] = openBins[2 * k] + openBins[2 * k + 1];
+				Arrays.fill(openBins, half, BINS, 0);
+			}
+			openShift++;
+		}
+
+		private void flush() {
+			if (openCount == 0)
+				return;
+			long mean = Math.round((double) openSum / openCount);
+			boolean absolute = current < 0
+					|| lengths[current] + MAX_FRAME > BLOCK_SIZE;
+			if (absolute) {
+				current = (current + 1) % blocks.length;
+				if (used == blocks.length)
+					evicted = true;
+				if (blocks[current] == null)
+					blocks[current] = new byte[BLOCK_SIZE];
+				lengths[current] = 0;
+				first[current] = openBucket;
+				used = Math.min(used + 1, blocks.length);
+			}
+			byte[] b = blocks[current];
+			int pos = lengths[current];
+			if (absolute) {
+				pos = writeVarLong(b, pos, openBucket);
+				pos = writeVarLong(b, pos, zigzag(openMin));
+				pos = writeVarLong(b, pos, zigzag(openMax));
+				pos = writeVarLong(b, pos, zigzag(mean));
+			} else {
+				pos = writeVarLong(b, pos, openBucket - prevBucket);
+				pos = writeVarLong(b, pos, zigzag(openMin - prevMin));
+				pos = writeVarLong(b, pos, zigzag(openMax - prevMax));
+				pos = writeVarLong(b, pos, zigzag(mean - prevMean));
+			}
+			pos = writeVarLong(b, pos, openCount);
+			if (openMin != openMax) {
+				// only the bins from the minimum to the maximum can be used
+				pos = writeVarLong(b, pos, openShift);
+				pos = writeVarLong(b, pos, openMin - openLow);
+				int firstBin = (int) ((openMin - openLow) >> openShift);
+				int lastBin = (int) ((openMax - openLow) >> openShift);
+				for (int k = firstBin; k <= lastBin; k++)
+					pos = writeVarLong(b, pos, openBins[k]);
+			}
+			lengths[current] = pos;
+			last[current] = openBucket;
+			prevBucket = openBucket;
+			prevMin = openMin;
+			prevMax = openMax;
+			prevMean = mean;
+			openCount = 0;
+		}
+
+		/**
+		 * @return the first bucket still held, or -1 if there is none
+		 */
+		long oldest() {
+			if (used == 0)
+				return openCount > 0 ? openBucket : -1;
+			// blocks are filled in order, so until they wrap the first is oldest
+			return first[used < blocks.length ? 0 : (current + 1) % blocks.length];
+		}
+	}
+
+	/**
+	 * Decodes the frames of a block.
+	 */
+	private static final class Reader {
+		byte[] b;
+		int pos;
+
+		// the histogram of the last frame, if its samples differ
+		long low;
+		int shift;
+		final long[] bins = new long[BINS];
+
+		void histogram(long min, long max) {
+			shift = (int) varLong();
+			low = min - varLong();
+			int lastBin = (int) ((max - low) >> shift);
+			for (int k = (int) ((min - low) >> shift); k <= lastBin; k++)
+				bins[k] = varLong();
+		}
+
+		long varLong() {
+			long ret = 0;
+			for (int shift = 0;; shift += 7) {
+				int v = b[pos++];
+				ret |= (long) (v & 0x7f) << shift;
+				if ((v & 0x80) == 0)
+					return ret;
+			}
+		}
+
+		long zigzag() {
+			long v = varLong();
+			return (v >>> 1) ^ -(v & 1);
+		}
+	}
+
+	/**
+	 * Record the link qualities and costs of a dump, as far as it has links
+	 * and topology.
+	 *
+	 * @param time when the dump was taken, in milliseconds since the epoch
+	 */
+	public synchronized void add(OlsrDataDump dump, long time) {
+		if (dump.links != null) {
+			for (Link l : dump.links) {
+				int from = dictionary.id(l.localIP);
+				int to = dictionary.id(l.remoteIP);
+				if (from == AddressDictionary.NONE || to == AddressDictionary.NONE)
+					continue;
+				record(from, to, LINK_QUALITY, time, l.linkQuality);
+				record(from, to, NEIGHBOR_LINK_QUALITY, time,
+						l.neighborLinkQuality);
+				record(from, to, LINK_COST, time, l.linkCost);
+			}
+		}
+		if (dump.topology != null) {
+			for (Node n : dump.topology) {
+				int from = dictionary.id(n.lastHopIP);
+				int to = dictionary.id(n.destinationIP);
+				if (from == AddressDictionary.NONE || to == AddressDictionary.NONE)
+					continue;
+				record(from, to, TC_EDGE_COST, time, n.tcEdgeCost);
+			}
+		}
+	}
+
+	/**
+	 * Record one sample.
+	 *
+	 * @param from the ID of the local IP or last hop
+	 * @param to the ID of the remote IP or destination
+	 * @param metric one of {@link #LINK_QUALITY},
+	 *            {@link #NEIGHBOR_LINK_QUALITY}, {@link #LINK_COST} or
+	 *            {@link #TC_EDGE_COST}
+	 * @param time in milliseconds since the epoch
+	 */
+	private void record(int from, int to, int metric, long time, float value) {
+		Series s = series(key(from, to, metric), true);
+		long v = Math.round((double) value * SCALE[metric]);
+		for (Tier t : s.tiers)
+			t.add(time, v);
+		s.lastTime = Math.max(s.lastTime, time);
+	}
+
+	/**
+	 * Visit the buckets of one rollup of a series that start within a
+	 * window, including the one still filling up.
+	 *
+	 * @param from the local IP or last hop
+	 * @param to the remote IP or destination
+	 * @param metric one of the metrics
+	 * @param tier {@link #SECONDS}, {@link #MINUTES} or {@link #HOURS}
+	 * @param start the start of the window, in milliseconds since the epoch
+	 * @param end the end of the window, exclusive
+	 * @return false if there is no such series
+	 */
+	public synchronized boolean visit(String from, String to, int metric,
+			int tier, long start, long end, BucketVisitor visitor) {
+		Series s = find(from, to, metric);
+		if (s == null)
+			return false;
+		visit(s.tiers[tier], SCALE[metric], start, end, visitor, null);
+		return true;
+	}
+
+	/**
+	 * @param histograms also given the histogram of each bucket whose samples
+	 *            differ, or null
+	 */
+	private void visit(Tier t, float scale, long start, long end,
+			BucketVisitor visitor, Summarizer histograms) {
+		long startBucket = floorDiv(start, t.width);
+		long endBucket = floorDiv(end - 1, t.width);
+		for (int i = 0; i < t.used; i++) {
+			int block = t.used < t.blocks.length ? i
+					: (t.current + 1 + i) % t.blocks.length;
+			if (t.last[block] < startBucket || t.first[block] > endBucket)
+				continue;
+			reader.b = t.blocks[block];
+			reader.pos = 0;
+			long bucket = reader.varLong();
+			long min = reader.zigzag();
+			long max = reader.zigzag();
+			long mean = reader.zigzag();
+			int count = (int) reader.varLong();
+			while (true) {
+				if (min != max)
+					reader.histogram(min, max);
+				if (bucket > endBucket)
+					break;
+				if (bucket >= startBucket) {
+					visitor.bucket(bucket * t.width, min / scale, mean / scale,
+							max / scale, count);
+					if (histograms != null && min != max)
+						histograms.spread(min, max, reader.low, reader.shift,
+								reader.bins);
+				}
+				if (reader.pos >= t.lengths[block])
+					break;
+				bucket += reader.varLong();
+				min += reader.zigzag();
+				max += reader.zigzag();
+				mean += reader.zigzag();
+				count = (int) reader.varLong();
+			}
+		}
+		if (t.openCount > 0 && t.openBucket >= startBucket
+				&& t.openBucket <= endBucket) {
+			visitor.bucket(t.openBucket * t.width, t.openMin / scale,
+					(float) ((double) t.openSum / t.openCount / scale),
+					t.openMax / scale, t.openCount);
+			if (histograms != null && t.openMin != t.openMax)
+				histograms.spread(t.openMin, t.openMax, t.openLow,
+						t.openShift, t.openBins);
+		}
+	}
+
+	/**
+	 * Summarize a series over a window, from the finest rollup that still
+	 * holds every sample in it, i.e. that reaches back to the start of the
+	 * window or has not yet dropped any, or the coarsest if none do.
+	 *
+	 * @param start the start of the window, in milliseconds since the epoch
+	 * @param end the end of the window, exclusive
+	 * @return the summary, or null if there are no samples in the window
+	 */
+	public synchronized Summary summarize(String from, String to, int metric,
+			long start, long end) {
+		Series s = find(from, to, metric);
+		if (s == null)
+			return null;
+		Tier tier = s.tiers[HOURS];
+		for (Tier t : s.tiers) {
+			long oldest = t.oldest();
+			if (oldest >= 0
+					&& (!t.evicted || oldest <= floorDiv(start, t.width))) {
+				tier = t;
+				break;
+			}
+		}
+		final float scale = SCALE[metric];
+		Summarizer sum = new Summarizer();
+		visit(tier, 1f, start, end, sum, sum);
+		if (sum.count == 0)
+			return null;
+		return new Summary(sum.count, sum.min / scale, sum.max / scale,
+				(float) (sum.sum / sum.count / scale), tier.width,
+				Arrays.copyOf(sum.values, sum.bins), Arrays.copyOf(
+						sum.weights, sum.bins), scale);
+	}
+
+	/**
+	 * Gathers the buckets of a window, and the bins of their histograms, in
+	 * stored units.
+	 */
+	private static final class Summarizer implements BucketVisitor {
+		long count = 0;
+		double sum = 0;
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+		double[] values = new double[64];
+		long[] weights = new long[64];
+		int bins = 0;
+
+		@Override
+		public void bucket(long time, float min, float mean, float max,
+				int count) {
+			this.count += count;
+			sum += (double) mean * count;
+			this.min = Math.min(this.min, min);
+			this.max = Math.max(this.max, max);
+			// every sample is the minimum, unless spread() is told otherwise
+			if (min == max)
+				add(min, count);
+		}
+
+		/**
+		 * Add the histogram of the bucket just visited, whose samples differ,
+		 * taking each bin's samples to be in its middle.
+		 */
+		void spread(long min, long max, long low, int shift, long[] histogram) {
+			int lastBin = (int) ((max - low) >> shift);
+			for (int k = (int) ((min - low) >> shift); k <= lastBin; k++) {
+				if (histogram[k] == 0)
+					continue;
+				double middle = low + ((long) k << shift)
+						+ (((1L << shift) - 1) / 2.0);
+				add(Math.max(min, Math.min(max, middle)), histogram[k]);
+			}
+		}
+
+		private void add(double value, long weight) {
+			if (bins == values.length) {
+				values = Arrays.copyOf(values, bins * 2);
+				weights = Arrays.copyOf(weights, bins * 2);
+			}
+			values[bins] = value;
+			weights[bins++] = weight;
+		}
+	}
+
+	/**
+	 * @return the time of the last sample of a series, or -1 if there is no
+	 *         such series
+	 */
+	public synchronized long lastTime(String from, String to, int metric) {
+		Series s = find(from, to, metric);
+		return s == null ? -1 : s.lastTime;
+	}
+
+	/**
+	 * @return the number of series, one per link and metric
+	 */
+	public synchronized int size() {
+		return seriesCount;
+	}
+
+	/**
+	 * Forget the series of links that have not been seen since some time.
+	 *
+	 * @param before in milliseconds since the epoch
+	 * @return the number of series forgotten
+	 */
+	public synchronized int prune(long before) {
+		long[] oldKeys = keys;
+		Series[] oldValues = values;
+		keys = new long[oldKeys.length];
+		values = new Series[oldValues.length];
+		int ret = seriesCount;
+		seriesCount = 0;
+		for (int i = 0; i < oldValues.length; i++)
+			if (oldValues[i] != null && oldValues[i].lastTime >= before)
+				put(oldKeys[i], oldValues[i]);
+		return ret - seriesCount;
+	}
+
+	private Series find(String from, String to, int metric) {
+		int f = dictionary.lookup(from);
+		int t = dictionary.lookup(to);
+		if (f == AddressDictionary.NONE || t == AddressDictionary.NONE)
+			return null;
+		return series(key(f, t, metric), false);
+	}
+
+	private static long key(int from, int to, int metric) {
+		// unique as long as there are fewer than 2^29 addresses
+		return (long) from << 34 | (long) to << 2 | metric;
+	}
+
+	private Series series(long key, boolean create) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			if (values[i] == null)
+				break;
+			if (keys[i] == key)
+				return values[i];
+		}
+		if (!create)
+			return null;
+		Series s = new Series();
+		put(key, s);
+		return s;
+	}
+
+	private void put(long key, Series s) {
+		if ((seriesCount + 1) * 2 > keys.length) {
+			long[] oldKeys = keys;
+			Series[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new Series[oldValues.length * 2];
+			seriesCount = 0;
+			for (int i = 0; i < oldValues.length; i++)
+				if (oldValues[i] != null)
+					put(oldKeys[i], oldValues[i]);
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null)
+			i = (i + 1) & mask;
+		keys[i] = key;
+		values[i] = s;
+		seriesCount++;
+	}
+
+	private static int hash(long key) {
+		key *= 0x9e3779b97f4a7c15L;
+		return (int) (key ^ (key >>> 32));
+	}
+
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static int writeVarLong(byte[] b, int pos, long v) {
+		while ((v & ~0x7fL) != 0) {
+			b[pos++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		b[pos++] = (byte) v;
+		return pos;
+	}
+
+	private static long floorDiv(long a, long b) {
+		long q = a / b;
+		return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+	}
+}
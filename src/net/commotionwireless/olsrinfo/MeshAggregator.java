@@ -0,0 +1,362 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * Merge the views of many <tt>olsrd</tt> nodes, e.g. as gathered by a
+ * {@link JsonInfoCollector}, into one view of the whole mesh. Every address
+ * is resolved to its node's main address using the MID reports of all the
+ * nodes, then:
+ * <ul>
+ * <li>topology entries are deduplicated by last hop and destination,
+ * keeping the freshest, i.e. the one that expires last;
+ * <li>HNA announcements are deduplicated by network and gateway, keeping
+ * the freshest;
+ * <li>MID aliases are gathered by main address, keeping the freshest.
+ * </ul>
+ * How soon an entry expires is taken as the reporting node's
+ * <tt>systemTime</tt> plus the entry's <tt>validityTime</tt>, so that
+ * reports taken a few seconds apart compare fairly, as long as the nodes'
+ * clocks roughly agree. Entries that expire at the same time are chosen
+ * between by their contents, e.g. the lowest cost, and an alias claimed by
+ * more than one main address goes to the freshest claim, then the lowest
+ * address, so the result does not depend on the order the dumps are in or
+ * are merged in. An entry that names the same node at both ends once aliases
+ * are resolved is dropped.
+ * <p>
+ * The merge runs in parallel, in two passes over the dumps: one to gather
+ * the aliases, and one to merge everything into concurrent maps, with no
+ * locking. Entries that need no resolving are shared with the dumps rather
+ * than copied, so callers must treat the result as read-only.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfoCollector
+ */
+public class MeshAggregator {
+
+	private static ExecutorService sharedExecutor = null;
+
+	private Executor executor = null;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * An entry together with when it expires, in milliseconds since the
+	 * epoch, or since startup for reports with no <tt>systemTime</tt>.
+	 */
+	private static final class Fresh<T> {
+		final T value;
+		final long expires;
+
+		Fresh(T value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	private static final Comparator<String> ADDRESS_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String a, String b) {
+			long x = Ipv4.parse(a);
+			long y = Ipv4.parse(b);
+			if (x >= 0 && y >= 0)
+				return x < y ? -1 : x == y ? 0 : 1;
+			return a.compareTo(b);
+		}
+	};
+
+	private static final Comparator<Node> NODE_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			if (a.tcEdgeCost != b.tcEdgeCost)
+				return a.tcEdgeCost < b.tcEdgeCost ? -1 : 1;
+			int c = Float.compare(b.linkQuality, a.linkQuality);
+			if (c == 0)
+				c = Float.compare(b.neighborLinkQuality, a.neighborLinkQuality);
+			if (c == 0 && a.validityTime != b.validityTime)
+				c = a.validityTime < b.validityTime ? -1 : 1;
+			return c;
+		}
+	};
+
+	private static final Comparator<HNA> HNA_ORDER = new Comparator<HNA>() {
+		@Override
+		public int compare(HNA a, HNA b) {
+			return a.validityTime < b.validityTime ? -1
+					: a.validityTime == b.validityTime ? 0 : 1;
+		}
+	};
+
+	private static final Comparator<MIDAlias> ALIAS_ORDER = new Comparator<MIDAlias>() {
+		@Override
+		public int compare(MIDAlias a, MIDAlias b) {
+			return a.validityTime < b.validityTime ? -1
+					: a.validityTime == b.validityTime ? 0 : 1;
+		}
+	};
+
+	/**
+	 * @param threads how many dumps to merge at once, by default the number
+	 *            of processors
+	 */
+	public void setParallelism(int threads) {
+		parallelism = Math.max(1, threads);
+	}
+
+	/**
+	 * Set where the merging runs. By default it runs on a shared pool of
+	 * daemon threads, one per processor.
+	 */
+	public synchronized void setExecutor(Executor e) {
+		executor = e;
+	}
+
+	private synchronized Executor getExecutor() {
+		if (executor == null)
+			executor = getSharedExecutor();
+		return executor;
+	}
+
+	private static synchronized ExecutorService getSharedExecutor() {
+		if (sharedExecutor == null)
+			sharedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "MeshAggregator");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		return sharedExecutor;
+	}
+
+	/**
+	 * Merge the views of many nodes into one.
+	 *
+	 * @param dumps the replies of each node, which need to include the
+	 *            topology, HNA and MID reports, e.g. <tt>/runtime</tt>.
+	 *            Null entries and null reports are skipped.
+	 * @return a dump with the merged topology, HNA and MID reports, the
+	 *         latest <tt>systemTime</tt>, and every other report empty
+	 * @throws InterruptedException if interrupted while waiting for the
+	 *             merge to finish
+	 */
+	public OlsrDataDump merge(Collection<OlsrDataDump> dumps)
+			throws InterruptedException {
+		final List<OlsrDataDump> list = new ArrayList<OlsrDataDump>(dumps.size());
+		for (OlsrDataDump d : dumps)
+			if (d != null)
+				list.add(d);
+
+		// pass one: which main address each alias belongs to
+		final ConcurrentMap<String, Fresh<String>> mains = new ConcurrentHashMap<String, Fresh<String>>();
+		final ConcurrentMap<AddressPair, Fresh<MIDAlias>> aliases = new ConcurrentHashMap<AddressPair, Fresh<MIDAlias>>();
+		run(list, new Worker() {
+			@Override
+			public void merge(OlsrDataDump dump) {
+				if (dump.mid == null)
+					return;
+				long now = now(dump);
+				for (MID m : dump.mid) {
+					if (m.ipAddress == null || m.aliases == null)
+						continue;
+					for (MIDAlias a : m.aliases) {
+						if (a.ipAddress == null || a.ipAddress.equals(m.ipAddress))
+							continue;
+						long expires = now + a.validityTime;
+						putFreshest(mains, a.ipAddress, new Fresh<String>(
+								m.ipAddress, expires), ADDRESS_ORDER);
+						putFreshest(aliases, new AddressPair(m.ipAddress,
+								a.ipAddress), new Fresh<MIDAlias>(a, expires),
+								ALIAS_ORDER);
+					}
+				}
+			}
+		});
+
+		// pass two: topology and HNA, with addresses resolved
+		final ConcurrentMap<AddressPair, Fresh<Node>> edges = new ConcurrentHashMap<AddressPair, Fresh<Node>>();
+		final ConcurrentMap<AddressPair, Fresh<HNA>> networks = new ConcurrentHashMap<AddressPair, Fresh<HNA>>();
+		run(list, new Worker() {
+			@Override
+			public void merge(OlsrDataDump dump) {
+				long now = now(dump);
+				if (dump.topology != null) {
+					for (Node n : dump.topology) {
+						String lastHop = resolve(mains, n.lastHopIP);
+						String destination = resolve(mains, n.destinationIP);
+						if (lastHop == null || lastHop.equals(destination))
+							continue;
+						// resolve() hands back the same string if it is no alias
+						Node v = n;
+						if (lastHop != n.lastHopIP
+								|| destination != n.destinationIP) {
+							v = copy(n);
+							v.lastHopIP = lastHop;
+							v.destinationIP = destination;
+						}
+						putFreshest(edges, new AddressPair(lastHop,
+								destination), new Fresh<Node>(v, now
+								+ n.validityTime), NODE_ORDER);
+					}
+				}
+				if (dump.hna != null) {
+					for (HNA h : dump.hna) {
+						String gateway = resolve(mains, h.gateway);
+						HNA v = h;
+						if (gateway != h.gateway) {
+							v = copy(h);
+							v.gateway = gateway;
+						}
+						putFreshest(networks, new AddressPair(h.destination
+								+ "/" + h.genmask, gateway), new Fresh<HNA>(v,
+								now + h.validityTime), HNA_ORDER);
+					}
+				}
+			}
+		});
+
+		OlsrDataDump ret = new OlsrDataDump();
+		for (OlsrDataDump d : list)
+			ret.systemTime = Math.max(ret.systemTime, d.systemTime);
+		List<Node> topology = new ArrayList<Node>(edges.size());
+		for (Fresh<Node> f : edges.values())
+			topology.add(f.value);
+		ret.topology = topology;
+		List<HNA> hna = new ArrayList<HNA>(networks.size());
+		for (Fresh<HNA> f : networks.values())
+			hna.add(f.value);
+		ret.hna = hna;
+		Map<String, MID> mid = new HashMap<String, MID>();
+		for (Map.Entry<AddressPair, Fresh<MIDAlias>> e : aliases.entrySet()) {
+			// an alias claimed by more than one node goes with its topology
+			if (!e.getKey().first.equals(mains.get(e.getKey().second).value))
+				continue;
+			MID m = mid.get(e.getKey().first);
+			if (m == null) {
+				m = new MID();
+				m.ipAddress = e.getKey().first;
+				m.aliases = new ArrayList<MIDAlias>();
+				mid.put(m.ipAddress, m);
+			}
+			m.aliases.add(e.getValue().value);
+		}
+		ret.mid = new ArrayList<MID>(mid.values());
+		return JsonInfo.fillBlanks(ret);
+	}
+
+	private interface Worker {
+		void merge(OlsrDataDump dump);
+	}
+
+	/**
+	 * Run the worker over every dump, split into chunks across the executor,
+	 * and wait for it to finish.
+	 */
+	private void run(final List<OlsrDataDump> dumps, final Worker worker)
+			throws InterruptedException {
+		int chunks = Math.min(dumps.size(), parallelism * 4);
+		if (chunks <= 1 || parallelism == 1) {
+			for (OlsrDataDump d : dumps)
+				worker.merge(d);
+			return;
+		}
+		Executor e = getExecutor();
+		List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final int from = (int) ((long) dumps.size() * c / chunks);
+			final int to = (int) ((long) dumps.size() * (c + 1) / chunks);
+			FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = from; i < to; i++)
+						worker.merge(dumps.get(i));
+				}
+			}, null);
+			tasks.add(task);
+			e.execute(task);
+		}
+		for (FutureTask<Void> task : tasks) {
+			try {
+				task.get();
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				if (cause instanceof RuntimeException)
+					throw (RuntimeException) cause;
+				if (cause instanceof Error)
+					throw (Error) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private static long now(OlsrDataDump dump) {
+		return dump.systemTime > 0 ? dump.systemTime * 1000L : 0;
+	}
+
+	private static String resolve(Map<String, Fresh<String>> mains,
+			String address) {
+		if (address == null)
+			return null;
+		Fresh<String> main = mains.get(address);
+		return main == null ? address : main.value;
+	}
+
+	/**
+	 * Keep the entry that expires last, without locking.
+	 *
+	 * @param ties orders entries that expire at the same time, the first
+	 *            being kept
+	 */
+	private static <K, T> void putFreshest(ConcurrentMap<K, Fresh<T>> map,
+			K key, Fresh<T> f, Comparator<? super T> ties) {
+		while (true) {
+			Fresh<T> old = map.putIfAbsent(key, f);
+			if (old == null || old.expires > f.expires
+					|| (old.expires == f.expires
+							&& ties.compare(old.value, f.value) <= 0)
+					|| map.replace(key, old, f))
+				return;
+		}
+	}
+
+	private static Node copy(Node n) {
+		Node ret = new Node();
+		ret.destinationIP = n.destinationIP;
+		ret.lastHopIP = n.lastHopIP;
+		ret.linkQuality = n.linkQuality;
+		ret.neighborLinkQuality = n.neighborLinkQuality;
+		ret.tcEdgeCost = n.tcEdgeCost;
+		ret.validityTime = n.validityTime;
+		return ret;
+	}
+
+	private static HNA copy(HNA h) {
+		HNA ret = new HNA();
+		ret.destination = h.destination;
+		ret.genmask = h.genmask;
+		ret.gateway = h.gateway;
+		ret.validityTime = h.validityTime;
+		return ret;
+	}
+}
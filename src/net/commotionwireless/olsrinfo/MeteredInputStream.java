@@ -0,0 +1,60 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a socket, and how long reads were blocked
+ * before and after the first byte arrived. Since replies are parsed as they
+ * are read, the time spent parsing is whatever was not spent in here.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see QueryStats
+ */
+class MeteredInputStream extends FilterInputStream {
+
+	long bytes = 0;
+	/** time blocked until the first byte arrived, in nanoseconds */
+	long waitNanos = 0;
+	/** time blocked after the first byte arrived, in nanoseconds */
+	long transferNanos = 0;
+
+	MeteredInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return the total time blocked in reads, in nanoseconds
+	 */
+	long blockedNanos() {
+		return waitNanos + transferNanos;
+	}
+
+	private void count(long start, int n) {
+		long elapsed = System.nanoTime() - start;
+		if (bytes == 0)
+			waitNanos += elapsed;
+		else
+			transferNanos += elapsed;
+		if (n > 0)
+			bytes += n;
+	}
+
+	@Override
+	public int read() throws IOException {
+		long start = System.nanoTime();
+		int b = super.read();
+		count(start, b == -1 ? 0 : 1);
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		long start = System.nanoTime();
+		int n = super.read(b, off, len);
+		count(start, n);
+		return n;
+	}
+}
@@ -0,0 +1,498 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+
+/**
+ * The local node's one-hop and two-hop neighborhood as bitsets over the node
+ * IDs of an {@link AddressDictionary}, for MPR analysis in dense meshes. Each
+ * one-hop neighbor has a row holding the set of nodes it reaches, from its
+ * <tt>twoHopNeighbors</tt>, so questions about coverage are answered a
+ * 64-node word at a time rather than by comparing strings.
+ * <p>
+ * The strict two-hop neighborhood is every node reached through a symmetric
+ * neighbor that is neither the local node nor a one-hop neighbor itself.
+ * The local node is every address that appears as a <tt>localIP</tt> in the
+ * links, for as long as some link still has it. As in RFC 3626, the MPR set
+ * of the local node is valid when every strict two-hop neighbor is reached
+ * through at least one MPR.
+ * <p>
+ * {@link #build(IndexedDump)} fills it from a snapshot, and
+ * {@link #update(DumpDelta)} then only rewrites the rows of the neighbors
+ * that changed. Sets of IDs are returned as sorted arrays, as used by
+ * {@link IdSets}. This class is not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see IndexedDump
+ * @see DumpDiff
+ */
+public class Neighborhood {
+
+	/** olsrd's WILL_NEVER, neighbors that must not be MPRs */
+	public static final int WILL_NEVER = 0;
+	/** olsrd's WILL_ALWAYS, neighbors that are always MPRs */
+	public static final int WILL_ALWAYS = 7;
+
+	private static final int NO_ROW = -1;
+
+	private final AddressDictionary dictionary;
+
+	/** bitset length in 64-bit words, enough for every ID */
+	private int words = 0;
+
+	// one row per neighbor; a row whose id is NONE is free
+	private int rowCount = 0;
+	private int[] rowId = new int[0];
+	private int[] rowFlags = new int[0];
+	private int[] rowWillingness = new int[0];
+	private long[][] rows = new long[0][];
+	private int[] rowOf = new int[0];
+	private int[] freeRows = new int[0];
+	private int freeCount = 0;
+
+	private long[] local = new long[0];
+	/** how many links have each ID as their localIP */
+	private int[] localLinks = new int[0];
+
+	// derived from the rows, when not dirty
+	private boolean dirty = true;
+	private long[] oneHop = new long[0];
+	private long[] twoHop = new long[0];
+	private long[] mprCoverage = new long[0];
+
+	public Neighborhood(AddressDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Replace the neighborhood with the neighbors of a snapshot.
+	 *
+	 * @return this neighborhood
+	 */
+	public Neighborhood build(IndexedDump dump) {
+		ensureWords();
+		for (int r = 0; r < rowCount; r++)
+			if (rowId[r] != AddressDictionary.NONE)
+				rowOf[rowId[r]] = NO_ROW;
+		rowCount = 0;
+		freeCount = 0;
+		Arrays.fill(local, 0);
+		Arrays.fill(localLinks, 0);
+		for (int i = 0; i < dump.linkCount; i++)
+			addLocal(dump.linkLocal[i]);
+		for (int i = 0; i < dump.neighborCount; i++) {
+			int r = row(dump.neighborIds[i]);
+			rowFlags[r] = dump.neighborFlags[i];
+			rowWillingness[r] = dump.neighborWillingness[i];
+			Arrays.fill(rows[r], 0);
+			for (int j = dump.twoHopStart[i]; j < dump.twoHopStart[i + 1]; j++)
+				set(rows[r], dump.twoHopIds[j]);
+		}
+		dirty = true;
+		return this;
+	}
+
+	/**
+	 * Apply the changes between two snapshots, rewriting only the rows of
+	 * the neighbors that were added, removed or changed, and the local node
+	 * for the links that were added or removed.
+	 *
+	 * @return this neighborhood
+	 */
+	public Neighborhood update(DumpDelta delta) {
+		for (Link l : delta.linksAdded)
+			dictionary.id(l.localIP);
+		for (Neighbor n : delta.neighborsAdded)
+			dictionary.id(n.ipv4Address);
+		ensureWords();
+		for (Link l : delta.linksRemoved)
+			removeLocal(dictionary.lookup(l.localIP));
+		for (Link l : delta.linksAdded)
+			addLocal(dictionary.id(l.localIP));
+		for (Neighbor n : delta.neighborsRemoved)
+			remove(dictionary.lookup(n.ipv4Address));
+		for (DumpDelta.Change<Neighbor> c : delta.neighborsChanged)
+			put(c.after);
+		for (Neighbor n : delta.neighborsAdded)
+			put(n);
+		dirty = true;
+		return this;
+	}
+
+	private void put(Neighbor n) {
+		int r = row(dictionary.id(n.ipv4Address));
+		rowFlags[r] = (n.symmetric ? IndexedDump.SYMMETRIC : 0)
+				| (n.multiPointRelay ? IndexedDump.MULTI_POINT_RELAY : 0)
+				| (n.multiPointRelaySelector ? IndexedDump.MULTI_POINT_RELAY_SELECTOR
+						: 0);
+		rowWillingness[r] = n.willingness;
+		if (n.twoHopNeighbors != null)
+			for (String s : n.twoHopNeighbors)
+				dictionary.id(s);
+		ensureWords();
+		Arrays.fill(rows[r], 0);
+		if (n.twoHopNeighbors != null)
+			for (String s : n.twoHopNeighbors)
+				set(rows[r], dictionary.id(s));
+	}
+
+	private void addLocal(int id) {
+		if (id < 0)
+			return;
+		localLinks[id]++;
+		set(local, id);
+	}
+
+	private void removeLocal(int id) {
+		if (id == AddressDictionary.NONE || id >= localLinks.length
+				|| localLinks[id] == 0)
+			return;
+		if (--localLinks[id] == 0)
+			local[id >>> 6] &= ~(1L << id);
+	}
+
+	private void remove(int id) {
+		if (id == AddressDictionary.NONE || id >= rowOf.length
+				|| rowOf[id] == NO_ROW)
+			return;
+		int r = rowOf[id];
+		rowOf[id] = NO_ROW;
+		rowId[r] = AddressDictionary.NONE;
+		freeRows[freeCount++] = r;
+	}
+
+	/**
+	 * @return the row of a neighbor, allocating one if it has none
+	 */
+	private int row(int id) {
+		if (rowOf[id] != NO_ROW)
+			return rowOf[id];
+		int r;
+		if (freeCount > 0) {
+			r = freeRows[--freeCount];
+		} else {
+			if (rowCount == rowId.length) {
+				int n = Math.max(8, rowCount * 2);
+				rowId = Arrays.copyOf(rowId, n);
+				rowFlags = Arrays.copyOf(rowFlags, n);
+				rowWillingness = Arrays.copyOf(rowWillingness, n);
+				rows = Arrays.copyOf(rows, n);
+				freeRows = Arrays.copyOf(freeRows, n);
+			}
+			r = rowCount++;
+			if (rows[r] == null || rows[r].length < words)
+				rows[r] = new long[words];
+		}
+		rowId[r] = id;
+		rowOf[id] = r;
+		return r;
+	}
+
+	/**
+	 * Grow every bitset to hold every ID in the dictionary.
+	 */
+	private void ensureWords() {
+		int ids = dictionary.size();
+		if (rowOf.length < ids) {
+			int old = rowOf.length;
+			rowOf = Arrays.copyOf(rowOf, Math.max(ids, old * 2));
+			Arrays.fill(rowOf, old, rowOf.length, NO_ROW);
+			localLinks = Arrays.copyOf(localLinks, rowOf.length);
+		}
+		int n = (ids + 63) >>> 6;
+		if (n <= words)
+			return;
+		n = Math.max(n, words * 2);
+		for (int r = 0; r < rowCount; r++)
+			if (rows[r] != null)
+				rows[r] = Arrays.copyOf(rows[r], n);
+		local = Arrays.copyOf(local, n);
+		oneHop = new long[n];
+		twoHop = new long[n];
+		mprCoverage = new long[n];
+		words = n;
+		dirty = true;
+	}
+
+	private void refresh() {
+		if (!dirty)
+			return;
+		Arrays.fill(oneHop, 0);
+		Arrays.fill(twoHop, 0);
+		Arrays.fill(mprCoverage, 0);
+		for (int r = 0; r < rowCount; r++) {
+			if (rowId[r] == AddressDictionary.NONE)
+				continue;
+			set(oneHop, rowId[r]);
+			if ((rowFlags[r] & IndexedDump.SYMMETRIC) == 0)
+				continue;
+			or(twoHop, rows[r]);
+			if ((rowFlags[r] & IndexedDump.MULTI_POINT_RELAY) != 0)
+				or(mprCoverage, rows[r]);
+		}
+		for (int w = 0; w < words; w++)
+			twoHop[w] &= ~(oneHop[w] | local[w]);
+		dirty = false;
+	}
+
+	private boolean usable(int r) {
+		return rowId[r] != AddressDictionary.NONE
+				&& (rowFlags[r] & IndexedDump.SYMMETRIC) != 0;
+	}
+
+	private int rowOf(int neighbor) {
+		if (neighbor < 0 || neighbor >= rowOf.length)
+			return NO_ROW;
+		return rowOf[neighbor];
+	}
+
+	/**
+	 * @return the one-hop neighbors, symmetric or not
+	 */
+	public int[] oneHopSet() {
+		refresh();
+		return ids(oneHop);
+	}
+
+	/**
+	 * @return the strict two-hop neighbors
+	 */
+	public int[] twoHopSet() {
+		refresh();
+		return ids(twoHop);
+	}
+
+	public int twoHopCount() {
+		refresh();
+		return cardinality(twoHop);
+	}
+
+	/**
+	 * @return how many strict two-hop neighbors this neighbor reaches, or 0
+	 *         if it is not a symmetric neighbor
+	 */
+	public int coverage(int neighbor) {
+		int r = rowOf(neighbor);
+		if (r == NO_ROW || !usable(r))
+			return 0;
+		refresh();
+		int ret = 0;
+		long[] row = rows[r];
+		for (int w = 0; w < words; w++)
+			ret += Long.bitCount(row[w] & twoHop[w]);
+		return ret;
+	}
+
+	/**
+	 * @return how many symmetric neighbors reach this node
+	 */
+	public int redundancy(int twoHopNeighbor) {
+		if (twoHopNeighbor < 0 || twoHopNeighbor >= words * 64)
+			return 0;
+		int w = twoHopNeighbor >>> 6;
+		long bit = 1L << twoHopNeighbor;
+		int ret = 0;
+		for (int r = 0; r < rowCount; r++)
+			if (usable(r) && (rows[r][w] & bit) != 0)
+				ret++;
+		return ret;
+	}
+
+	/**
+	 * @return the strict two-hop neighbors that no symmetric neighbor other
+	 *         than this one reaches, i.e. that would be lost with it
+	 */
+	public int[] reachableOnlyThrough(int neighbor) {
+		int r = rowOf(neighbor);
+		if (r == NO_ROW || !usable(r))
+			return new int[0];
+		refresh();
+		long[] others = new long[words];
+		for (int o = 0; o < rowCount; o++)
+			if (o != r && usable(o))
+				or(others, rows[o]);
+		long[] ret = new long[words];
+		for (int w = 0; w < words; w++)
+			ret[w] = rows[r][w] & twoHop[w] & ~others[w];
+		return ids(ret);
+	}
+
+	/**
+	 * @return the neighbors that olsrd has chosen as MPRs
+	 */
+	public int[] mprSet() {
+		return flagged(IndexedDump.MULTI_POINT_RELAY);
+	}
+
+	/**
+	 * @return the neighbors that have chosen the local node as an MPR
+	 */
+	public int[] mprSelectorSet() {
+		return flagged(IndexedDump.MULTI_POINT_RELAY_SELECTOR);
+	}
+
+	private int[] flagged(int flag) {
+		long[] ret = new long[words];
+		for (int r = 0; r < rowCount; r++)
+			if (rowId[r] != AddressDictionary.NONE && (rowFlags[r] & flag) != 0)
+				set(ret, rowId[r]);
+		return ids(ret);
+	}
+
+	/**
+	 * @return the strict two-hop neighbors that no MPR reaches, which is
+	 *         empty when the MPR set is valid
+	 */
+	public int[] uncovered() {
+		refresh();
+		long[] ret = new long[words];
+		for (int w = 0; w < words; w++)
+			ret[w] = twoHop[w] & ~mprCoverage[w];
+		return ids(ret);
+	}
+
+	/**
+	 * @return the MPRs that reach no strict two-hop neighbor that the other
+	 *         MPRs do not also reach, so could be dropped
+	 */
+	public int[] redundantMprs() {
+		refresh();
+		long[] ret = new long[words];
+		long[] others = new long[words];
+		for (int r = 0; r < rowCount; r++) {
+			if (!usable(r) || (rowFlags[r] & IndexedDump.MULTI_POINT_RELAY) == 0)
+				continue;
+			Arrays.fill(others, 0);
+			for (int o = 0; o < rowCount; o++)
+				if (o != r && usable(o)
+						&& (rowFlags[o] & IndexedDump.MULTI_POINT_RELAY) != 0)
+					or(others, rows[o]);
+			boolean needed = false;
+			for (int w = 0; w < words && !needed; w++)
+				needed = (rows[r][w] & twoHop[w] & ~others[w]) != 0;
+			if (!needed)
+				set(ret, rowId[r]);
+		}
+		return ids(ret);
+	}
+
+	/**
+	 * Choose an MPR set with the heuristic of RFC 3626 section 8.3.1:
+	 * neighbors that are always willing, then those that are the only way to
+	 * reach some two-hop neighbor, then, until every strict two-hop neighbor
+	 * is reached, the one with the highest willingness among those that reach
+	 * a two-hop neighbor not yet reached, breaking ties by how many such
+	 * neighbors they reach, then by how many strict two-hop neighbors they
+	 * reach in all, then by lowest ID. Neighbors that are never willing are
+	 * not chosen. The result depends only on the neighborhood, not on the
+	 * order it was built in.
+	 *
+	 * @return the chosen MPRs
+	 */
+	public int[] selectMprs() {
+		refresh();
+		long[] chosen = new long[words];
+		long[] covered = new long[words];
+		long[] sole = new long[words];
+		long[] others = new long[words];
+		for (int r = 0; r < rowCount; r++) {
+			if (!usable(r) || rowWillingness[r] == WILL_NEVER)
+				continue;
+			boolean pick = rowWillingness[r] == WILL_ALWAYS;
+			if (!pick) {
+				Arrays.fill(others, 0);
+				for (int o = 0; o < rowCount; o++)
+					if (o != r && usable(o) && rowWillingness[o] != WILL_NEVER)
+						or(others, rows[o]);
+				for (int w = 0; w < words && !pick; w++)
+					pick = (rows[r][w] & twoHop[w] & ~others[w]) != 0;
+			}
+			if (pick) {
+				set(chosen, rowId[r]);
+				or(sole, rows[r]);
+			}
+		}
+		for (int w = 0; w < words; w++)
+			covered[w] = sole[w] & twoHop[w];
+		// D(y) of the RFC, the strict two-hop neighbors each row reaches
+		int[] degree = new int[rowCount];
+		for (int r = 0; r < rowCount; r++)
+			if (usable(r))
+				for (int w = 0; w < words; w++)
+					degree[r] += Long.bitCount(rows[r][w] & twoHop[w]);
+		while (true) {
+			int best = NO_ROW;
+			int bestGain = 0;
+			for (int r = 0; r < rowCount; r++) {
+				if (!usable(r) || rowWillingness[r] == WILL_NEVER
+						|| get(chosen, rowId[r]))
+					continue;
+				int gain = 0;
+				for (int w = 0; w < words; w++)
+					gain += Long.bitCount(rows[r][w] & twoHop[w] & ~covered[w]);
+				if (gain > 0 && (best == NO_ROW || better(r, gain, best, bestGain,
+						degree))) {
+					best = r;
+					bestGain = gain;
+				}
+			}
+			if (best == NO_ROW)
+				return ids(chosen);
+			set(chosen, rowId[best]);
+			for (int w = 0; w < words; w++)
+				covered[w] |= rows[best][w] & twoHop[w];
+		}
+	}
+
+	/**
+	 * @return whether row r, which reaches gain two-hop neighbors not yet
+	 *         reached, is a better MPR than the best row so far
+	 */
+	private boolean better(int r, int gain, int best, int bestGain,
+			int[] degree) {
+		if (rowWillingness[r] != rowWillingness[best])
+			return rowWillingness[r] > rowWillingness[best];
+		if (gain != bestGain)
+			return gain > bestGain;
+		if (degree[r] != degree[best])
+			return degree[r] > degree[best];
+		return rowId[r] < rowId[best];
+	}
+
+	private static void set(long[] bits, int id) {
+		if (id >= 0)
+			bits[id >>> 6] |= 1L << id;
+	}
+
+	private static boolean get(long[] bits, int id) {
+		return (bits[id >>> 6] & (1L << id)) != 0;
+	}
+
+	private void or(long[] into, long[] bits) {
+		for (int w = 0; w < words; w++)
+			into[w] |= bits[w];
+	}
+
+	private static int cardinality(long[] bits) {
+		int ret = 0;
+		for (long w : bits)
+			ret += Long.bitCount(w);
+		return ret;
+	}
+
+	private static int[] ids(long[] bits) {
+		int[] ret = new int[cardinality(bits)];
+		int n = 0;
+		for (int w = 0; w < bits.length; w++) {
+			long word = bits[w];
+			while (word != 0) {
+				ret[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return ret;
+	}
+}
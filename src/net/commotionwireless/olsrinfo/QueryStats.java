@@ -0,0 +1,159 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings, sizes and failures of the queries made to an info plugin, kept
+ * per command, so that a slow daemon can be told from a slow parser or an
+ * empty mesh. For each query it records:
+ * <ul>
+ * <li>connect: the time to open the connection
+ * <li>first byte: the time from connecting until the first byte of the
+ * reply arrived, which includes sending the request and <tt>olsrd</tt>
+ * building its reply
+ * <li>transfer: the time spent waiting for the rest of the reply
+ * <li>bytes: the size of the reply
+ * <li>parse: the rest of the time, which is spent parsing, since replies are
+ * parsed as they arrive
+ * </ul>
+ * Times are in microseconds. Failures are counted, with timeouts counted
+ * separately as well, and the last one is kept. Recording is lock-free, so
+ * this is always on; use {@link #snapshot()} to read it.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see JsonInfo#getStats()
+ * @see TxtInfo#getStats()
+ */
+public class QueryStats {
+
+	private static final long NANOS_PER_MICRO = 1000;
+
+	private final ConcurrentMap<String, Command> commands = new ConcurrentHashMap<String, Command>();
+
+	private static class Command {
+		final Histogram connect = new Histogram();
+		final Histogram firstByte = new Histogram();
+		final Histogram transfer = new Histogram();
+		final Histogram bytes = new Histogram();
+		final Histogram parse = new Histogram();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong timeouts = new AtomicLong();
+		volatile IOException lastError = null;
+	}
+
+	/**
+	 * The statistics for one command at one moment.
+	 */
+	public static class Snapshot {
+		public final String command;
+		/** queries that succeeded */
+		public final long queries;
+		/** queries that failed, timeouts included */
+		public final long errors;
+		/** queries that failed by running out of time */
+		public final long timeouts;
+		/** the most recent failure, or null if there has been none */
+		public final IOException lastError;
+		public final Histogram.Snapshot connect;
+		public final Histogram.Snapshot firstByte;
+		public final Histogram.Snapshot transfer;
+		public final Histogram.Snapshot bytes;
+		public final Histogram.Snapshot parse;
+
+		Snapshot(String command, Command c) {
+			this.command = command;
+			errors = c.errors.get();
+			timeouts = c.timeouts.get();
+			lastError = c.lastError;
+			connect = c.connect.snapshot();
+			firstByte = c.firstByte.snapshot();
+			transfer = c.transfer.snapshot();
+			bytes = c.bytes.snapshot();
+			parse = c.parse.snapshot();
+			queries = parse.count;
+		}
+
+		@Override
+		public String toString() {
+			return command + ": " + queries + " ok, " + errors + " failed ("
+					+ timeouts + " timed out)" + "\n  connect us: " + connect
+					+ "\n  first byte us: " + firstByte + "\n  transfer us: "
+					+ transfer + "\n  bytes: " + bytes + "\n  parse us: " + parse
+					+ (lastError == null ? "" : "\n  last error: " + lastError);
+		}
+	}
+
+	private Command command(String cmd) {
+		Command c = commands.get(cmd);
+		if (c == null) {
+			Command created = new Command();
+			c = commands.putIfAbsent(cmd, created);
+			if (c == null)
+				c = created;
+		}
+		return c;
+	}
+
+	/**
+	 * Record a query that succeeded.
+	 *
+	 * @param cmd the command
+	 * @param connectNanos the time to connect
+	 * @param in the stream the reply was read through
+	 * @param elapsedNanos the time from connecting until the reply was parsed
+	 */
+	void success(String cmd, long connectNanos, MeteredInputStream in,
+			long elapsedNanos) {
+		Command c = command(cmd);
+		c.connect.record(connectNanos / NANOS_PER_MICRO);
+		c.firstByte.record(in.waitNanos / NANOS_PER_MICRO);
+		c.transfer.record(in.transferNanos / NANOS_PER_MICRO);
+		c.bytes.record(in.bytes);
+		// record this last, as its count is the number of queries
+		c.parse.record((elapsedNanos - in.blockedNanos()) / NANOS_PER_MICRO);
+	}
+
+	/**
+	 * Record a query that failed.
+	 */
+	void failure(String cmd, IOException e) {
+		Command c = command(cmd);
+		c.errors.incrementAndGet();
+		if (e instanceof SocketTimeoutException)
+			c.timeouts.incrementAndGet();
+		c.lastError = e;
+	}
+
+	/**
+	 * @return the statistics of every command queried so far, by command
+	 */
+	public Map<String, Snapshot> snapshot() {
+		Map<String, Snapshot> ret = new TreeMap<String, Snapshot>();
+		for (Map.Entry<String, Command> e : commands.entrySet())
+			ret.put(e.getKey(), new Snapshot(e.getKey(), e.getValue()));
+		return ret;
+	}
+
+	/**
+	 * @return the statistics of one command, or null if it has not been
+	 *         queried
+	 */
+	public Snapshot snapshot(String cmd) {
+		Command c = commands.get(cmd);
+		return c == null ? null : new Snapshot(cmd, c);
+	}
+
+	/**
+	 * Forget everything recorded so far.
+	 */
+	public void reset() {
+		commands.clear();
+	}
+}
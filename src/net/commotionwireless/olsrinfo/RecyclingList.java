@@ -0,0 +1,84 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A list that keeps its elements after it is cleared, so that they can be
+ * overwritten rather than allocated again the next time it is filled. This
+ * is what {@link JsonInfo#parseInto} fills the reports of a recycled
+ * {@link net.commotionwireless.olsrinfo.datatypes.OlsrDataDump} with. To
+ * the caller it is an ordinary list of the current elements.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+final class RecyclingList<T> extends AbstractList<T> {
+
+	private Object[] items = new Object[16];
+	private int size = 0;
+
+	/**
+	 * Get the element from before the last {@link #clear()} that is in the
+	 * slot the next {@link #add(Object)} will fill, to be overwritten and
+	 * added again.
+	 *
+	 * @return the old element, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	T recycle() {
+		return size < items.length ? (T) items[size] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index + " >= " + size);
+		return (T) items[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public T set(int index, T element) {
+		T ret = get(index);
+		items[index] = element;
+		return ret;
+	}
+
+	@Override
+	public void add(int index, T element) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException(index + " > " + size);
+		if (size == items.length)
+			items = Arrays.copyOf(items, size * 2);
+		// this overwrites the element that recycle() would have returned
+		System.arraycopy(items, index, items, index + 1, size - index);
+		items[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public T remove(int index) {
+		T ret = get(index);
+		System.arraycopy(items, index + 1, items, index, size - index - 1);
+		size--;
+		// the element stays out of the list, and is not recycled
+		items[size] = null;
+		modCount++;
+		return ret;
+	}
+
+	/**
+	 * Empty the list, keeping its elements to be recycled.
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+}
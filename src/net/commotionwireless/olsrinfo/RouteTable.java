@@ -0,0 +1,328 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * Longest-prefix-match lookup over the IPv4 entries of the <tt>/routes</tt>
+ * and <tt>/hna</tt> reports, to find which gateway and interface serve a
+ * given address. The entries are kept in a binary trie stored in
+ * <tt>int</tt> arrays, so a lookup is at most 32 steps and does not allocate.
+ * A lookup returns a match handle, which is then passed to the accessors
+ * such as {@link #gateway(int)} or {@link #networkInterface(int)}.
+ * <p>
+ * Routes and HNAs are stored side by side, and looked up separately. Entries
+ * whose destination is not an IPv4 address are ignored. The table can be
+ * rebuilt from a snapshot, or kept up to date from the route changes in a
+ * {@link DumpDelta}.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see Ipv4
+ */
+public class RouteTable {
+
+	/** returned by lookups that find nothing */
+	public static final int NONE = -1;
+
+	// trie nodes, 0 is the root
+	private int[] child0 = new int[64];
+	private int[] child1 = new int[64];
+	private int[] prefix = new int[64];
+	private byte[] length = new byte[64];
+	private int nodeCount;
+
+	// entries, by trie node
+	private boolean[] hasRoute = new boolean[64];
+	private String[] routeGateway = new String[64];
+	private String[] routeInterface = new String[64];
+	private int[] routeMetric = new int[64];
+	private int[] routeCost = new int[64];
+	private boolean[] hasHna = new boolean[64];
+	private String[] hnaGateway = new String[64];
+	private int routeCount;
+	private int hnaCount;
+
+	public RouteTable() {
+		clear();
+	}
+
+	/**
+	 * Remove every entry.
+	 */
+	public void clear() {
+		Arrays.fill(hasRoute, 0, nodeCount, false);
+		Arrays.fill(routeGateway, 0, nodeCount, null);
+		Arrays.fill(routeInterface, 0, nodeCount, null);
+		Arrays.fill(hasHna, 0, nodeCount, false);
+		Arrays.fill(hnaGateway, 0, nodeCount, null);
+		nodeCount = 1;
+		child0[0] = 0;
+		child1[0] = 0;
+		prefix[0] = 0;
+		length[0] = 0;
+		routeCount = 0;
+		hnaCount = 0;
+	}
+
+	/**
+	 * Replace the contents of the table with the routes and HNAs of a
+	 * snapshot. Either report may be null.
+	 *
+	 * @return this table
+	 */
+	public RouteTable build(OlsrDataDump dump) {
+		return build(dump.routes, dump.hna);
+	}
+
+	public RouteTable build(Collection<Route> routes, Collection<HNA> hna) {
+		clear();
+		if (routes != null)
+			for (Route r : routes)
+				putRoute(r);
+		if (hna != null)
+			for (HNA h : hna)
+				putHna(h);
+		return this;
+	}
+
+	/**
+	 * Apply the route changes between two snapshots. A {@link DumpDelta} has
+	 * no HNA changes, so those need {@link #putHna(HNA)} and
+	 * {@link #removeHna(String, int)}, or a rebuild.
+	 */
+	public void update(DumpDelta delta) {
+		for (Route r : delta.routesRemoved)
+			removeRoute(r.destination, r.genmask);
+		for (DumpDelta.Change<Route> c : delta.routesChanged)
+			putRoute(c.after);
+		for (Route r : delta.routesAdded)
+			putRoute(r);
+	}
+
+	/**
+	 * Add a route, or replace the one with the same destination and genmask.
+	 *
+	 * @return false if the destination is not an IPv4 prefix
+	 */
+	public boolean putRoute(Route r) {
+		int n = insert(r.destination, r.genmask);
+		if (n == NONE)
+			return false;
+		if (!hasRoute[n])
+			routeCount++;
+		hasRoute[n] = true;
+		routeGateway[n] = r.gateway;
+		routeInterface[n] = r.networkInterface;
+		routeMetric[n] = r.metric;
+		routeCost[n] = r.rtpMetricCost;
+		return true;
+	}
+
+	/**
+	 * @return whether there was such a route
+	 */
+	public boolean removeRoute(String destination, int genmask) {
+		int n = find(destination, genmask);
+		if (n == NONE || !hasRoute[n])
+			return false;
+		hasRoute[n] = false;
+		routeGateway[n] = null;
+		routeInterface[n] = null;
+		routeCount--;
+		return true;
+	}
+
+	/**
+	 * Add an HNA, or replace the one with the same destination and genmask.
+	 *
+	 * @return false if the destination is not an IPv4 prefix
+	 */
+	public boolean putHna(HNA h) {
+		int n = insert(h.destination, h.genmask);
+		if (n == NONE)
+			return false;
+		if (!hasHna[n])
+			hnaCount++;
+		hasHna[n] = true;
+		hnaGateway[n] = h.gateway;
+		return true;
+	}
+
+	/**
+	 * @return whether there was such an HNA
+	 */
+	public boolean removeHna(String destination, int genmask) {
+		int n = find(destination, genmask);
+		if (n == NONE || !hasHna[n])
+			return false;
+		hasHna[n] = false;
+		hnaGateway[n] = null;
+		hnaCount--;
+		return true;
+	}
+
+	/**
+	 * Find the most specific route covering an address.
+	 *
+	 * @param address a packed IPv4 address
+	 * @return a match handle, or {@link #NONE}
+	 */
+	public int lookupRoute(int address) {
+		int ret = hasRoute[0] ? 0 : NONE;
+		int n = 0;
+		for (int bit = 31; bit >= 0; bit--) {
+			n = ((address >>> bit) & 1) == 0 ? child0[n] : child1[n];
+			if (n == 0)
+				break;
+			if (hasRoute[n])
+				ret = n;
+		}
+		return ret;
+	}
+
+	public int lookupRoute(String address) {
+		long packed = Ipv4.parse(address);
+		return packed < 0 ? NONE : lookupRoute((int) packed);
+	}
+
+	/**
+	 * Find the most specific HNA covering an address.
+	 *
+	 * @param address a packed IPv4 address
+	 * @return a match handle, or {@link #NONE}
+	 */
+	public int lookupHna(int address) {
+		int ret = hasHna[0] ? 0 : NONE;
+		int n = 0;
+		for (int bit = 31; bit >= 0; bit--) {
+			n = ((address >>> bit) & 1) == 0 ? child0[n] : child1[n];
+			if (n == 0)
+				break;
+			if (hasHna[n])
+				ret = n;
+		}
+		return ret;
+	}
+
+	public int lookupHna(String address) {
+		long packed = Ipv4.parse(address);
+		return packed < 0 ? NONE : lookupHna((int) packed);
+	}
+
+	/**
+	 * @return the packed destination of a match
+	 */
+	public int destination(int match) {
+		return prefix[match];
+	}
+
+	/**
+	 * @return the prefix length of a match
+	 */
+	public int genmask(int match) {
+		return length[match];
+	}
+
+	/**
+	 * @return the gateway of the route that matched
+	 */
+	public String gateway(int match) {
+		return routeGateway[match];
+	}
+
+	public String networkInterface(int match) {
+		return routeInterface[match];
+	}
+
+	public int metric(int match) {
+		return routeMetric[match];
+	}
+
+	public int rtpMetricCost(int match) {
+		return routeCost[match];
+	}
+
+	/**
+	 * @return the gateway of the HNA that matched
+	 */
+	public String hnaGateway(int match) {
+		return hnaGateway[match];
+	}
+
+	public int routeCount() {
+		return routeCount;
+	}
+
+	public int hnaCount() {
+		return hnaCount;
+	}
+
+	/**
+	 * @return the trie node for a prefix, creating it and any nodes above it
+	 *         as needed, or {@link #NONE} if it is not an IPv4 prefix
+	 */
+	private int insert(String destination, int genmask) {
+		long packed = Ipv4.parse(destination);
+		if (packed < 0 || genmask < 0 || genmask > 32)
+			return NONE;
+		int address = (int) packed;
+		int n = 0;
+		for (int depth = 0; depth < genmask; depth++) {
+			boolean one = ((address >>> (31 - depth)) & 1) != 0;
+			int next = one ? child1[n] : child0[n];
+			if (next == 0) {
+				next = newNode(address & Ipv4.netmask(depth + 1), depth + 1);
+				if (one)
+					child1[n] = next;
+				else
+					child0[n] = next;
+			}
+			n = next;
+		}
+		return n;
+	}
+
+	private int find(String destination, int genmask) {
+		long packed = Ipv4.parse(destination);
+		if (packed < 0 || genmask < 0 || genmask > 32)
+			return NONE;
+		int address = (int) packed;
+		int n = 0;
+		for (int depth = 0; depth < genmask; depth++) {
+			n = ((address >>> (31 - depth)) & 1) == 0 ? child0[n] : child1[n];
+			if (n == 0)
+				return NONE;
+		}
+		return n;
+	}
+
+	private int newNode(int p, int len) {
+		if (nodeCount == child0.length) {
+			int size = nodeCount * 2;
+			child0 = Arrays.copyOf(child0, size);
+			child1 = Arrays.copyOf(child1, size);
+			prefix = Arrays.copyOf(prefix, size);
+			length = Arrays.copyOf(length, size);
+			hasRoute = Arrays.copyOf(hasRoute, size);
+			routeGateway = Arrays.copyOf(routeGateway, size);
+			routeInterface = Arrays.copyOf(routeInterface, size);
+			routeMetric = Arrays.copyOf(routeMetric, size);
+			routeCost = Arrays.copyOf(routeCost, size);
+			hasHna = Arrays.copyOf(hasHna, size);
+			hnaGateway = Arrays.copyOf(hnaGateway, size);
+		}
+		int n = nodeCount++;
+		child0[n] = 0;
+		child1[n] = 0;
+		prefix[n] = p;
+		length[n] = (byte) len;
+		return n;
+	}
+}
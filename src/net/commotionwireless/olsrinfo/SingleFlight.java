@@ -0,0 +1,118 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Collapse concurrent requests for the same key into a single load. The first
+ * caller for a key runs the load, and every caller that arrives while it is
+ * still running waits for it and gets the same result. If the load fails, its
+ * caller gets the error it threw, and each waiting caller gets an error of
+ * its own, with its own stack trace, of the same type where possible and
+ * caused by the original. Nothing is kept once the load has finished.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @param <V> the type of the loaded value
+ */
+class SingleFlight<V> {
+
+	/**
+	 * The work to share between concurrent callers.
+	 */
+	interface Loader<V> {
+		V load() throws IOException;
+	}
+
+	private static class Call<V> {
+		final CountDownLatch done = new CountDownLatch(1);
+		V value;
+		IOException error;
+		RuntimeException failure;
+	}
+
+	private final Map<String, Call<V>> calls = new HashMap<String, Call<V>>();
+
+	/**
+	 * Run the loader for a key, unless it is already running for that key,
+	 * in which case wait for it and return its result.
+	 *
+	 * @param key identifies requests that can share a result
+	 * @param loader the work to do if no other caller is already doing it
+	 * @return the shared result
+	 * @throws IOException if the load failed, or if interrupted while
+	 *             waiting on another caller's load
+	 */
+	V run(String key, Loader<V> loader) throws IOException {
+		Call<V> call;
+		boolean leader = false;
+		synchronized (calls) {
+			call = calls.get(key);
+			if (call == null) {
+				call = new Call<V>();
+				calls.put(key, call);
+				leader = true;
+			}
+		}
+
+		if (leader) {
+			try {
+				call.value = loader.load();
+			} catch (IOException e) {
+				call.error = e;
+			} catch (RuntimeException e) {
+				call.failure = e;
+			} finally {
+				synchronized (calls) {
+					calls.remove(key);
+				}
+				call.done.countDown();
+			}
+		} else {
+			try {
+				call.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted waiting for "
+						+ key);
+			}
+		}
+
+		if (call.error != null)
+			throw leader ? call.error : forWaiter(call.error, new IOException(
+					call.error.getMessage()));
+		if (call.failure != null)
+			throw leader ? call.failure : forWaiter(call.failure,
+					new RuntimeException(call.failure.getMessage()));
+		return call.value;
+	}
+
+	/**
+	 * Copy an error for a caller that waited on another caller's load, so
+	 * that the caller's stack trace is its own.
+	 *
+	 * @param e the error the load threw
+	 * @param fallback used if e cannot be copied, e.g. if its type has no
+	 *            public constructor taking a message
+	 * @return a copy of e, or the fallback, with e as its cause
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Exception> E forWaiter(E e, E fallback) {
+		E ret;
+		try {
+			ret = (E) e.getClass().getConstructor(String.class)
+					.newInstance(e.getMessage());
+		} catch (Exception x) {
+			ret = fallback;
+		}
+		try {
+			ret.initCause(e);
+		} catch (IllegalStateException x) {
+			// the constructor already set a cause
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,1234 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import net.commotionwireless.olsrinfo.datatypes.AddressNetmask;
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.LinkQualityMultiplier;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Plugin;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * A compact, versioned binary encoding of a complete {@link OlsrDataDump},
+ * for persisting snapshots and passing them between processes.
+ * <p>
+ * An encoded snapshot is a 4 byte magic number, a major and a minor version
+ * byte, and then a sequence of sections, one per report, each made of a tag
+ * byte and a 4 byte length. A zero tag ends the snapshot. Reports that were
+ * null in the dump have no section, and decoding leaves them null. Within a
+ * section:
+ * <ul>
+ * <li>ints and longs are zigzag varints</li>
+ * <li>floats are fixed-point with 16 fractional bits, stored as varints</li>
+ * <li>IPv4 addresses are 4 bytes, other addresses are stored as strings</li>
+ * <li>strings are stored once per section as UTF-8 and then referred to by
+ * index</li>
+ * </ul>
+ * The raw JSON text of the dump is not stored.
+ * <p>
+ * Each section can be decoded on its own. A newer minor version may add
+ * sections, or fields at the end of a section, which older decoders skip; a
+ * different major version cannot be decoded.
+ * <p>
+ * A codec reuses its buffers and string tables between calls, so the only
+ * allocations are the decoded objects themselves and the occasional growth
+ * of the buffers. It is therefore not thread-safe; use one per thread.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public class SnapshotCodec {
+
+	/** "OLSD" */
+	public static final int MAGIC = 0x4f4c5344;
+	public static final int VERSION = 2;
+	public static final int MINOR_VERSION = 0;
+
+	public static final int SECTION_HEADER = 1 << 1;
+	public static final int SECTION_CONFIG = 1 << 2;
+	public static final int SECTION_GATEWAYS = 1 << 3;
+	public static final int SECTION_HNA = 1 << 4;
+	public static final int SECTION_INTERFACES = 1 << 5;
+	public static final int SECTION_LINKS = 1 << 6;
+	public static final int SECTION_MID = 1 << 7;
+	public static final int SECTION_NEIGHBORS = 1 << 8;
+	public static final int SECTION_TOPOLOGY = 1 << 9;
+	public static final int SECTION_PLUGINS = 1 << 10;
+	public static final int SECTION_ROUTES = 1 << 11;
+	public static final int ALL_SECTIONS = 0xffe;
+
+	private static final int TAG_END = 0;
+	private static final int TAG_HEADER = 1;
+	private static final int TAG_CONFIG = 2;
+	private static final int TAG_GATEWAYS = 3;
+	private static final int TAG_HNA = 4;
+	private static final int TAG_INTERFACES = 5;
+	private static final int TAG_LINKS = 6;
+	private static final int TAG_MID = 7;
+	private static final int TAG_NEIGHBORS = 8;
+	private static final int TAG_TOPOLOGY = 9;
+	private static final int TAG_PLUGINS = 10;
+	private static final int TAG_ROUTES = 11;
+
+	private static final int ADDRESS_NULL = 0;
+	private static final int ADDRESS_STRING = 1;
+	private static final int ADDRESS_IPV4 = 4;
+
+	private static final float FIXED_ONE = 65536f;
+	private static final int ADDRESS_CACHE_SIZE = 256;
+
+	private byte[] buf = new byte[4096];
+	private int pos;
+	private int limit;
+
+	// encoder string table, open addressing
+	private String[] encKeys = new String[256];
+	private int[] encValues = new int[256];
+	private int encCount;
+
+	// decoder string table, by index
+	private String[] decStrings = new String[64];
+	private int decCount;
+	private char[] chars = new char[64];
+
+	// recently decoded IPv4 addresses, direct-mapped
+	private final int[] addressKeys = new int[ADDRESS_CACHE_SIZE];
+	private final String[] addressValues = new String[ADDRESS_CACHE_SIZE];
+
+	/**
+	 * Encode every report of a dump into this codec's buffer.
+	 *
+	 * @return the length of the encoding, which starts at offset 0 of
+	 *         {@link #buffer()}
+	 */
+	public int encode(OlsrDataDump dump) {
+		return encode(dump, ALL_SECTIONS);
+	}
+
+	/**
+	 * Encode some of the reports of a dump into this codec's buffer.
+	 *
+	 * @param sections the <tt>SECTION_*</tt> flags of the reports to encode
+	 * @return the length of the encoding, which starts at offset 0 of
+	 *         {@link #buffer()}
+	 */
+	public int encode(OlsrDataDump dump, int sections) {
+		pos = 0;
+		clearStrings();
+		writeRawInt(MAGIC);
+		writeByte(VERSION);
+		writeByte(MINOR_VERSION);
+		if ((sections & SECTION_HEADER) != 0) {
+			int start = beginSection(TAG_HEADER);
+			writeInt(dump.systemTime);
+			writeInt(dump.timeSinceStartup);
+			writeString(dump.uuid);
+			endSection(start);
+		}
+		if ((sections & SECTION_CONFIG) != 0 && dump.config != null) {
+			int start = beginSection(TAG_CONFIG);
+			writeConfig(dump.config);
+			endSection(start);
+		}
+		if ((sections & SECTION_GATEWAYS) != 0 && dump.gateways != null) {
+			int start = beginSection(TAG_GATEWAYS);
+			writeCount(dump.gateways);
+			for (Gateway e : dump.gateways)
+				writeGateway(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_HNA) != 0 && dump.hna != null) {
+			int start = beginSection(TAG_HNA);
+			writeCount(dump.hna);
+			for (HNA e : dump.hna)
+				writeHNA(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_INTERFACES) != 0 && dump.interfaces != null) {
+			int start = beginSection(TAG_INTERFACES);
+			writeCount(dump.interfaces);
+			for (Interface e : dump.interfaces)
+				writeInterface(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_LINKS) != 0 && dump.links != null) {
+			int start = beginSection(TAG_LINKS);
+			writeCount(dump.links);
+			for (Link e : dump.links)
+				writeLink(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_MID) != 0 && dump.mid != null) {
+			int start = beginSection(TAG_MID);
+			writeCount(dump.mid);
+			for (MID e : dump.mid)
+				writeMID(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_NEIGHBORS) != 0 && dump.neighbors != null) {
+			int start = beginSection(TAG_NEIGHBORS);
+			writeCount(dump.neighbors);
+			for (Neighbor e : dump.neighbors)
+				writeNeighbor(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_TOPOLOGY) != 0 && dump.topology != null) {
+			int start = beginSection(TAG_TOPOLOGY);
+			writeCount(dump.topology);
+			for (Node e : dump.topology)
+				writeNode(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_PLUGINS) != 0 && dump.plugins != null) {
+			int start = beginSection(TAG_PLUGINS);
+			writeCount(dump.plugins);
+			for (Plugin e : dump.plugins)
+				writePlugin(e);
+			endSection(start);
+		}
+		if ((sections & SECTION_ROUTES) != 0 && dump.routes != null) {
+			int start = beginSection(TAG_ROUTES);
+			writeCount(dump.routes);
+			for (Route e : dump.routes)
+				writeRoute(e);
+			endSection(start);
+		}
+		writeByte(TAG_END);
+		return pos;
+	}
+
+	/**
+	 * @return the buffer holding the last encoding. It is reused by the next
+	 *         call to <tt>encode</tt>.
+	 */
+	public byte[] buffer() {
+		return buf;
+	}
+
+	/**
+	 * Encode a dump into a new array of exactly the right size.
+	 */
+	public byte[] toByteArray(OlsrDataDump dump) {
+		// encode first, as it may replace the buffer
+		int length = encode(dump);
+		return Arrays.copyOf(buf, length);
+	}
+
+	/**
+	 * Encode a dump and write it to a stream.
+	 */
+	public void write(OlsrDataDump dump, OutputStream out) throws IOException {
+		int length = encode(dump);
+		out.write(buf, 0, length);
+	}
+
+	/**
+	 * Decode a snapshot into a new {@link OlsrDataDump}.
+	 *
+	 * @throws IOException if the data is not a valid snapshot
+	 */
+	public OlsrDataDump decode(byte[] b, int off, int len) throws IOException {
+		return decode(b, off, len, new OlsrDataDump());
+	}
+
+	/**
+	 * Decode a snapshot into an existing {@link OlsrDataDump}. Only the
+	 * reports present in the snapshot are replaced; the rest of the dump is
+	 * left as it was.
+	 *
+	 * @return the dump that was passed in
+	 * @throws IOException if the data is not a valid snapshot
+	 */
+	public OlsrDataDump decode(byte[] b, int off, int len, OlsrDataDump ret)
+			throws IOException {
+		byte[] saved = buf;
+		buf = b;
+		pos = off;
+		limit = off + len;
+		try {
+			if (readRawInt() != MAGIC)
+				throw new IOException("not an olsrd snapshot");
+			int version = readByte();
+			if (version != VERSION)
+				throw new IOException("unsupported snapshot version " + version);
+			boolean newer = readByte() > MINOR_VERSION;
+			int tag;
+			while ((tag = readByte()) != TAG_END) {
+				int length = readRawInt();
+				if (length < 0 || length > limit - pos)
+					throw new IOException("truncated snapshot");
+				int end = pos + length;
+				decCount = 0;
+				switch (tag) {
+				case TAG_HEADER:
+					ret.systemTime = readInt();
+					ret.timeSinceStartup = readInt();
+					ret.uuid = readString();
+					break;
+				case TAG_CONFIG:
+					ret.config = readConfig();
+					break;
+				case TAG_GATEWAYS: {
+					int n = readSize();
+					List<Gateway> l = new ArrayList<Gateway>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readGateway());
+					ret.gateways = l;
+					break;
+				}
+				case TAG_HNA: {
+					int n = readSize();
+					List<HNA> l = new ArrayList<HNA>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readHNA());
+					ret.hna = l;
+					break;
+				}
+				case TAG_INTERFACES: {
+					int n = readSize();
+					List<Interface> l = new ArrayList<Interface>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readInterface());
+					ret.interfaces = l;
+					break;
+				}
+				case TAG_LINKS: {
+					int n = readSize();
+					List<Link> l = new ArrayList<Link>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readLink());
+					ret.links = l;
+					break;
+				}
+				case TAG_MID: {
+					int n = readSize();
+					List<MID> l = new ArrayList<MID>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readMID());
+					ret.mid = l;
+					break;
+				}
+				case TAG_NEIGHBORS: {
+					int n = readSize();
+					List<Neighbor> l = new ArrayList<Neighbor>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readNeighbor());
+					ret.neighbors = l;
+					break;
+				}
+				case TAG_TOPOLOGY: {
+					int n = readSize();
+					List<Node> l = new ArrayList<Node>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readNode());
+					ret.topology = l;
+					break;
+				}
+				case TAG_PLUGINS: {
+					int n = readSize();
+					List<Plugin> l = new ArrayList<Plugin>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readPlugin());
+					ret.plugins = l;
+					break;
+				}
+				case TAG_ROUTES: {
+					int n = readSize();
+					List<Route> l = new ArrayList<Route>(n);
+					for (int i = 0; i < n; i++)
+						l.add(readRoute());
+					ret.routes = l;
+					break;
+				}
+				default:
+					// a section from a newer writer, skip it
+					break;
+				}
+				if (pos != end) {
+					// a newer writer may have added fields at the end
+					if (pos > end || (tag <= TAG_ROUTES && !newer))
+						throw new IOException("corrupt snapshot section " + tag);
+					pos = end;
+				}
+			}
+			return ret;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("truncated snapshot");
+		} finally {
+			buf = saved;
+		}
+	}
+
+	/**
+	 * @return the <tt>SECTION_*</tt> flags of the reports that are present,
+	 *         i.e. not null, in a dump
+	 */
+	public static int sectionsOf(OlsrDataDump dump) {
+		int ret = SECTION_HEADER;
+		if (dump.config != null)
+			ret |= SECTION_CONFIG;
+		if (dump.gateways != null)
+			ret |= SECTION_GATEWAYS;
+		if (dump.hna != null)
+			ret |= SECTION_HNA;
+		if (dump.interfaces != null)
+			ret |= SECTION_INTERFACES;
+		if (dump.links != null)
+			ret |= SECTION_LINKS;
+		if (dump.mid != null)
+			ret |= SECTION_MID;
+		if (dump.neighbors != null)
+			ret |= SECTION_NEIGHBORS;
+		if (dump.topology != null)
+			ret |= SECTION_TOPOLOGY;
+		if (dump.plugins != null)
+			ret |= SECTION_PLUGINS;
+		if (dump.routes != null)
+			ret |= SECTION_ROUTES;
+		return ret;
+	}
+
+	private void writeConfig(Config v) {
+		writeInt(v.olsrPort);
+		writeInt(v.debugLevel);
+		writeBoolean(v.noFork);
+		writeBoolean(v.hostEmulation);
+		writeInt(v.ipVersion);
+		writeBoolean(v.allowNoInterfaces);
+		writeInt(v.typeOfService);
+		writeInt(v.rtProto);
+		writeInt(v.rtTable);
+		writeInt(v.rtTableDefault);
+		writeInt(v.rtTableTunnel);
+		writeInt(v.rtTablePriority);
+		writeInt(v.rtTableTunnelPriority);
+		writeInt(v.rtTableDefauiltOlsrPriority);
+		writeInt(v.rtTableDefaultPriority);
+		writeInt(v.willingness);
+		writeBoolean(v.willingnessAuto);
+		writeLong(v.brokenLinkCost);
+		writeLong(v.brokenRouteCost);
+		writeString(v.fibMetrics);
+		writeString(v.defaultIpv6Multicast);
+		writeAddress(v.defaultIpv4Broadcast);
+		writeString(v.defaultInterfaceMode);
+		writeFixed(v.defaultHelloEmissionInterval);
+		writeFixed(v.defaultHelloValidityTime);
+		writeFixed(v.defaultTcEmissionInterval);
+		writeFixed(v.defaultTcValidityTime);
+		writeFixed(v.defaultMidEmissionInterval);
+		writeFixed(v.defaultMidValidityTime);
+		writeFixed(v.defaultHnaEmissionInterval);
+		writeFixed(v.defaultHnaValidityTime);
+		writeBoolean(v.defaultAutoDetectChanges);
+		if (writeCount(v.defaultLinkQualityMultipliers))
+			for (LinkQualityMultiplier e : v.defaultLinkQualityMultipliers)
+				writeLinkQualityMultiplier(e);
+		if (writeCount(v.hna))
+			for (HNA e : v.hna)
+				writeHNA(e);
+		writeInt(v.ipcConnections);
+		writeInt(v.totalIpcConnectionsAllowed);
+		if (writeCount(v.ipcAllowedAddresses))
+			for (AddressNetmask e : v.ipcAllowedAddresses)
+				writeAddressNetmask(e);
+		writeInt(v.pollRate);
+		writeInt(v.nicChangePollInterval);
+		writeBoolean(v.clearScreen);
+		writeInt(v.tcRedundancy);
+		writeInt(v.mprCoverage);
+		writeInt(v.linkQualityLevel);
+		writeBoolean(v.linkQualityFisheye);
+		writeFixed(v.linkQualityAging);
+		writeString(v.linkQualityAlgorithm);
+		writeInt(v.minTcValidTime);
+		writeBoolean(v.setIpForward);
+		writeString(v.lockFile);
+		writeBoolean(v.useNiit);
+		writeBoolean(v.smartGateway);
+		writeAddress(v.mainIpAddress);
+		writeAddress(v.unicastSourceIpAddress);
+		writeBoolean(v.useSourceIpRoutes);
+		writeInt(v.maxPrefixLength);
+		writeInt(v.ipSize);
+		writeBoolean(v.deleteInternetGatewaysAtStartup);
+		writeInt(v.willingnessUpdateInterval);
+		writeFixed(v.maxSendMessageJitter);
+		writeInt(v.exitValue);
+		writeInt(v.maxTcValidTime);
+		writeInt(v.niit4to6InterfaceIndex);
+		writeInt(v.niit6to4InterfaceIndex);
+		writeBoolean(v.hasIpv4Gateway);
+		writeBoolean(v.hasIpv6Gateway);
+		writeInt(v.ioctlSocket);
+		writeInt(v.routeNetlinkSocket);
+		writeInt(v.routeMonitorSocket);
+		writeFixed(v.linkQualityNatThreshold);
+		writeString(v.olsrdVersion);
+		writeString(v.olsrdBuildDate);
+		writeString(v.olsrdBuildHost);
+		writeString(v.os);
+		writeInt(v.startTime);
+	}
+
+	private Config readConfig() throws IOException {
+		Config v = new Config();
+		v.olsrPort = readInt();
+		v.debugLevel = readInt();
+		v.noFork = readBoolean();
+		v.hostEmulation = readBoolean();
+		v.ipVersion = readInt();
+		v.allowNoInterfaces = readBoolean();
+		v.typeOfService = readInt();
+		v.rtProto = readInt();
+		v.rtTable = readInt();
+		v.rtTableDefault = readInt();
+		v.rtTableTunnel = readInt();
+		v.rtTablePriority = readInt();
+		v.rtTableTunnelPriority = readInt();
+		v.rtTableDefauiltOlsrPriority = readInt();
+		v.rtTableDefaultPriority = readInt();
+		v.willingness = readInt();
+		v.willingnessAuto = readBoolean();
+		v.brokenLinkCost = readLong();
+		v.brokenRouteCost = readLong();
+		v.fibMetrics = readString();
+		v.defaultIpv6Multicast = readString();
+		v.defaultIpv4Broadcast = readAddress();
+		v.defaultInterfaceMode = readString();
+		v.defaultHelloEmissionInterval = readFixed();
+		v.defaultHelloValidityTime = readFixed();
+		v.defaultTcEmissionInterval = readFixed();
+		v.defaultTcValidityTime = readFixed();
+		v.defaultMidEmissionInterval = readFixed();
+		v.defaultMidValidityTime = readFixed();
+		v.defaultHnaEmissionInterval = readFixed();
+		v.defaultHnaValidityTime = readFixed();
+		v.defaultAutoDetectChanges = readBoolean();
+		int defaultLinkQualityMultipliersCount = readCount();
+		if (defaultLinkQualityMultipliersCount >= 0) {
+			List<LinkQualityMultiplier> l = new ArrayList<LinkQualityMultiplier>(defaultLinkQualityMultipliersCount);
+			for (int i = 0; i < defaultLinkQualityMultipliersCount; i++)
+				l.add(readLinkQualityMultiplier());
+			v.defaultLinkQualityMultipliers = l;
+		}
+		int hnaCount = readCount();
+		if (hnaCount >= 0) {
+			List<HNA> l = new ArrayList<HNA>(hnaCount);
+			for (int i = 0; i < hnaCount; i++)
+				l.add(readHNA());
+			v.hna = l;
+		}
+		v.ipcConnections = readInt();
+		v.totalIpcConnectionsAllowed = readInt();
+		int ipcAllowedAddressesCount = readCount();
+		if (ipcAllowedAddressesCount >= 0) {
+			List<AddressNetmask> l = new ArrayList<AddressNetmask>(ipcAllowedAddressesCount);
+			for (int i = 0; i < ipcAllowedAddressesCount; i++)
+				l.add(readAddressNetmask());
+			v.ipcAllowedAddresses = l;
+		}
+		v.pollRate = readInt();
+		v.nicChangePollInterval = readInt();
+		v.clearScreen = readBoolean();
+		v.tcRedundancy = readInt();
+		v.mprCoverage = readInt();
+		v.linkQualityLevel = readInt();
+		v.linkQualityFisheye = readBoolean();
+		v.linkQualityAging = readFixed();
+		v.linkQualityAlgorithm = readString();
+		v.minTcValidTime = readInt();
+		v.setIpForward = readBoolean();
+		v.lockFile = readString();
+		v.useNiit = readBoolean();
+		v.smartGateway = readBoolean();
+		v.mainIpAddress = readAddress();
+		v.unicastSourceIpAddress = readAddress();
+		v.useSourceIpRoutes = readBoolean();
+		v.maxPrefixLength = readInt();
+		v.ipSize = readInt();
+		v.deleteInternetGatewaysAtStartup = readBoolean();
+		v.willingnessUpdateInterval = readInt();
+		v.maxSendMessageJitter = readFixed();
+		v.exitValue = readInt();
+		v.maxTcValidTime = readInt();
+		v.niit4to6InterfaceIndex = readInt();
+		v.niit6to4InterfaceIndex = readInt();
+		v.hasIpv4Gateway = readBoolean();
+		v.hasIpv6Gateway = readBoolean();
+		v.ioctlSocket = readInt();
+		v.routeNetlinkSocket = readInt();
+		v.routeMonitorSocket = readInt();
+		v.linkQualityNatThreshold = readFixed();
+		v.olsrdVersion = readString();
+		v.olsrdBuildDate = readString();
+		v.olsrdBuildHost = readString();
+		v.os = readString();
+		v.startTime = readInt();
+		return v;
+	}
+
+	private void writeGateway(Gateway v) {
+		writeString(v.ipv4Status);
+		writeString(v.ipv6Status);
+		writeString(v.ipType);
+		writeBoolean(v.ipv4);
+		writeBoolean(v.ipv4Nat);
+		writeBoolean(v.ipv6);
+		writeAddress(v.ipAddress);
+		writeInt(v.tcPathCost);
+		writeInt(v.hopCount);
+		writeInt(v.uplinkSpeed);
+		writeInt(v.downlinkSpeed);
+		writeString(v.externalPrefix);
+	}
+
+	private Gateway readGateway() throws IOException {
+		Gateway v = new Gateway();
+		v.ipv4Status = readString();
+		v.ipv6Status = readString();
+		v.ipType = readString();
+		v.ipv4 = readBoolean();
+		v.ipv4Nat = readBoolean();
+		v.ipv6 = readBoolean();
+		v.ipAddress = readAddress();
+		v.tcPathCost = readInt();
+		v.hopCount = readInt();
+		v.uplinkSpeed = readInt();
+		v.downlinkSpeed = readInt();
+		v.externalPrefix = readString();
+		return v;
+	}
+
+	private void writeHNA(HNA v) {
+		writeAddress(v.destination);
+		writeInt(v.genmask);
+		writeAddress(v.gateway);
+		writeInt(v.validityTime);
+	}
+
+	private HNA readHNA() throws IOException {
+		HNA v = new HNA();
+		v.destination = readAddress();
+		v.genmask = readInt();
+		v.gateway = readAddress();
+		v.validityTime = readInt();
+		return v;
+	}
+
+	private void writeInterface(Interface v) {
+		writeString(v.name);
+		writeString(v.nameFromKernel);
+		writeInt(v.interfaceMode);
+		writeBoolean(v.emulatedHostClientInterface);
+		writeBoolean(v.sendTcImmediately);
+		writeInt(v.fishEyeTtlIndex);
+		writeInt(v.olsrForwardingTimeout);
+		writeInt(v.olsrMessageSequenceNumber);
+		if (writeCount(v.linkQualityMultipliers))
+			for (LinkQualityMultiplier e : v.linkQualityMultipliers)
+				writeLinkQualityMultiplier(e);
+		writeInt(v.olsrInterfaceMetric);
+		writeInt(v.helloEmissionInterval);
+		writeInt(v.helloValidityTime);
+		writeInt(v.tcValidityTime);
+		writeInt(v.midValidityTime);
+		writeInt(v.hnaValidityTime);
+		writeString(v.state);
+		writeInt(v.mtu);
+		writeInt(v.olsrMTU);
+		writeBoolean(v.wireless);
+		writeAddress(v.ipv4Address);
+		writeAddress(v.netmask);
+		writeAddress(v.broadcast);
+		writeString(v.ipv6Address);
+		writeString(v.multicast);
+		writeBoolean(v.icmpRedirect);
+		writeBoolean(v.spoofFilter);
+		writeString(v.kernelModule);
+		writeInt(v.addressLength);
+		writeInt(v.carrier);
+		writeInt(v.dormant);
+		writeString(v.features);
+		writeString(v.flags);
+		writeInt(v.linkMode);
+		writeString(v.macAddress);
+		writeInt(v.ethernetMTU);
+		writeString(v.operationalState);
+		writeInt(v.txQueueLength);
+		writeInt(v.collisions);
+		writeInt(v.multicastPackets);
+		writeInt(v.rxBytes);
+		writeInt(v.rxCompressed);
+		writeInt(v.rxCrcErrors);
+		writeInt(v.rxDropped);
+		writeInt(v.rxErrors);
+		writeInt(v.rxFifoErrors);
+		writeInt(v.rxFrameErrors);
+		writeInt(v.rxLengthErrors);
+		writeInt(v.rxMissedErrors);
+		writeInt(v.rxOverErrors);
+		writeInt(v.rxPackets);
+		writeInt(v.txAbortedErrors);
+		writeInt(v.txBytes);
+		writeInt(v.txCarrierErrors);
+		writeInt(v.txCompressed);
+		writeInt(v.txDropped);
+		writeInt(v.txErrors);
+		writeInt(v.txFifoErrors);
+		writeInt(v.txHeartbeatErrors);
+		writeInt(v.txPackets);
+		writeInt(v.txWindowErrors);
+		writeInt(v.beaconing);
+		writeInt(v.encryptionKey);
+		writeInt(v.fragmentationThreshold);
+		writeInt(v.signalLevel);
+		writeInt(v.linkQuality);
+		writeInt(v.misc);
+		writeInt(v.noiseLevel);
+		writeInt(v.nwid);
+		writeInt(v.wirelessRetries);
+		writeString(v.wirelessStatus);
+	}
+
+	private Interface readInterface() throws IOException {
+		Interface v = new Interface();
+		v.name = readString();
+		v.nameFromKernel = readString();
+		v.interfaceMode = readInt();
+		v.emulatedHostClientInterface = readBoolean();
+		v.sendTcImmediately = readBoolean();
+		v.fishEyeTtlIndex = readInt();
+		v.olsrForwardingTimeout = readInt();
+		v.olsrMessageSequenceNumber = readInt();
+		int linkQualityMultipliersCount = readCount();
+		if (linkQualityMultipliersCount >= 0) {
+			List<LinkQualityMultiplier> l = new ArrayList<LinkQualityMultiplier>(linkQualityMultipliersCount);
+			for (int i = 0; i < linkQualityMultipliersCount; i++)
+				l.add(readLinkQualityMultiplier());
+			v.linkQualityMultipliers = l;
+		}
+		v.olsrInterfaceMetric = readInt();
+		v.helloEmissionInterval = readInt();
+		v.helloValidityTime = readInt();
+		v.tcValidityTime = readInt();
+		v.midValidityTime = readInt();
+		v.hnaValidityTime = readInt();
+		v.state = readString();
+		v.mtu = readInt();
+		v.olsrMTU = readInt();
+		v.wireless = readBoolean();
+		v.ipv4Address = readAddress();
+		v.netmask = readAddress();
+		v.broadcast = readAddress();
+		v.ipv6Address = readString();
+		v.multicast = readString();
+		v.icmpRedirect = readBoolean();
+		v.spoofFilter = readBoolean();
+		v.kernelModule = readString();
+		v.addressLength = readInt();
+		v.carrier = readInt();
+		v.dormant = readInt();
+		v.features = readString();
+		v.flags = readString();
+		v.linkMode = readInt();
+		v.macAddress = readString();
+		v.ethernetMTU = readInt();
+		v.operationalState = readString();
+		v.txQueueLength = readInt();
+		v.collisions = readInt();
+		v.multicastPackets = readInt();
+		v.rxBytes = readInt();
+		v.rxCompressed = readInt();
+		v.rxCrcErrors = readInt();
+		v.rxDropped = readInt();
+		v.rxErrors = readInt();
+		v.rxFifoErrors = readInt();
+		v.rxFrameErrors = readInt();
+		v.rxLengthErrors = readInt();
+		v.rxMissedErrors = readInt();
+		v.rxOverErrors = readInt();
+		v.rxPackets = readInt();
+		v.txAbortedErrors = readInt();
+		v.txBytes = readInt();
+		v.txCarrierErrors = readInt();
+		v.txCompressed = readInt();
+		v.txDropped = readInt();
+		v.txErrors = readInt();
+		v.txFifoErrors = readInt();
+		v.txHeartbeatErrors = readInt();
+		v.txPackets = readInt();
+		v.txWindowErrors = readInt();
+		v.beaconing = readInt();
+		v.encryptionKey = readInt();
+		v.fragmentationThreshold = readInt();
+		v.signalLevel = readInt();
+		v.linkQuality = readInt();
+		v.misc = readInt();
+		v.noiseLevel = readInt();
+		v.nwid = readInt();
+		v.wirelessRetries = readInt();
+		v.wirelessStatus = readString();
+		return v;
+	}
+
+	private void writeLink(Link v) {
+		writeAddress(v.localIP);
+		writeAddress(v.remoteIP);
+		writeInt(v.validityTime);
+		writeFixed(v.linkQuality);
+		writeFixed(v.neighborLinkQuality);
+		writeInt(v.linkCost);
+	}
+
+	private Link readLink() throws IOException {
+		Link v = new Link();
+		v.localIP = readAddress();
+		v.remoteIP = readAddress();
+		v.validityTime = readInt();
+		v.linkQuality = readFixed();
+		v.neighborLinkQuality = readFixed();
+		v.linkCost = readInt();
+		return v;
+	}
+
+	private void writeLinkQualityMultiplier(LinkQualityMultiplier v) {
+		writeString(v.route);
+		writeFixed(v.multiplier);
+	}
+
+	private LinkQualityMultiplier readLinkQualityMultiplier() throws IOException {
+		LinkQualityMultiplier v = new LinkQualityMultiplier();
+		v.route = readString();
+		v.multiplier = readFixed();
+		return v;
+	}
+
+	private void writeAddressNetmask(AddressNetmask v) {
+		writeAddress(v.ipAddress);
+		writeInt(v.netmask);
+	}
+
+	private AddressNetmask readAddressNetmask() throws IOException {
+		AddressNetmask v = new AddressNetmask();
+		v.ipAddress = readAddress();
+		v.netmask = readInt();
+		return v;
+	}
+
+	private void writeMID(MID v) {
+		writeAddress(v.ipAddress);
+		if (writeCount(v.aliases))
+			for (MIDAlias e : v.aliases)
+				writeMIDAlias(e);
+	}
+
+	private MID readMID() throws IOException {
+		MID v = new MID();
+		v.ipAddress = readAddress();
+		int aliasesCount = readCount();
+		if (aliasesCount >= 0) {
+			List<MIDAlias> l = new ArrayList<MIDAlias>(aliasesCount);
+			for (int i = 0; i < aliasesCount; i++)
+				l.add(readMIDAlias());
+			v.aliases = l;
+		}
+		return v;
+	}
+
+	private void writeMIDAlias(MIDAlias v) {
+		writeAddress(v.ipAddress);
+		writeInt(v.validityTime);
+	}
+
+	private MIDAlias readMIDAlias() throws IOException {
+		MIDAlias v = new MIDAlias();
+		v.ipAddress = readAddress();
+		v.validityTime = readInt();
+		return v;
+	}
+
+	private void writeNeighbor(Neighbor v) {
+		writeAddress(v.ipv4Address);
+		writeBoolean(v.symmetric);
+		writeBoolean(v.multiPointRelay);
+		writeBoolean(v.multiPointRelaySelector);
+		writeInt(v.willingness);
+		writeInt(v.twoHopNeighborCount);
+		if (writeCount(v.twoHopNeighbors))
+			for (String s : v.twoHopNeighbors)
+				writeAddress(s);
+	}
+
+	private Neighbor readNeighbor() throws IOException {
+		Neighbor v = new Neighbor();
+		v.ipv4Address = readAddress();
+		v.symmetric = readBoolean();
+		v.multiPointRelay = readBoolean();
+		v.multiPointRelaySelector = readBoolean();
+		v.willingness = readInt();
+		v.twoHopNeighborCount = readInt();
+		int twoHopNeighborsCount = readCount();
+		if (twoHopNeighborsCount >= 0) {
+			List<String> l = new ArrayList<String>(twoHopNeighborsCount);
+			for (int i = 0; i < twoHopNeighborsCount; i++)
+				l.add(readAddress());
+			v.twoHopNeighbors = l;
+		}
+		return v;
+	}
+
+	private void writeNode(Node v) {
+		writeAddress(v.destinationIP);
+		writeAddress(v.lastHopIP);
+		writeFixed(v.linkQuality);
+		writeFixed(v.neighborLinkQuality);
+		writeInt(v.tcEdgeCost);
+		writeInt(v.validityTime);
+	}
+
+	private Node readNode() throws IOException {
+		Node v = new Node();
+		v.destinationIP = readAddress();
+		v.lastHopIP = readAddress();
+		v.linkQuality = readFixed();
+		v.neighborLinkQuality = readFixed();
+		v.tcEdgeCost = readInt();
+		v.validityTime = readInt();
+		return v;
+	}
+
+	private void writePlugin(Plugin v) {
+		writeString(v.plugin);
+		writeString(v.host);
+		writeString(v.net);
+		writeString(v.ping);
+		writeString(v.hna);
+		writeString(v.accept);
+		writeInt(v.port);
+		writeString(v.uuidfile);
+		writeString(v.keyfile);
+		writeInt(v.checkinterval);
+		writeInt(v.pinginterval);
+	}
+
+	private Plugin readPlugin() throws IOException {
+		Plugin v = new Plugin();
+		v.plugin = readString();
+		v.host = readString();
+		v.net = readString();
+		v.ping = readString();
+		v.hna = readString();
+		v.accept = readString();
+		v.port = readInt();
+		v.uuidfile = readString();
+		v.keyfile = readString();
+		v.checkinterval = readInt();
+		v.pinginterval = readInt();
+		return v;
+	}
+
+	private void writeRoute(Route v) {
+		writeAddress(v.destination);
+		writeInt(v.genmask);
+		writeAddress(v.gateway);
+		writeInt(v.metric);
+		writeInt(v.rtpMetricCost);
+		writeString(v.networkInterface);
+	}
+
+	private Route readRoute() throws IOException {
+		Route v = new Route();
+		v.destination = readAddress();
+		v.genmask = readInt();
+		v.gateway = readAddress();
+		v.metric = readInt();
+		v.rtpMetricCost = readInt();
+		v.networkInterface = readString();
+		return v;
+	}
+
+	private void ensure(int n) {
+		if (pos + n > buf.length)
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+	}
+
+	private void writeByte(int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+	}
+
+	private void writeRawInt(int v) {
+		ensure(4);
+		buf[pos++] = (byte) (v >>> 24);
+		buf[pos++] = (byte) (v >>> 16);
+		buf[pos++] = (byte) (v >>> 8);
+		buf[pos++] = (byte) v;
+	}
+
+	private int beginSection(int tag) {
+		clearStrings();
+		writeByte(tag);
+		writeRawInt(0);
+		return pos;
+	}
+
+	private void endSection(int start) {
+		int length = pos - start;
+		buf[start - 4] = (byte) (length >>> 24);
+		buf[start - 3] = (byte) (length >>> 16);
+		buf[start - 2] = (byte) (length >>> 8);
+		buf[start - 1] = (byte) length;
+	}
+
+	private void writeVarLong(long v) {
+		ensure(10);
+		while ((v & ~0x7fL) != 0) {
+			buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	private void writeInt(int v) {
+		writeVarLong(((v << 1) ^ (v >> 31)) & 0xffffffffL);
+	}
+
+	private void writeLong(long v) {
+		writeVarLong((v << 1) ^ (v >> 63));
+	}
+
+	private void writeBoolean(boolean v) {
+		writeByte(v ? 1 : 0);
+	}
+
+	private void writeFixed(float v) {
+		writeLong(Math.round((double) v * FIXED_ONE));
+	}
+
+	/**
+	 * Write the size of a collection, or that it is null.
+	 *
+	 * @return whether the collection is not null
+	 */
+	private boolean writeCount(Collection<?> c) {
+		writeVarLong(c == null ? 0 : c.size() + 1);
+		return c != null;
+	}
+
+	/**
+	 * Strings are written as 0 for null, 1 followed by the UTF-8 length and
+	 * bytes the first time, and as their index plus 2 after that.
+	 */
+	private void writeString(String s) {
+		if (s == null) {
+			writeVarLong(0);
+			return;
+		}
+		int mask = encKeys.length - 1;
+		int i = s.hashCode() & mask;
+		while (encKeys[i] != null) {
+			if (encKeys[i].equals(s)) {
+				writeVarLong(encValues[i] + 2);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		encKeys[i] = s;
+		encValues[i] = encCount++;
+		if (encCount * 2 > encKeys.length)
+			growStrings();
+
+		writeVarLong(1);
+		int length = 0;
+		for (int j = 0; j < s.length(); j++) {
+			char c = s.charAt(j);
+			length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+		}
+		writeVarLong(length);
+		ensure(length);
+		for (int j = 0; j < s.length(); j++) {
+			char c = s.charAt(j);
+			if (c < 0x80) {
+				buf[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				buf[pos++] = (byte) (0xc0 | (c >> 6));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+			} else {
+				// surrogates are written as-is, like modified UTF-8
+				buf[pos++] = (byte) (0xe0 | (c >> 12));
+				buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	private void writeAddress(String s) {
+		if (s == null) {
+			writeByte(ADDRESS_NULL);
+			return;
+		}
+		long address = Ipv4.parse(s);
+		if (address < 0) {
+			writeByte(ADDRESS_STRING);
+			writeString(s);
+		} else {
+			writeByte(ADDRESS_IPV4);
+			writeRawInt((int) address);
+		}
+	}
+
+	private void clearStrings() {
+		if (encCount > 0) {
+			Arrays.fill(encKeys, null);
+			encCount = 0;
+		}
+	}
+
+	private void growStrings() {
+		String[] keys = encKeys;
+		int[] values = encValues;
+		encKeys = new String[keys.length * 2];
+		encValues = new int[keys.length * 2];
+		int mask = encKeys.length - 1;
+		for (int j = 0; j < keys.length; j++) {
+			if (keys[j] == null)
+				continue;
+			int i = keys[j].hashCode() & mask;
+			while (encKeys[i] != null)
+				i = (i + 1) & mask;
+			encKeys[i] = keys[j];
+			encValues[i] = values[j];
+		}
+	}
+
+	private int readByte() throws IOException {
+		if (pos >= limit)
+			throw new IOException("truncated snapshot");
+		return buf[pos++] & 0xff;
+	}
+
+	private int readRawInt() throws IOException {
+		if (pos + 4 > limit)
+			throw new IOException("truncated snapshot");
+		return ((buf[pos++] & 0xff) << 24) | ((buf[pos++] & 0xff) << 16)
+				| ((buf[pos++] & 0xff) << 8) | (buf[pos++] & 0xff);
+	}
+
+	private long readVarLong() throws IOException {
+		long ret = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			ret |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return ret;
+		}
+		throw new IOException("corrupt varint in snapshot");
+	}
+
+	private int readInt() throws IOException {
+		int v = (int) readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private long readLong() throws IOException {
+		long v = readVarLong();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	private float readFixed() throws IOException {
+		return readLong() / FIXED_ONE;
+	}
+
+	/**
+	 * @return the size of a collection, or -1 if it was null
+	 */
+	private int readCount() throws IOException {
+		long n = readVarLong() - 1;
+		// every element takes at least a byte
+		if (n < -1 || n > limit - pos)
+			throw new IOException("corrupt count in snapshot");
+		return (int) n;
+	}
+
+	/**
+	 * @return the size of a collection that cannot be null
+	 */
+	private int readSize() throws IOException {
+		int n = readCount();
+		if (n < 0)
+			throw new IOException("corrupt count in snapshot");
+		return n;
+	}
+
+	private String readString() throws IOException {
+		long ref = readVarLong();
+		if (ref == 0)
+			return null;
+		if (ref >= 2) {
+			if (ref - 2 >= decCount)
+				throw new IOException("corrupt string reference in snapshot");
+			return decStrings[(int) (ref - 2)];
+		}
+		long size = readVarLong();
+		if (size < 0 || size > limit - pos)
+			throw new IOException("truncated snapshot");
+		int length = (int) size;
+		if (chars.length < length)
+			chars = new char[Math.max(length, chars.length * 2)];
+		int n = 0;
+		int end = pos + length;
+		while (pos < end) {
+			int b = buf[pos++] & 0xff;
+			if (b < 0x80) {
+				chars[n++] = (char) b;
+			} else if (b < 0xe0) {
+				chars[n++] = (char) (((b & 0x1f) << 6) | (buf[pos++] & 0x3f));
+			} else {
+				chars[n++] = (char) (((b & 0x0f) << 12)
+						| ((buf[pos++] & 0x3f) << 6) | (buf[pos++] & 0x3f));
+			}
+		}
+		String s = new String(chars, 0, n);
+		if (decCount == decStrings.length)
+			decStrings = Arrays.copyOf(decStrings, decCount * 2);
+		decStrings[decCount++] = s;
+		return s;
+	}
+
+	private String readAddress() throws IOException {
+		int kind = readByte();
+		if (kind == ADDRESS_NULL)
+			return null;
+		if (kind == ADDRESS_STRING)
+			return readString();
+		if (kind != ADDRESS_IPV4)
+			throw new IOException("corrupt address in snapshot");
+		int address = readRawInt();
+		int slot = (address ^ (address >>> 16)) & (ADDRESS_CACHE_SIZE - 1);
+		String s = addressValues[slot];
+		if (s == null || addressKeys[slot] != address) {
+			s = Ipv4.toString(address);
+			addressKeys[slot] = address;
+			addressValues[slot] = s;
+		}
+		return s;
+	}
+}
@@ -0,0 +1,366 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+
+/**
+ * A rolling history of {@link OlsrDataDump}s in a memory-mapped file of fixed
+ * size, so that what the mesh looked like at some moment can be looked at
+ * after the fact, even across restarts.
+ * <p>
+ * Each dump is stored as a record encoded by a {@link SnapshotCodec}. A
+ * keyframe record holds every report; a delta record holds only the reports
+ * whose encoding changed since the previous record, which
+ * {@link SnapshotCodec#decode(byte[], int, int, OlsrDataDump)} then lays over
+ * the state before it. A keyframe is written first, whenever a report
+ * disappears, and whenever the deltas since the last keyframe have grown
+ * past an eighth of the file, so that several keyframes are always kept.
+ * <p>
+ * The records form a ring: when the file is full, the oldest records are
+ * overwritten. History therefore starts at the oldest keyframe still in the
+ * file. Looking up a moment reads the record headers in place and decodes
+ * only the records from the keyframe before it, one at a time, so the
+ * history is never loaded onto the heap as a whole.
+ * <p>
+ * The file starts with a header of {@value #HEADER_SIZE} bytes: the magic
+ * number, the version, the size of the ring, the offsets of the oldest
+ * record and of the next one, and the number of records, all 4 byte ints.
+ * Each record is a 4 byte length, an 8 byte time in milliseconds, a type
+ * byte, and the encoded dump. A length of -1, or fewer than 4 bytes left,
+ * marks the end of the ring. The header is updated after each record is
+ * written, so a record only becomes part of the history once it is whole.
+ * <p>
+ * All methods are synchronized.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see SnapshotCodec
+ */
+public class SnapshotHistory {
+
+	/** "OLSH" */
+	public static final int MAGIC = 0x4f4c5348;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 24;
+
+	private static final int RECORD_HEADER = 13;
+	private static final int WRAP = -1;
+	private static final byte KEYFRAME = 1;
+	private static final byte DELTA = 2;
+
+	private static final int[] SECTIONS = { SnapshotCodec.SECTION_CONFIG,
+			SnapshotCodec.SECTION_GATEWAYS, SnapshotCodec.SECTION_HNA,
+			SnapshotCodec.SECTION_INTERFACES, SnapshotCodec.SECTION_LINKS,
+			SnapshotCodec.SECTION_MID, SnapshotCodec.SECTION_NEIGHBORS,
+			SnapshotCodec.SECTION_TOPOLOGY, SnapshotCodec.SECTION_PLUGINS,
+			SnapshotCodec.SECTION_ROUTES };
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer map;
+	private final int capacity;
+	private final SnapshotCodec codec = new SnapshotCodec();
+
+	// mirrors of the file header
+	private int tail;
+	private int head;
+	private int count;
+
+	private long lastTime = Long.MIN_VALUE;
+	private int lastSections = 0;
+	// the last encoding of each section, or a length of -1 if it was absent
+	private final byte[][] encodings = new byte[SECTIONS.length][];
+	private final int[] encodingLengths = new int[SECTIONS.length];
+	private int sinceKeyframe = -1;
+	private byte[] scratch = new byte[4096];
+
+	/**
+	 * Open a history file, creating it if it does not exist. An existing
+	 * file of a different size, or that is not a history, is started afresh.
+	 *
+	 * @param f the file
+	 * @param size the size of the file in bytes, header included
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public SnapshotHistory(File f, int size) throws IOException {
+		if (size < HEADER_SIZE + 1024)
+			throw new IllegalArgumentException("history of " + size
+					+ " bytes is too small");
+		file = new RandomAccessFile(f, "rw");
+		boolean fresh = file.length() != size;
+		file.setLength(size);
+		map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		capacity = size - HEADER_SIZE;
+		if (fresh || map.getInt(0) != MAGIC || map.getInt(4) != VERSION
+				|| map.getInt(8) != capacity || !load())
+			clear();
+	}
+
+	private boolean load() {
+		tail = map.getInt(12);
+		head = map.getInt(16);
+		count = map.getInt(20);
+		if (tail < 0 || tail >= capacity || head < 0 || head >= capacity
+				|| count < 0)
+			return false;
+		// walk the ring, both to check it and to find the latest time
+		int o = tail;
+		for (int i = 0; i < count; i++) {
+			o = skipWrap(o);
+			int length = map.getInt(HEADER_SIZE + o);
+			if (length < 0 || o + RECORD_HEADER + length > capacity)
+				return false;
+			lastTime = map.getLong(HEADER_SIZE + o + 4);
+			o += RECORD_HEADER + length;
+		}
+		return count == 0 || skipWrap(o) == skipWrap(head);
+	}
+
+	/**
+	 * Forget the whole history.
+	 */
+	public synchronized void clear() {
+		tail = 0;
+		head = 0;
+		count = 0;
+		lastTime = Long.MIN_VALUE;
+		sinceKeyframe = -1;
+		map.putInt(0, MAGIC);
+		map.putInt(4, VERSION);
+		map.putInt(8, capacity);
+		writeHeader();
+	}
+
+	private void writeHeader() {
+		map.putInt(12, tail);
+		map.putInt(16, head);
+		map.putInt(20, count);
+	}
+
+	/**
+	 * Record a dump as of now.
+	 *
+	 * @return false if the dump was too large to record
+	 */
+	public boolean add(OlsrDataDump dump) {
+		return add(dump, System.currentTimeMillis());
+	}
+
+	/**
+	 * Record a dump.
+	 *
+	 * @param time when it was taken, in milliseconds since the epoch. Times
+	 *            earlier than the last one recorded are taken as the same
+	 *            time.
+	 * @return false if the dump was too large to record, i.e. its encoding
+	 *         takes more than a quarter of the file
+	 */
+	public synchronized boolean add(OlsrDataDump dump, long time) {
+		int present = SnapshotCodec.sectionsOf(dump);
+		int changed = SnapshotCodec.SECTION_HEADER;
+		for (int i = 0; i < SECTIONS.length; i++) {
+			int length = -1;
+			if ((present & SECTIONS[i]) != 0)
+				length = codec.encode(dump, SECTIONS[i]);
+			if (!sameSection(i, length)) {
+				if (length > 0) {
+					if (encodings[i] == null || encodings[i].length < length)
+						encodings[i] = new byte[Math.max(length, 256)];
+					System.arraycopy(codec.buffer(), 0, encodings[i], 0, length);
+				}
+				encodingLengths[i] = length;
+				changed |= SECTIONS[i];
+			}
+		}
+		boolean keyframe = sinceKeyframe < 0
+				|| (lastSections & ~present) != 0
+				|| sinceKeyframe > capacity / 8;
+		lastSections = present;
+		int length = codec.encode(dump, keyframe ? present : changed);
+		int size = RECORD_HEADER + length;
+		if (size > capacity / 4) {
+			// the next dump cannot be a delta against one that was not kept
+			sinceKeyframe = -1;
+			return false;
+		}
+		sinceKeyframe = keyframe ? 0 : sinceKeyframe + size;
+		if (time < lastTime)
+			time = lastTime;
+		lastTime = time;
+
+		if (count == 0)
+			tail = head = 0;
+		if (head + size > capacity) {
+			evict(head, capacity);
+			if (head + 4 <= capacity)
+				map.putInt(HEADER_SIZE + head, WRAP);
+			head = 0;
+		}
+		evict(head, head + size);
+		int o = HEADER_SIZE + head;
+		map.putInt(o, length);
+		map.putLong(o + 4, time);
+		map.put(o + 12, keyframe ? KEYFRAME : DELTA);
+		map.position(o + RECORD_HEADER);
+		map.put(codec.buffer(), 0, length);
+		head += size;
+		if (head >= capacity)
+			head = 0;
+		count++;
+		writeHeader();
+		return true;
+	}
+
+	/**
+	 * @return whether the section just encoded, or its absence if the length
+	 *         is -1, is the same as last time
+	 */
+	private boolean sameSection(int i, int length) {
+		if (encodingLengths[i] != length)
+			return false;
+		byte[] b = codec.buffer();
+		byte[] last = encodings[i];
+		for (int j = 0; j < length; j++)
+			if (b[j] != last[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Drop the oldest records until none start between two offsets.
+	 */
+	private void evict(int from, int to) {
+		while (count > 0) {
+			tail = skipWrap(tail);
+			if (tail < from || tail >= to)
+				return;
+			tail += RECORD_HEADER + map.getInt(HEADER_SIZE + tail);
+			if (tail >= capacity)
+				tail = 0;
+			count--;
+		}
+	}
+
+	/**
+	 * @return the offset of the record at or after an offset, following the
+	 *         end of the ring back to the start
+	 */
+	private int skipWrap(int o) {
+		if (o + 4 > capacity || map.getInt(HEADER_SIZE + o) == WRAP)
+			return 0;
+		return o;
+	}
+
+	/**
+	 * @return the number of records, keyframes and deltas
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * @return the times of every record, oldest first, in milliseconds since
+	 *         the epoch
+	 */
+	public synchronized long[] times() {
+		long[] ret = new long[count];
+		int o = tail;
+		for (int i = 0; i < count; i++) {
+			o = skipWrap(o);
+			ret[i] = map.getLong(HEADER_SIZE + o + 4);
+			o += RECORD_HEADER + map.getInt(HEADER_SIZE + o);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the time of the oldest record that can be reconstructed, i.e.
+	 *         the oldest keyframe, or -1 if there is none
+	 */
+	public synchronized long oldest() {
+		int o = tail;
+		for (int i = 0; i < count; i++) {
+			o = skipWrap(o);
+			if (map.get(HEADER_SIZE + o + 12) == KEYFRAME)
+				return map.getLong(HEADER_SIZE + o + 4);
+			o += RECORD_HEADER + map.getInt(HEADER_SIZE + o);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the time of the newest record, or -1 if there is none
+	 */
+	public synchronized long newest() {
+		return count == 0 ? -1 : lastTime;
+	}
+
+	/**
+	 * Reconstruct the dump that was current at some moment, i.e. the last
+	 * one recorded at or before it.
+	 *
+	 * @param time in milliseconds since the epoch
+	 * @return the dump, or null if the moment is before the history starts
+	 * @throws IOException if the file is corrupt
+	 */
+	public synchronized OlsrDataDump at(long time) throws IOException {
+		// find the last keyframe at or before the time, and the last record
+		int keyframe = -1;
+		int keyframeIndex = -1;
+		int last = -1;
+		int o = tail;
+		for (int i = 0; i < count; i++) {
+			o = skipWrap(o);
+			if (map.getLong(HEADER_SIZE + o + 4) > time)
+				break;
+			if (map.get(HEADER_SIZE + o + 12) == KEYFRAME) {
+				keyframe = o;
+				keyframeIndex = i;
+			}
+			last = i;
+			o += RECORD_HEADER + map.getInt(HEADER_SIZE + o);
+		}
+		if (keyframe < 0)
+			return null;
+		OlsrDataDump ret = new OlsrDataDump();
+		o = keyframe;
+		for (int i = keyframeIndex; i <= last; i++) {
+			o = skipWrap(o);
+			int length = map.getInt(HEADER_SIZE + o);
+			if (scratch.length < length)
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			map.position(HEADER_SIZE + o + RECORD_HEADER);
+			map.get(scratch, 0, length);
+			codec.decode(scratch, 0, length, ret);
+			o += RECORD_HEADER + length;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the most recent dump, or null if there is none
+	 * @throws IOException if the file is corrupt
+	 */
+	public OlsrDataDump latest() throws IOException {
+		return at(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Write any changes through to the storage device.
+	 */
+	public synchronized void flush() {
+		map.force();
+	}
+
+	/**
+	 * Flush and close the file. The history must not be used afterwards.
+	 */
+	public synchronized void close() throws IOException {
+		map.force();
+		file.close();
+	}
+}
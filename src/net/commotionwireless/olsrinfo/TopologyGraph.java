@@ -0,0 +1,630 @@
+package net.commotionwireless.olsrinfo;
+
+import java.util.Arrays;
+
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+
+/**
+ * The mesh as a directed graph over the node IDs of an
+ * {@link AddressDictionary}, built from the <tt>/topology</tt> and
+ * <tt>/links</tt> reports, with the least-cost path from the local node to
+ * every other node. Topology entries are edges from <tt>lastHopIP</tt> to
+ * <tt>destinationIP</tt> weighted by <tt>tcEdgeCost</tt>, links are edges from
+ * <tt>localIP</tt> to <tt>remoteIP</tt> weighted by <tt>linkCost</tt>, and the
+ * local node is every address that appears as a <tt>localIP</tt>.
+ * <p>
+ * Edges are kept in primitive arrays, CSR-style, with a reverse index, so
+ * {@link #build(IndexedDump)} does not create an object per edge. Between
+ * full builds, {@link #update(DumpDelta)} applies the changes between two
+ * snapshots and only recomputes the paths they affect: a cheaper edge is
+ * relaxed from its source, while a dearer or lost edge on a least-cost path
+ * only resets the part of the path tree below it. New edges are chained onto
+ * their nodes until there are enough of them to be worth compacting.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see IndexedDump
+ * @see DumpDiff
+ */
+public class TopologyGraph {
+
+	/** the cost of a node that cannot be reached */
+	public static final long UNREACHABLE = Long.MAX_VALUE;
+	/** olsrd's LINK_COST_BROKEN, edges costing this or more are not usable */
+	public static final int BROKEN = 1 << 22;
+
+	private final AddressDictionary dictionary;
+
+	// edges; the first baseEdges are sorted by source, the rest are chained
+	private int[] from = new int[0];
+	private int[] to = new int[0];
+	private int[] cost = new int[0];
+	private boolean[] isLink = new boolean[0];
+	private int[] nextOut = new int[0];
+	private int[] nextIn = new int[0];
+	private int edgeCount = 0;
+	private int baseEdges = 0;
+	private int deadEdges = 0;
+
+	// CSR index of the first baseEdges, over the first baseNodes nodes
+	private int baseNodes = 0;
+	private int[] outStart = new int[1];
+	private int[] inStart = new int[1];
+	private int[] inEdges = new int[0];
+
+	// per node
+	private int nodes = 0;
+	private int[] outExtra = new int[0];
+	private int[] inExtra = new int[0];
+	private boolean[] isSource = new boolean[0];
+	private int[] localLinks = new int[0];
+	private long[] dist = new long[0];
+	private int[] parent = new int[0];
+	private int[] hops = new int[0];
+	private boolean hopsValid = false;
+	private boolean[] mark = new boolean[0];
+	private int[] queue = new int[0];
+
+	// binary heap of node IDs keyed on dist
+	private int[] heap = new int[0];
+	private int[] heapPos = new int[0];
+	private int heapSize = 0;
+
+	// pending work for update()
+	private int[] roots = new int[16];
+	private int rootCount = 0;
+	private int[] relax = new int[16];
+	private int relaxCount = 0;
+
+	public TopologyGraph(AddressDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	public AddressDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Replace the graph with the topology and links of a snapshot, and
+	 * compute all paths from scratch.
+	 *
+	 * @param dump a snapshot indexed with the same dictionary as this graph
+	 * @return this graph
+	 */
+	public TopologyGraph build(IndexedDump dump) {
+		ensureNodes(dictionary.size());
+		ensureEdges(dump.nodeCount + dump.linkCount);
+		edgeCount = 0;
+		for (int i = 0; i < dump.nodeCount; i++)
+			append(dump.nodeLastHop[i], dump.nodeDestination[i],
+					dump.nodeCost[i], false);
+		Arrays.fill(isSource, 0, nodes, false);
+		Arrays.fill(localLinks, 0, nodes, 0);
+		for (int i = 0; i < dump.linkCount; i++) {
+			append(dump.linkLocal[i], dump.linkRemote[i], dump.linkCost[i],
+					true);
+			if (dump.linkLocal[i] != AddressDictionary.NONE) {
+				isSource[dump.linkLocal[i]] = true;
+				localLinks[dump.linkLocal[i]]++;
+			}
+		}
+		layout();
+		recompute();
+		return this;
+	}
+
+	/**
+	 * Apply the link and topology changes between two snapshots, and
+	 * recompute only the paths that they affect. Changes smaller than the
+	 * thresholds of the {@link DumpDiff} that made the delta are not seen
+	 * here, so costs can drift from the latest snapshot by that much until
+	 * the next {@link #build(IndexedDump)}.
+	 *
+	 * @return this graph
+	 */
+	public TopologyGraph update(DumpDelta delta) {
+		rootCount = 0;
+		relaxCount = 0;
+		for (Link l : delta.linksRemoved) {
+			int u = node(l.localIP);
+			// the address is no longer local once its last link has gone
+			if (u != AddressDictionary.NONE && localLinks[u] > 0
+					&& --localLinks[u] == 0) {
+				isSource[u] = false;
+				hopsValid = false;
+				addRoot(u);
+			}
+			set(u, node(l.remoteIP), BROKEN, true);
+		}
+		for (Node n : delta.topologyRemoved)
+			set(node(n.lastHopIP), node(n.destinationIP), BROKEN, false);
+		for (DumpDelta.Change<Link> c : delta.linksChanged)
+			set(node(c.after.localIP), node(c.after.remoteIP),
+					c.after.linkCost, true);
+		for (DumpDelta.Change<Node> c : delta.topologyChanged)
+			set(node(c.after.lastHopIP), node(c.after.destinationIP),
+					c.after.tcEdgeCost, false);
+		for (Link l : delta.linksAdded) {
+			int u = node(l.localIP);
+			if (u != AddressDictionary.NONE && localLinks[u]++ == 0
+					&& !isSource[u]) {
+				isSource[u] = true;
+				hopsValid = false;
+				addRoot(u);
+			}
+			set(u, node(l.remoteIP), l.linkCost, true);
+		}
+		for (Node n : delta.topologyAdded)
+			set(node(n.lastHopIP), node(n.destinationIP), n.tcEdgeCost, false);
+
+		int live = edgeCount - deadEdges;
+		if (edgeCount - baseEdges > live / 2 + 64 || deadEdges > live / 2 + 64) {
+			compact();
+			recompute();
+			return this;
+		}
+
+		invalidate();
+		for (int i = 0; i < relaxCount; i++) {
+			int e = relax[i];
+			int u = from[e];
+			if (dist[u] != UNREACHABLE && cost[e] < BROKEN)
+				improve(to[e], dist[u] + cost[e], e);
+		}
+		run();
+		return this;
+	}
+
+	/**
+	 * @return the least total cost from the local node, or
+	 *         {@link #UNREACHABLE}
+	 */
+	public long cost(int id) {
+		if (id < 0 || id >= nodes)
+			return UNREACHABLE;
+		return dist[id];
+	}
+
+	public long cost(String address) {
+		return cost(dictionary.lookup(address));
+	}
+
+	/**
+	 * @return the fewest hops from the local node, or -1 if unreachable
+	 */
+	public int hopCount(int id) {
+		if (id < 0 || id >= nodes)
+			return -1;
+		if (!hopsValid)
+			countHops();
+		return hops[id];
+	}
+
+	public int hopCount(String address) {
+		return hopCount(dictionary.lookup(address));
+	}
+
+	/**
+	 * @return the one-hop neighbor that the least-cost path to this node
+	 *         goes through, or {@link AddressDictionary#NONE} if the node is
+	 *         local or unreachable
+	 */
+	public int nextHop(int id) {
+		if (id < 0 || id >= nodes || parent[id] == -1)
+			return AddressDictionary.NONE;
+		int v = id;
+		while (!isSource[from[parent[v]]])
+			v = from[parent[v]];
+		return v;
+	}
+
+	/**
+	 * @return the nodes on the least-cost path, starting with the local
+	 *         address it leaves from and ending with this node, or an empty
+	 *         array if the node is unreachable
+	 */
+	public int[] path(int id) {
+		if (cost(id) == UNREACHABLE)
+			return new int[0];
+		int length = 1;
+		for (int v = id; parent[v] != -1; v = from[parent[v]])
+			length++;
+		int[] ret = new int[length];
+		int v = id;
+		for (int i = length - 1; i >= 0; i--) {
+			ret[i] = v;
+			if (parent[v] != -1)
+				v = from[parent[v]];
+		}
+		return ret;
+	}
+
+	/**
+	 * @param max how many nodes to return at most
+	 * @return the reachable nodes that are not local, cheapest first
+	 */
+	public int[] closest(int max) {
+		int[] ret = new int[Math.max(0, max)];
+		int count = 0;
+		for (int v = 0; v < nodes; v++) {
+			if (isSource[v] || dist[v] == UNREACHABLE)
+				continue;
+			if (count == ret.length && (count == 0 || dist[v] >= dist[ret[count - 1]]))
+				continue;
+			int i = count < ret.length ? count++ : count - 1;
+			while (i > 0 && dist[ret[i - 1]] > dist[v]) {
+				ret[i] = ret[i - 1];
+				i--;
+			}
+			ret[i] = v;
+		}
+		return count == ret.length ? ret : Arrays.copyOf(ret, count);
+	}
+
+	/**
+	 * @return the number of usable edges
+	 */
+	public int edgeCount() {
+		return edgeCount - deadEdges;
+	}
+
+	private int node(String address) {
+		int id = dictionary.id(address);
+		ensureNodes(dictionary.size());
+		return id;
+	}
+
+	private void append(int u, int v, int c, boolean link) {
+		if (u == AddressDictionary.NONE || v == AddressDictionary.NONE
+				|| u == v || c < 0 || c >= BROKEN)
+			return;
+		int e = edgeCount++;
+		from[e] = u;
+		to[e] = v;
+		cost[e] = c;
+		isLink[e] = link;
+	}
+
+	/**
+	 * Set the cost of an edge, adding it if needed, and note what has to be
+	 * recomputed.
+	 */
+	private void set(int u, int v, int c, boolean link) {
+		if (u == AddressDictionary.NONE || v == AddressDictionary.NONE || u == v)
+			return;
+		if (c < 0 || c > BROKEN)
+			c = BROKEN;
+		int e = find(u, v, link);
+		if (e == -1) {
+			if (c == BROKEN)
+				return;
+			ensureEdges(edgeCount + 1);
+			append(u, v, c, link);
+			e = edgeCount - 1;
+			nextOut[e] = outExtra[u];
+			outExtra[u] = e;
+			nextIn[e] = inExtra[v];
+			inExtra[v] = e;
+			hopsValid = false;
+			addRelax(e);
+			return;
+		}
+		int old = cost[e];
+		if (c == old)
+			return;
+		if (old == BROKEN)
+			deadEdges--;
+		if (c == BROKEN)
+			deadEdges++;
+		if (old == BROKEN || c == BROKEN)
+			hopsValid = false;
+		cost[e] = c;
+		if (c > old) {
+			if (parent[v] == e)
+				addRoot(v);
+		} else {
+			addRelax(e);
+		}
+	}
+
+	private void addRoot(int v) {
+		if (rootCount == roots.length)
+			roots = Arrays.copyOf(roots, rootCount * 2);
+		roots[rootCount++] = v;
+	}
+
+	private void addRelax(int e) {
+		if (relaxCount == relax.length)
+			relax = Arrays.copyOf(relax, relaxCount * 2);
+		relax[relaxCount++] = e;
+	}
+
+	private int find(int u, int v, boolean link) {
+		if (u < baseNodes)
+			for (int e = outStart[u]; e < outStart[u + 1]; e++)
+				if (to[e] == v && isLink[e] == link)
+					return e;
+		for (int e = outExtra[u]; e != -1; e = nextOut[e])
+			if (to[e] == v && isLink[e] == link)
+				return e;
+		return -1;
+	}
+
+	/**
+	 * Reset every node below a root in the path tree, then give each one
+	 * its best cost through nodes that were not reset.
+	 */
+	private void invalidate() {
+		int tail = 0;
+		for (int i = 0; i < rootCount; i++) {
+			int r = roots[i];
+			if (mark[r])
+				continue;
+			mark[r] = true;
+			queue[tail++] = r;
+		}
+		for (int head = 0; head < tail; head++) {
+			int x = queue[head];
+			if (x < baseNodes)
+				for (int e = outStart[x]; e < outStart[x + 1]; e++)
+					tail = child(e, tail);
+			for (int e = outExtra[x]; e != -1; e = nextOut[e])
+				tail = child(e, tail);
+		}
+		for (int i = 0; i < tail; i++) {
+			dist[queue[i]] = UNREACHABLE;
+			parent[queue[i]] = -1;
+		}
+		for (int i = 0; i < tail; i++) {
+			int w = queue[i];
+			if (isSource[w]) {
+				improve(w, 0, -1);
+				continue;
+			}
+			if (w < baseNodes)
+				for (int k = inStart[w]; k < inStart[w + 1]; k++)
+					seed(inEdges[k]);
+			for (int e = inExtra[w]; e != -1; e = nextIn[e])
+				seed(e);
+		}
+		for (int i = 0; i < tail; i++)
+			mark[queue[i]] = false;
+	}
+
+	private int child(int e, int tail) {
+		int w = to[e];
+		if (parent[w] == e && !mark[w]) {
+			mark[w] = true;
+			queue[tail++] = w;
+		}
+		return tail;
+	}
+
+	private void seed(int e) {
+		int x = from[e];
+		if (!mark[x] && dist[x] != UNREACHABLE && cost[e] < BROKEN)
+			improve(to[e], dist[x] + cost[e], e);
+	}
+
+	private void recompute() {
+		Arrays.fill(dist, 0, nodes, UNREACHABLE);
+		Arrays.fill(parent, 0, nodes, -1);
+		heapSize = 0;
+		for (int v = 0; v < nodes; v++)
+			if (isSource[v])
+				improve(v, 0, -1);
+		run();
+		hopsValid = false;
+	}
+
+	/**
+	 * Dijkstra's algorithm, from whatever is on the heap.
+	 */
+	private void run() {
+		while (heapSize > 0) {
+			int u = pop();
+			long d = dist[u];
+			if (u < baseNodes)
+				for (int e = outStart[u]; e < outStart[u + 1]; e++)
+					if (cost[e] < BROKEN)
+						improve(to[e], d + cost[e], e);
+			for (int e = outExtra[u]; e != -1; e = nextOut[e])
+				if (cost[e] < BROKEN)
+					improve(to[e], d + cost[e], e);
+		}
+	}
+
+	private void improve(int v, long d, int e) {
+		if (d >= dist[v])
+			return;
+		dist[v] = d;
+		parent[v] = e;
+		if (heapPos[v] == -1) {
+			heap[heapSize] = v;
+			heapPos[v] = heapSize++;
+		}
+		siftUp(heapPos[v]);
+	}
+
+	private int pop() {
+		int ret = heap[0];
+		heapPos[ret] = -1;
+		if (--heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapPos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return ret;
+	}
+
+	private void siftUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int p = (i - 1) >> 1;
+			if (dist[heap[p]] <= dist[v])
+				break;
+			heap[i] = heap[p];
+			heapPos[heap[i]] = i;
+			i = p;
+		}
+		heap[i] = v;
+		heapPos[v] = i;
+	}
+
+	private void siftDown(int i) {
+		int v = heap[i];
+		while (true) {
+			int c = 2 * i + 1;
+			if (c >= heapSize)
+				break;
+			if (c + 1 < heapSize && dist[heap[c + 1]] < dist[heap[c]])
+				c++;
+			if (dist[v] <= dist[heap[c]])
+				break;
+			heap[i] = heap[c];
+			heapPos[heap[i]] = i;
+			i = c;
+		}
+		heap[i] = v;
+		heapPos[v] = i;
+	}
+
+	/**
+	 * Breadth-first search over the usable edges, for hop counts.
+	 */
+	private void countHops() {
+		Arrays.fill(hops, 0, nodes, -1);
+		int tail = 0;
+		for (int v = 0; v < nodes; v++) {
+			if (isSource[v]) {
+				hops[v] = 0;
+				queue[tail++] = v;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int u = queue[head];
+			if (u < baseNodes)
+				for (int e = outStart[u]; e < outStart[u + 1]; e++)
+					tail = visit(e, hops[u] + 1, tail);
+			for (int e = outExtra[u]; e != -1; e = nextOut[e])
+				tail = visit(e, hops[u] + 1, tail);
+		}
+		hopsValid = true;
+	}
+
+	private int visit(int e, int h, int tail) {
+		int v = to[e];
+		if (cost[e] < BROKEN && hops[v] == -1) {
+			hops[v] = h;
+			queue[tail++] = v;
+		}
+		return tail;
+	}
+
+	/**
+	 * Drop dead edges and fold chained edges into the CSR index.
+	 */
+	private void compact() {
+		int n = 0;
+		for (int e = 0; e < edgeCount; e++) {
+			if (cost[e] >= BROKEN)
+				continue;
+			from[n] = from[e];
+			to[n] = to[e];
+			cost[n] = cost[e];
+			isLink[n] = isLink[e];
+			n++;
+		}
+		edgeCount = n;
+		layout();
+	}
+
+	/**
+	 * Sort the first edgeCount edges by source and index them both ways.
+	 */
+	private void layout() {
+		baseNodes = nodes;
+		baseEdges = edgeCount;
+		deadEdges = 0;
+		if (outStart.length < nodes + 1) {
+			outStart = new int[nodes + 1];
+			inStart = new int[nodes + 1];
+		}
+		Arrays.fill(outStart, 0, nodes + 1, 0);
+		Arrays.fill(inStart, 0, nodes + 1, 0);
+		for (int e = 0; e < edgeCount; e++) {
+			outStart[from[e] + 1]++;
+			inStart[to[e] + 1]++;
+		}
+		for (int v = 0; v < nodes; v++) {
+			outStart[v + 1] += outStart[v];
+			inStart[v + 1] += inStart[v];
+		}
+
+		int[] f = Arrays.copyOf(from, edgeCount);
+		int[] t = Arrays.copyOf(to, edgeCount);
+		int[] c = Arrays.copyOf(cost, edgeCount);
+		boolean[] l = Arrays.copyOf(isLink, edgeCount);
+		int[] next = Arrays.copyOf(outStart, nodes);
+		for (int i = 0; i < edgeCount; i++) {
+			int e = next[f[i]]++;
+			from[e] = f[i];
+			to[e] = t[i];
+			cost[e] = c[i];
+			isLink[e] = l[i];
+		}
+
+		if (inEdges.length < edgeCount)
+			inEdges = new int[from.length];
+		System.arraycopy(inStart, 0, next, 0, nodes);
+		for (int e = 0; e < edgeCount; e++)
+			inEdges[next[to[e]]++] = e;
+
+		Arrays.fill(outExtra, 0, nodes, -1);
+		Arrays.fill(inExtra, 0, nodes, -1);
+		hopsValid = false;
+	}
+
+	private void ensureEdges(int count) {
+		if (from.length >= count)
+			return;
+		int length = Math.max(count, from.length * 2);
+		from = Arrays.copyOf(from, length);
+		to = Arrays.copyOf(to, length);
+		cost = Arrays.copyOf(cost, length);
+		isLink = Arrays.copyOf(isLink, length);
+		nextOut = Arrays.copyOf(nextOut, length);
+		nextIn = Arrays.copyOf(nextIn, length);
+	}
+
+	private void ensureNodes(int count) {
+		if (count <= nodes)
+			return;
+		if (dist.length < count) {
+			int length = Math.max(count, dist.length * 2);
+			outExtra = Arrays.copyOf(outExtra, length);
+			inExtra = Arrays.copyOf(inExtra, length);
+			isSource = Arrays.copyOf(isSource, length);
+			localLinks = Arrays.copyOf(localLinks, length);
+			dist = Arrays.copyOf(dist, length);
+			parent = Arrays.copyOf(parent, length);
+			hops = Arrays.copyOf(hops, length);
+			mark = Arrays.copyOf(mark, length);
+			queue = Arrays.copyOf(queue, length);
+			heap = Arrays.copyOf(heap, length);
+			heapPos = Arrays.copyOf(heapPos, length);
+		}
+		Arrays.fill(outExtra, nodes, count, -1);
+		Arrays.fill(inExtra, nodes, count, -1);
+		Arrays.fill(isSource, nodes, count, false);
+		Arrays.fill(localLinks, nodes, count, 0);
+		Arrays.fill(dist, nodes, count, UNREACHABLE);
+		Arrays.fill(parent, nodes, count, -1);
+		Arrays.fill(hops, nodes, count, -1);
+		Arrays.fill(heapPos, nodes, count, -1);
+		nodes = count;
+	}
+}
@@ -27,6 +27,22 @@ public class TxtInfo {
 	String host = "127.0.0.1";
 	int port = 2006;
 
+	/** timings, sizes and failures of the queries made by table() */
+	private final QueryStats stats = new QueryStats();
+
+	static final Set<String> supportedCommands = new HashSet<String>(
+			Arrays.asList(new String[] { "/2ho", // two-hop neighbors
+					"/con", // conf file
+					"/gat", // gateways
+					"/hna", // Host and Network Association
+					"/int", // network interfaces
+					"/lin", // links
+					"/mid", // MID
+					"/nei", // neighbors
+					"/rou", // routes
+					"/top", // topology
+			}));
+
 	public TxtInfo() {
 	}
 
@@ -39,6 +55,14 @@ public class TxtInfo {
 		port = setport;
 	}
 
+	/**
+	 * @return the timings, sizes and failures of the queries this has made
+	 *         to the txtinfo plugin, by command
+	 */
+	public QueryStats getStats() {
+		return stats;
+	}
+
 	public String[] request(String req) throws IOException {
 		Socket sock = null;
 		BufferedReader in = null;
@@ -69,44 +93,52 @@ public class TxtInfo {
 		return retlist.toArray(new String[retlist.size()]);
 	}
 
-	public String[][] command(String cmd) {
-		String[] data = null;
-
-		final Set<String> supportedCommands = new HashSet<String>(
-				Arrays.asList(new String[] { "/2ho", // two-hop neighbors
-						"/con", // conf file
-						"/gat", // gateways
-						"/hna", // Host and Network Association
-						"/int", // network interfaces
-						"/lin", // links
-						"/mid", // MID
-						"/nei", // neighbors
-						"/rou", // routes
-						"/top", // topology
-				}));
+	/**
+	 * Send a command to the txtinfo plugin and tokenize the table in its
+	 * reply, straight from the socket into the table's buffer.
+	 *
+	 * @param cmd the command to query txtinfo with, e.g. <tt>"/top"</tt>
+	 * @param into a table to reuse, so that repeated queries do not allocate
+	 * @return the table that was passed in
+	 * @throws IOException when it cannot get a result.
+	 */
+	public TxtTable table(String cmd, TxtTable into) throws IOException {
 		if (!supportedCommands.contains(cmd))
 			System.out.println("Unsupported command: " + cmd);
+		long start = System.nanoTime();
+		Socket sock = null;
+		try {
+			sock = new Socket(host, port);
+			long connected = System.nanoTime();
+			PrintWriter out = new PrintWriter(sock.getOutputStream(), true);
+			out.println(cmd);
+			// the txtinfo plugin drops the connection once it outputs
+			MeteredInputStream in = new MeteredInputStream(sock.getInputStream());
+			into.parse(in);
+			stats.success(cmd, connected - start, in, System.nanoTime()
+					- connected);
+			return into;
+		} catch (IOException e) {
+			stats.failure(cmd, e);
+			throw e;
+		} finally {
+			if (sock != null)
+				sock.close();
+		}
+	}
 
+	public TxtTable table(String cmd) throws IOException {
+		return table(cmd, new TxtTable());
+	}
+
+	public String[][] command(String cmd) {
 		try {
-			data = request(cmd);
+			return table(cmd).rows();
 		} catch (IOException e) {
 			System.err.println("Couldn't get I/O for socket to " + host + ":"
 					+ Integer.toString(port));
 		}
-		int startpos = -1;
-		for (int i = 0; i < data.length; i++) {
-			if (data[i].startsWith("Table: ")) {
-				startpos = i + 2;
-				break;
-			}
-		}
-		if (startpos >= data.length || startpos == -1)
-			return new String[0][0];
-		int fields = data[startpos + 1].split("\t").length;
-		String[][] ret = new String[data.length - startpos][fields];
-		for (int i = 0; i < ret.length; i++)
-			ret[i] = data[i + startpos].split("\t");
-		return ret;
+		return new String[0][0];
 	}
 
 	/**
@@ -0,0 +1,468 @@
+package net.commotionwireless.olsrinfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A table from <tt>olsrd</tt>'s txtinfo plugin, tokenized at the byte level
+ * and read out by column. Parsing only records where each cell starts and
+ * ends in a reusable buffer; a column is converted the first time it is
+ * asked for, as packed IPv4 addresses, numbers or strings, into arrays that
+ * are also reused. Strings are shared, so e.g. an interface name is only
+ * created once however many rows and parses it appears in.
+ * <p>
+ * Column arrays may be longer than the table, so only the first
+ * {@link #rowCount()} entries are valid, and they are only valid until the
+ * next parse. {@link #rows()} gives the old row-wise <tt>String[][]</tt>
+ * form.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ *
+ * @see TxtInfo
+ */
+public class TxtTable {
+
+	private static final byte[] TABLE = { 'T', 'a', 'b', 'l', 'e', ':', ' ' };
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	/** start the string pool over once it holds this many */
+	private static final int MAX_POOL = 4096;
+
+	private byte[] data = new byte[8192];
+	private int length = 0;
+
+	private int rows = 0;
+	private int columns = 0;
+	private String[] headers = new String[0];
+	// row * columns + column
+	private int[] cellStart = new int[256];
+	private int[] cellEnd = new int[256];
+	// cells actually present in each row
+	private int[] rowCells = new int[32];
+
+	private int[][] addressColumns = new int[0][];
+	private int[][] prefixColumns = new int[0][];
+	private int[][] intColumns = new int[0][];
+	private float[][] floatColumns = new float[0][];
+	private String[][] stringColumns = new String[0][];
+	private boolean[] addressValid = new boolean[0];
+	private boolean[] prefixValid = new boolean[0];
+	private boolean[] intValid = new boolean[0];
+	private boolean[] floatValid = new boolean[0];
+	private boolean[] stringValid = new boolean[0];
+
+	private String[] pool = new String[64];
+	private int poolSize = 0;
+
+	/**
+	 * Read a txtinfo reply to its end and tokenize the first table in it.
+	 *
+	 * @return this table
+	 */
+	public TxtTable parse(InputStream in) throws IOException {
+		length = 0;
+		int n;
+		while ((n = in.read(data, length, data.length - length)) != -1) {
+			length += n;
+			if (length == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+		}
+		tokenize();
+		return this;
+	}
+
+	/**
+	 * Tokenize the first table in a txtinfo reply that is already in memory.
+	 * The bytes are copied.
+	 *
+	 * @return this table
+	 */
+	public TxtTable parse(byte[] b, int off, int len) {
+		if (data.length < len)
+			data = new byte[len];
+		System.arraycopy(b, off, data, 0, len);
+		length = len;
+		tokenize();
+		return this;
+	}
+
+	public int rowCount() {
+		return rows;
+	}
+
+	public int columnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return the name of a column, from the header line
+	 */
+	public String header(int column) {
+		return headers[column];
+	}
+
+	/**
+	 * @return the index of the column with this header, or -1
+	 */
+	public int column(String header) {
+		for (int i = 0; i < columns; i++)
+			if (headers[i].equals(header))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * A column of IPv4 addresses, packed as by {@link Ipv4}. A prefix length
+	 * after a <tt>/</tt>, as in the routes table, is left out; see
+	 * {@link #prefixLengths(int)}. Cells that are not IPv4 addresses are 0.
+	 */
+	public int[] addresses(int column) {
+		if (!addressValid[column]) {
+			if (addressColumns[column] == null || addressColumns[column].length < rows)
+				addressColumns[column] = new int[rows];
+			int[] ret = addressColumns[column];
+			for (int r = 0; r < rows; r++) {
+				int c = r * columns + column;
+				int end = slash(cellStart[c], cellEnd[c]);
+				long packed = Ipv4.parse(data, cellStart[c], end);
+				ret[r] = packed < 0 ? 0 : (int) packed;
+			}
+			addressValid[column] = true;
+		}
+		return addressColumns[column];
+	}
+
+	/**
+	 * The prefix lengths of a column of <tt>address/length</tt> cells, 32
+	 * for a cell without one.
+	 */
+	public int[] prefixLengths(int column) {
+		if (!prefixValid[column]) {
+			if (prefixColumns[column] == null || prefixColumns[column].length < rows)
+				prefixColumns[column] = new int[rows];
+			int[] ret = prefixColumns[column];
+			for (int r = 0; r < rows; r++) {
+				int c = r * columns + column;
+				int slash = slash(cellStart[c], cellEnd[c]);
+				ret[r] = slash == cellEnd[c] ? 32 : parseInt(slash + 1, cellEnd[c]);
+			}
+			prefixValid[column] = true;
+		}
+		return prefixColumns[column];
+	}
+
+	/**
+	 * A column of whole numbers, e.g. hop counts. Cells that are not numbers
+	 * are 0.
+	 */
+	public int[] ints(int column) {
+		if (!intValid[column]) {
+			if (intColumns[column] == null || intColumns[column].length < rows)
+				intColumns[column] = new int[rows];
+			int[] ret = intColumns[column];
+			for (int r = 0; r < rows; r++) {
+				int c = r * columns + column;
+				ret[r] = parseInt(cellStart[c], cellEnd[c]);
+			}
+			intValid[column] = true;
+		}
+		return intColumns[column];
+	}
+
+	/**
+	 * A column of decimal numbers, e.g. LQ, NLQ or cost. <tt>INFINITE</tt> is
+	 * {@link Float#POSITIVE_INFINITY}, and other cells that are not numbers
+	 * are {@link Float#NaN}.
+	 */
+	public float[] floats(int column) {
+		if (!floatValid[column]) {
+			if (floatColumns[column] == null || floatColumns[column].length < rows)
+				floatColumns[column] = new float[rows];
+			float[] ret = floatColumns[column];
+			for (int r = 0; r < rows; r++) {
+				int c = r * columns + column;
+				ret[r] = parseFloat(cellStart[c], cellEnd[c]);
+			}
+			floatValid[column] = true;
+		}
+		return floatColumns[column];
+	}
+
+	/**
+	 * A column as strings, with equal cells sharing one instance.
+	 */
+	public String[] strings(int column) {
+		if (!stringValid[column]) {
+			if (stringColumns[column] == null || stringColumns[column].length < rows)
+				stringColumns[column] = new String[rows];
+			String[] ret = stringColumns[column];
+			for (int r = 0; r < rows; r++) {
+				int c = r * columns + column;
+				ret[r] = intern(cellStart[c], cellEnd[c]);
+			}
+			stringValid[column] = true;
+		}
+		return stringColumns[column];
+	}
+
+	/**
+	 * @return the table as one array of cells per row, as
+	 *         {@link TxtInfo#command(String)} has always returned it. Trailing
+	 *         empty cells are left out of each row.
+	 */
+	public String[][] rows() {
+		String[][] ret = new String[rows][];
+		for (int r = 0; r < rows; r++) {
+			int n = rowCells[r];
+			while (n > 0 && cellStart[r * columns + n - 1] == cellEnd[r * columns + n - 1])
+				n--;
+			ret[r] = new String[Math.max(n, 1)];
+			for (int i = 0; i < ret[r].length; i++) {
+				int c = r * columns + i;
+				ret[r][i] = i < n ? intern(cellStart[c], cellEnd[c]) : "";
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Find the <tt>Table:</tt> line, take the column names from the line
+	 * after it, then record the cells of each row up to the end or the next
+	 * table. Blank lines are skipped.
+	 */
+	private void tokenize() {
+		rows = 0;
+		columns = 0;
+		int i = findTable();
+		if (i == -1) {
+			resetColumns();
+			return;
+		}
+		i = skipLine(i);
+		// header
+		int lineEnd = lineEnd(i);
+		columns = 1;
+		for (int j = i; j < lineEnd; j++)
+			if (data[j] == '\t')
+				columns++;
+		if (headers.length != columns)
+			headers = new String[columns];
+		int start = i;
+		int col = 0;
+		for (int j = i; j <= lineEnd; j++) {
+			if (j == lineEnd || data[j] == '\t') {
+				headers[col++] = intern(start, j);
+				start = j + 1;
+			}
+		}
+		resetColumns();
+		i = skipLine(i);
+
+		while (i < length) {
+			lineEnd = lineEnd(i);
+			if (lineEnd == i) {
+				i = skipLine(i);
+				continue;
+			}
+			if (startsWith(i, TABLE))
+				break;
+			int base = rows * columns;
+			if (cellStart.length < base + columns) {
+				int size = Math.max(cellStart.length * 2, base + columns);
+				cellStart = Arrays.copyOf(cellStart, size);
+				cellEnd = Arrays.copyOf(cellEnd, size);
+			}
+			if (rowCells.length == rows)
+				rowCells = Arrays.copyOf(rowCells, rows * 2);
+			start = i;
+			col = 0;
+			for (int j = i; j <= lineEnd && col < columns; j++) {
+				if (j == lineEnd || data[j] == '\t') {
+					cellStart[base + col] = start;
+					cellEnd[base + col] = j;
+					col++;
+					start = j + 1;
+				}
+			}
+			rowCells[rows] = col;
+			for (; col < columns; col++) {
+				cellStart[base + col] = lineEnd;
+				cellEnd[base + col] = lineEnd;
+			}
+			rows++;
+			i = skipLine(i);
+		}
+	}
+
+	private void resetColumns() {
+		if (intValid.length < columns) {
+			addressColumns = Arrays.copyOf(addressColumns, columns);
+			prefixColumns = Arrays.copyOf(prefixColumns, columns);
+			intColumns = Arrays.copyOf(intColumns, columns);
+			floatColumns = Arrays.copyOf(floatColumns, columns);
+			stringColumns = Arrays.copyOf(stringColumns, columns);
+			addressValid = new boolean[columns];
+			prefixValid = new boolean[columns];
+			intValid = new boolean[columns];
+			floatValid = new boolean[columns];
+			stringValid = new boolean[columns];
+		} else {
+			Arrays.fill(addressValid, false);
+			Arrays.fill(prefixValid, false);
+			Arrays.fill(intValid, false);
+			Arrays.fill(floatValid, false);
+			Arrays.fill(stringValid, false);
+		}
+	}
+
+	private int findTable() {
+		for (int i = 0; i < length; i = skipLine(i))
+			if (startsWith(i, TABLE))
+				return i;
+		return -1;
+	}
+
+	private boolean startsWith(int i, byte[] prefix) {
+		if (i + prefix.length > length)
+			return false;
+		for (int j = 0; j < prefix.length; j++)
+			if (data[i + j] != prefix[j])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the end of the line starting at i, before any \r
+	 */
+	private int lineEnd(int i) {
+		int j = i;
+		while (j < length && data[j] != '\n')
+			j++;
+		if (j > i && data[j - 1] == '\r')
+			j--;
+		return j;
+	}
+
+	private int skipLine(int i) {
+		while (i < length && data[i] != '\n')
+			i++;
+		return i + 1;
+	}
+
+	private int slash(int start, int end) {
+		for (int i = start; i < end; i++)
+			if (data[i] == '/')
+				return i;
+		return end;
+	}
+
+	private int parseInt(int start, int end) {
+		boolean negative = start < end && data[start] == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end)
+			return 0;
+		int ret = 0;
+		for (; i < end; i++) {
+			int c = data[i] - '0';
+			if (c < 0 || c > 9)
+				return 0;
+			ret = ret * 10 + c;
+		}
+		return negative ? -ret : ret;
+	}
+
+	private float parseFloat(int start, int end) {
+		if (end - start == 8 && data[start] == 'I' && data[start + 1] == 'N'
+				&& data[start + 2] == 'F')
+			return Float.POSITIVE_INFINITY;
+		boolean negative = start < end && data[start] == '-';
+		int i = negative ? start + 1 : start;
+		long mantissa = 0;
+		int scale = 0;
+		int digits = 0;
+		boolean point = false;
+		for (; i < end; i++) {
+			int c = data[i];
+			if (c == '.' && !point) {
+				point = true;
+			} else if (c >= '0' && c <= '9') {
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+					if (point)
+						scale++;
+				} else if (!point) {
+					scale--;
+				}
+			} else {
+				return Float.NaN;
+			}
+		}
+		if (digits == 0)
+			return Float.NaN;
+		double ret = mantissa;
+		if (scale > 0)
+			ret /= Math.pow(10, scale);
+		else if (scale < 0)
+			ret *= Math.pow(10, -scale);
+		return (float) (negative ? -ret : ret);
+	}
+
+	/**
+	 * @return the string for a run of bytes, from the pool if it is already
+	 *         there. The hash matches {@link String#hashCode()} of the
+	 *         decoded string.
+	 */
+	private String intern(int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++)
+			h = 31 * h + (data[i] & 0xff);
+		int mask = pool.length - 1;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (pool[slot] != null) {
+			if (equals(pool[slot], start, end))
+				return pool[slot];
+			slot = (slot + 1) & mask;
+		}
+		String s = new String(data, start, end - start, LATIN1);
+		if (poolSize * 2 < pool.length) {
+			pool[slot] = s;
+			poolSize++;
+		} else if (pool.length >= MAX_POOL) {
+			Arrays.fill(pool, null);
+			poolSize = 0;
+			put(s);
+		} else {
+			String[] old = pool;
+			pool = new String[old.length * 2];
+			poolSize = 0;
+			for (String t : old)
+				if (t != null)
+					put(t);
+			put(s);
+		}
+		return s;
+	}
+
+	private void put(String s) {
+		int h = s.hashCode();
+		int mask = pool.length - 1;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (pool[slot] != null)
+			slot = (slot + 1) & mask;
+		pool[slot] = s;
+		poolSize++;
+	}
+
+	private boolean equals(String s, int start, int end) {
+		if (s.length() != end - start)
+			return false;
+		for (int i = 0; i < s.length(); i++)
+			if (s.charAt(i) != (data[start + i] & 0xff))
+				return false;
+		return true;
+	}
+}
@@ -28,6 +28,12 @@ public class NativeTools
 {
     private static final String TAG = "NativeTools";
 
+    /**
+     * Root commands are run on one long-lived su session, rather than a new
+     * su process each
+     */
+    private static final RootShell sRootShell = new RootShell();
+
     // private static final String FILES_DIR = "/data/data/org.proxima";
 
     public static void unpackResources(Context context)
@@ -159,7 +165,17 @@ public class NativeTools
 
     public static int runRootCommand(Context context, String command)
     {
-        return runCommand(prepareRootCommandScript(context, command));
+        Log.d(TAG, "Root command ==> " + command);
+        return sRootShell.run(command).exitCode;
+    }
+
+    /**
+     * Close the root shell, e.g. when the service is destroyed. The next root
+     * command starts a new one.
+     */
+    public static void closeRootShell()
+    {
+        sRootShell.close();
     }
 
     public static String chmod(Context context, String path, String mode)
@@ -231,24 +247,23 @@ public class NativeTools
             Log.d(TAG, "Root command ==> " + command);
 
             // create a dummy script so that the user doesn't have to constantly
-            // accept the SuperUser prompt
-            File scriptFile = new File(context.getFilesDir().getParent()
-                    + "/tmp/command.sh");
-            scriptFile.delete(); // clear out old content
-
-            scriptFile = new File(scriptFile.getAbsolutePath());
-            scriptFile.getParentFile().mkdirs();
-            scriptFile.createNewFile();
+            // accept the SuperUser prompt. Each command gets its own, so that
+            // concurrent callers can't overwrite each other's
+            File tmpDir = new File(context.getFilesDir().getParent() + "/tmp");
+            tmpDir.mkdirs();
+            File scriptFile = File.createTempFile("command", ".sh", tmpDir);
 
             BufferedWriter writer = new BufferedWriter(new FileWriter(
                     scriptFile));
             // TODO: will this always be here?
             writer.append("#!/system/bin/sh\n");
+            // the shell has it open by now, so it can go
+            writer.append("rm -f " + scriptFile.getAbsolutePath() + "\n");
             writer.append(command);
             writer.close();
 
             // set executable permissions
-            runCommand("chmod 0755 " + scriptFile.getAbsolutePath());
+            scriptFile.setExecutable(true, false);
 
             return "su -c \"" + scriptFile.getAbsolutePath() + "\"";
 
@@ -262,7 +277,10 @@ public class NativeTools
 
     public static String runRootCommandGetOutput(Context context, String command)
     {
-        return runCommandGetOutput(prepareRootCommandScript(context, command));
+        Log.d(TAG, "Root command ==> " + command);
+        RootShell.Result result = sRootShell.run(command);
+        Log.d(TAG, "result was: " + result);
+        return result.stdout;
     }
 
     public static String runCommandGetOutput(String command)
@@ -346,7 +364,7 @@ public class NativeTools
         return tmpRunningProcesses;
     }
 
-    private static HashSet<String> getPids(String processName) throws Exception
+    static HashSet<String> getPids(String processName) throws Exception
     {
 
         String pid = null;
@@ -386,6 +404,11 @@ public class NativeTools
         return true;
     }
 
+    public static boolean killProcess(Context context, int pid)
+    {
+        return runRootCommand(context, "kill -9 " + pid) == 0;
+    }
+
     public static ArrayList<String> readLinesFromFile(String filename)
     {
         String line = null;
@@ -19,9 +19,15 @@
 
 package org.proxima;
 
+import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import net.commotionwireless.olsrinfo.JsonInfo;
+import net.commotionwireless.olsrinfo.AsyncJsonInfo;
+import net.commotionwireless.olsrinfo.CachingJsonInfo;
+import net.commotionwireless.olsrinfo.datatypes.Config;
 import net.commotionwireless.olsrinfo.datatypes.Neighbor;
 import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
 import android.content.Context;
@@ -41,6 +47,27 @@ public class OlsrHelper
      */
     private static final String TAG = "OlsrHelper";
 
+    /**
+     * The request used to retrieve the current neighbors
+     */
+    private static final String NEIGHBORS_REQUEST = "/neighbors/links/interfaces";
+
+    /**
+     * How long a neighbor list may be served from the cache, in milliseconds
+     */
+    private static final long NEIGHBORS_MAX_AGE = 1000;
+
+    /**
+     * How long past NEIGHBORS_MAX_AGE a cached neighbor list may still be
+     * served while a fresh one is fetched in the background, in milliseconds
+     */
+    private static final long NEIGHBORS_STALE_WINDOW = 4000;
+
+    /**
+     * How long to wait for the daemon to reply, in milliseconds
+     */
+    private static final long REQUEST_TIMEOUT = 3000;
+
     /**
      *
      */
@@ -51,10 +78,20 @@ public class OlsrHelper
      */
     private Process mOlsrProcess;
 
+    /**
+     * Tracks the PID of the daemon, so that checking on it is cheap
+     */
+    private final ProcessTracker mOlsrd;
+
     /**
      *
      */
-    private final JsonInfo mJsonInfo;
+    private final CachingJsonInfo mJsonInfo;
+
+    /**
+     * Runs queries on mJsonInfo in the background, with a deadline
+     */
+    private final AsyncJsonInfo mAsyncJsonInfo;
 
     /**
      *
@@ -63,7 +100,16 @@ public class OlsrHelper
     public OlsrHelper(Context context)
     {
         mContext = context;
-        mJsonInfo = new JsonInfo();
+        mOlsrd = new ProcessTracker("olsrd", new File(context.getFilesDir()
+                .getParent() + "/tmp/olsrd.pid"));
+        // Clients tend to poll at the same time, so let them share requests
+        // and serve recent results from memory
+        mJsonInfo = new CachingJsonInfo(NEIGHBORS_MAX_AGE);
+        mJsonInfo.setStaleWhileRevalidate(NEIGHBORS_STALE_WINDOW);
+        mJsonInfo.setKeepRaw(false);
+        mJsonInfo.setTimeout(REQUEST_TIMEOUT);
+        mAsyncJsonInfo = new AsyncJsonInfo(mJsonInfo);
+        mAsyncJsonInfo.setTimeout(REQUEST_TIMEOUT);
     }
 
     /**
@@ -72,18 +118,7 @@ public class OlsrHelper
      */
     public boolean isDaemonRunning()
     {
-        boolean running = false;
-
-        try
-        {
-            running = NativeTools.isProcessRunning("olsrd");
-        }
-        catch (Exception e)
-        {
-            e.printStackTrace();
-        }
-
-        return running;
+        return mOlsrd.isRunning();
     }
 
     /**
@@ -104,11 +139,13 @@ public class OlsrHelper
             iface = "eth0";
         }
 
-        // HACK: modify LD_LIBRARY_PATH to olsrd can find plugins
+        // HACK: modify LD_LIBRARY_PATH to olsrd can find plugins. The debug
+        // level keeps olsrd in the foreground, so it keeps the PID recorded
         String command = "LD_LIBRARY_PATH=" + path + "/bin:$LD_LIBRARY_PATH; "
-                + path + "/bin/olsrd" + " -f " + path + "/conf/olsrd.conf"
-                // + "/data/data/org.span/conf/olsrd.conf"
-                + " -i " + iface + " -d 2";
+                + mOlsrd.wrap(path + "/bin/olsrd" + " -f " + path
+                        + "/conf/olsrd.conf"
+                        // + "/data/data/org.span/conf/olsrd.conf"
+                        + " -i " + iface + " -d 2");
 
         // /home/jussy/.android/platform.jks
 
@@ -141,7 +178,13 @@ public class OlsrHelper
                 mOlsrProcess = null;
             }
 
-            NativeTools.killProcess(mContext, "olsrd");
+            int pid = mOlsrd.getPid();
+            if (pid > 0)
+            {
+                NativeTools.killProcess(mContext, pid);
+            }
+            mOlsrd.forget();
+            mJsonInfo.invalidateAll();
         }
         catch (Exception e)
         {
@@ -157,53 +200,115 @@ public class OlsrHelper
      */
     public Collection<Neighbor> requestNeighbors()
     {
-        OlsrDataDump dump = null;
+        // Avoid the network (and the worker thread) if the cache is fresh
+        OlsrDataDump dump = mJsonInfo.peek(NEIGHBORS_REQUEST);
+        if (dump == null)
+        {
+            dump = fetchNeighbors();
+        }
+
+        if (dump == null)
+        {
+            return Collections.emptyList();
+        }
 
+        return dump.neighbors;
+    }
+
+    /**
+     * Fetch the current neighbors from the daemon, bypassing the cache, into
+     * a dump that the caller reuses from one poll to the next, and leave a
+     * copy in the cache for requestNeighbors(). The query runs on a worker
+     * thread, so that interrupting the caller cuts the wait short.
+     *
+     * @param into the dump to fill, whose contents are overwritten
+     * @return the dump, holding the neighbors, links and interfaces, or null
+     *         if the daemon could not be queried. If the caller was
+     *         interrupted, the dump may still be written to afterwards, so it
+     *         must not be reused.
+     */
+    public OlsrDataDump pollNeighbors(OlsrDataDump into)
+    {
+        Future<OlsrDataDump> poll = mAsyncJsonInfo.parseInto(NEIGHBORS_REQUEST,
+                into);
         try
         {
-            OlsrInfoThread thread = new OlsrInfoThread(
-                    "/neighbors/links/interfaces");
-            thread.start();
-            thread.join();
-            dump = thread.dump;
+            poll.get();
+            Log.d(TAG, "Polled " + into.neighbors.size() + " neighbors");
+            return into;
         }
         catch (InterruptedException e)
         {
-            Log.e(TAG, e.toString());
+            poll.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            Log.e(TAG, "Could not poll neighbors: " + e.getCause());
         }
 
-        return dump.neighbors;
+        return null;
     }
 
     /**
+     * Get the daemon's config. This is only fetched once per run of the
+     * daemon.
      *
-     * OlsrInfoThread
-     *
+     * @return the config, or null if the daemon could not be queried
      */
-    private class OlsrInfoThread extends Thread
+    public Config requestConfig()
     {
-        private final String request;
-        private OlsrDataDump dump;
+        // Not every jsoninfo plugin reports its uptime, so tell it which run
+        // of the daemon this is, so a restart drops the cached config
+        mJsonInfo.setInstance(mOlsrd.getPid());
 
-        /**
-         *
-         * @param request
-         */
-        public OlsrInfoThread(String request)
+        Future<Config> config = mAsyncJsonInfo.config();
+        try
         {
-            this.request = request;
-
+            return config.get();
+        }
+        catch (InterruptedException e)
+        {
+            // Let the caller see it too, e.g. a poll that is being stopped
+            config.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            Log.e(TAG, "Could not request config: " + e.getCause());
         }
 
-        /**
-         *
-         * @see java.lang.Thread#run()
-         */
-        @Override
-        public void run()
+        return null;
+    }
+
+    /**
+     *
+     * @return the neighbors, links and interfaces, or null if the daemon
+     *         could not be queried
+     */
+    private OlsrDataDump fetchNeighbors()
+    {
+        OlsrDataDump dump = null;
+
+        // Query on a worker thread (the caller may be the main thread), but
+        // never wait longer than the deadline for a hung daemon
+        Future<OlsrDataDump> neighbors = mAsyncJsonInfo
+                .parseCommand(NEIGHBORS_REQUEST);
+        try
+        {
+            dump = neighbors.get();
+            Log.d(TAG, "Received " + dump.neighbors.size() + " neighbors");
+        }
+        catch (InterruptedException e)
+        {
+            neighbors.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
         {
-            dump = mJsonInfo.parseCommand(request);
-            Log.d(TAG, dump.toString());
+            Log.e(TAG, "Could not request neighbors: " + e.getCause());
         }
+
+        return dump;
     }
 }
@@ -0,0 +1,422 @@
+/**
+ * Author: Justin Lewis Salmon <justin2.salmon@live.uwe.ac.uk>
+ *
+ * This file is part of the Proxima framework.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proxima;
+
+import net.commotionwireless.olsrinfo.DumpDelta;
+import net.commotionwireless.olsrinfo.DumpDiff;
+import net.commotionwireless.olsrinfo.InterfaceRates;
+import net.commotionwireless.olsrinfo.LinkQualityStore;
+import net.commotionwireless.olsrinfo.SnapshotHistory;
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+/**
+ *
+ * PollScheduler
+ *
+ * Polls the routing protocol daemon for the current neighbors on a background
+ * thread, at a rate that adapts to how much the mesh is changing. The fastest
+ * rate is the hello interval, since the neighbors cannot change faster than
+ * hellos arrive. The slowest rate is the hello validity time, since a
+ * neighbor that has gone is only dropped once its hellos expire, so polling
+ * more slowly than that could miss a flap entirely. Both are taken from the
+ * daemon's config. Only the hello timing applies, since the neighbors, links
+ * and interfaces are all that is polled: they change with hellos, not with
+ * the TC, MID or HNA messages that the other emission intervals and validity
+ * times pace.
+ *
+ * While nothing changes the interval doubles after each poll, up to the
+ * slowest rate. When the neighbors change the interval drops straight back
+ * to the fastest rate and the listener is notified; smaller changes, such as
+ * link qualities moving, halve it. Failed polls back off like quiet ones.
+ *
+ * Every successful poll can also be recorded in a SnapshotHistory, so that
+ * the neighbors at any moment can be looked at afterwards, its link
+ * qualities in a LinkQualityStore, and its interface counters in an
+ * InterfaceRates.
+ */
+public class PollScheduler implements Runnable
+{
+    /**
+     * The ID tag of this class for use with logging messages
+     */
+    private static final String TAG = "PollScheduler";
+
+    /**
+     * The fastest rate, in milliseconds, until the config is known. This is
+     * the default hello interval of olsrd.
+     */
+    private static final long DEFAULT_MIN_INTERVAL = 2000;
+
+    /**
+     * The slowest rate, in milliseconds, until the config is known. This is
+     * the default hello validity time of olsrd.
+     */
+    private static final long DEFAULT_MAX_INTERVAL = 20000;
+
+    /**
+     * Bounds on the intervals taken from the config, in milliseconds, in
+     * case it is unusual
+     */
+    private static final long LOWEST_INTERVAL = 500;
+    private static final long HIGHEST_INTERVAL = 60000;
+
+    /**
+     * Notified on the polling thread when the neighbors have changed. The
+     * entries in the delta are overwritten by the polls after, so they must
+     * be copied if they are wanted once the listener returns.
+     */
+    public interface Listener
+    {
+        void onNeighborsChanged(DumpDelta delta);
+    }
+
+    /**
+     * Used to query the daemon
+     */
+    private final OlsrHelper mOlsrHelper;
+
+    /**
+     * Notified of changes
+     */
+    private final Listener mListener;
+
+    /**
+     * Compares each poll with the one before
+     */
+    private final DumpDiff mDiff = new DumpDiff();
+
+    /**
+     * The thread the polls run on, while started
+     */
+    private HandlerThread mThread;
+
+    /**
+     * Posts the polls to mThread
+     */
+    private Handler mHandler;
+
+    /**
+     * The result of the last successful poll
+     */
+    private OlsrDataDump mLast;
+
+    /**
+     * The result of the poll before mLast, which the next poll is parsed
+     * into, or null if there is none
+     */
+    private OlsrDataDump mSpare;
+
+    /**
+     * Bumped by each start() and stop(), so that a poll that was under way
+     * when polling was stopped, or restarted, does not schedule another
+     */
+    private int mGeneration;
+
+    /**
+     * Set by pollNow(), so that a poll already under way is followed straight
+     * away by another
+     */
+    private boolean mPollNow;
+
+    /**
+     * Where each successful poll is recorded, or null if it is not
+     */
+    private volatile SnapshotHistory mHistory;
+
+    /**
+     * Where the link qualities of each successful poll are recorded, or null
+     * if they are not
+     */
+    private volatile LinkQualityStore mLinkQualities;
+
+    /**
+     * Where the interface counters of each successful poll are sampled, or
+     * null if they are not
+     */
+    private volatile InterfaceRates mInterfaceRates;
+
+    /**
+     * The current bounds on the interval, in milliseconds
+     */
+    private long mMinInterval = DEFAULT_MIN_INTERVAL;
+    private long mMaxInterval = DEFAULT_MAX_INTERVAL;
+
+    /**
+     * The time until the next poll, in milliseconds
+     */
+    private volatile long mInterval = DEFAULT_MIN_INTERVAL;
+
+    /**
+     * Constructor
+     *
+     * @param olsrHelper used to query the daemon
+     * @param listener notified when the neighbors change
+     */
+    public PollScheduler(OlsrHelper olsrHelper, Listener listener)
+    {
+        mOlsrHelper = olsrHelper;
+        mListener = listener;
+    }
+
+    /**
+     * Start polling straight away, if not already started
+     */
+    public synchronized void start()
+    {
+        if (mThread != null) return;
+
+        mThread = new HandlerThread(TAG, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mGeneration++;
+        // A listener of the last run may still hold on to the old dumps
+        mLast = null;
+        mSpare = null;
+        mInterval = mMinInterval;
+        mHandler.post(this);
+        Log.d(TAG, "Started polling");
+    }
+
+    /**
+     * Stop polling, and wait for a poll that is already under way to be cut
+     * short. Once this returns nothing more is recorded, so the history and
+     * stores can be closed.
+     */
+    public void stop()
+    {
+        HandlerThread thread;
+        synchronized (this)
+        {
+            if (mThread == null) return;
+
+            mHandler.removeCallbacks(this);
+            mThread.quit();
+            thread = mThread;
+            mThread = null;
+            mHandler = null;
+            mGeneration++;
+        }
+
+        // Not holding the lock, which the poll needs to finish. The listener
+        // may call this from the poll thread itself, which is then finishing.
+        if (thread != Thread.currentThread())
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Log.d(TAG, "Stopped polling");
+    }
+
+    /**
+     * Poll again as soon as possible, e.g. when the daemon has been restarted
+     */
+    public synchronized void pollNow()
+    {
+        if (mHandler == null) return;
+
+        mHandler.removeCallbacks(this);
+        mInterval = mMinInterval;
+        mPollNow = true;
+        mHandler.post(this);
+    }
+
+    /**
+     * Record every successful poll from now on in a history
+     *
+     * @param history the history, or null to stop recording
+     */
+    public void setHistory(SnapshotHistory history)
+    {
+        mHistory = history;
+    }
+
+    /**
+     * Record the link qualities of every successful poll from now on
+     *
+     * @param store the store, or null to stop recording
+     */
+    public void setLinkQualities(LinkQualityStore store)
+    {
+        mLinkQualities = store;
+    }
+
+    /**
+     * Sample the interface counters of every successful poll from now on
+     *
+     * @param rates where to sample them, or null to stop sampling
+     */
+    public void setInterfaceRates(InterfaceRates rates)
+    {
+        mInterfaceRates = rates;
+    }
+
+    /**
+     * @return the time between polls at the moment, in milliseconds
+     */
+    public long getInterval()
+    {
+        return mInterval;
+    }
+
+    /**
+     * Poll the daemon once and schedule the next poll. Runs on mThread.
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run()
+    {
+        int generation;
+        OlsrDataDump into;
+        synchronized (this)
+        {
+            if (mHandler == null) return;
+            generation = mGeneration;
+            mPollNow = false;
+            into = mSpare;
+            mSpare = null;
+        }
+
+        // Alternate between two dumps, so that each poll can be compared
+        // with the one before without allocating a new one every time
+        if (into == null) into = new OlsrDataDump();
+
+        Config config = mOlsrHelper.requestConfig();
+        OlsrDataDump dump = mOlsrHelper.pollNeighbors(into);
+
+        DumpDelta changed;
+        synchronized (this)
+        {
+            // Stopped, or stopped and started again, while polling. The
+            // dump is dropped, since a query cut short may still fill it.
+            if (generation != mGeneration) return;
+
+            OlsrDataDump last = mLast;
+            changed = record(config, dump);
+            mSpare = dump == null ? into : last;
+
+            // Keep a single chain of polls, even if pollNow() posted one
+            mHandler.removeCallbacks(this);
+            mHandler.postDelayed(this, mPollNow ? 0 : mInterval);
+        }
+
+        if (changed != null)
+        {
+            Log.d(TAG, "Neighbors changed: " + changed);
+            mListener.onNeighborsChanged(changed);
+        }
+    }
+
+    /**
+     * Record the outcome of a poll and work out the time until the next
+     *
+     * @param config the daemon's config, or null if it could not be fetched
+     * @param dump the result of the poll, or null if it failed
+     * @return the changes to tell the listener about, or null if there are
+     *         none
+     */
+    private DumpDelta record(Config config, OlsrDataDump dump)
+    {
+        updateBounds(config);
+
+        long interval = mInterval;
+        DumpDelta changed = null;
+
+        if (dump == null)
+        {
+            interval *= 2;
+        }
+        else
+        {
+            DumpDelta delta = mDiff.diff(mLast, dump);
+            boolean first = mLast == null;
+            mLast = dump;
+
+            SnapshotHistory history = mHistory;
+            if (history != null)
+            {
+                history.add(dump);
+            }
+
+            long now = System.currentTimeMillis();
+
+            LinkQualityStore linkQualities = mLinkQualities;
+            if (linkQualities != null)
+            {
+                linkQualities.add(dump, now);
+            }
+
+            InterfaceRates interfaceRates = mInterfaceRates;
+            if (interfaceRates != null)
+            {
+                interfaceRates.add(dump, now);
+            }
+
+            if (delta.hasNeighborChanges())
+            {
+                interval = mMinInterval;
+                if (!first)
+                {
+                    changed = delta;
+                }
+            }
+            else if (!delta.isEmpty())
+            {
+                interval /= 2;
+            }
+            else
+            {
+                interval *= 2;
+            }
+        }
+
+        mInterval = Math.max(mMinInterval, Math.min(mMaxInterval, interval));
+        return changed;
+    }
+
+    /**
+     * Take the bounds on the interval from the daemon's config, if there is
+     * one
+     *
+     * @param config the config, or null if it could not be fetched
+     */
+    private void updateBounds(Config config)
+    {
+        if (config == null || config.defaultHelloEmissionInterval <= 0) return;
+
+        // The config has them in seconds
+        long min = (long) (config.defaultHelloEmissionInterval * 1000);
+        long max = (long) (config.defaultHelloValidityTime * 1000);
+
+        mMinInterval = Math.max(LOWEST_INTERVAL, Math.min(HIGHEST_INTERVAL, min));
+        mMaxInterval = Math.max(mMinInterval, Math.min(HIGHEST_INTERVAL, max));
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Author: Justin Lewis Salmon <justin2.salmon@live.uwe.ac.uk>
+ *
+ * This file is part of the Proxima framework.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proxima;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import android.util.Log;
+
+/**
+ *
+ * ProcessTracker
+ *
+ * Keeps track of the PID of a native daemon, so that checking whether it is
+ * alive is a single read of /proc/<pid>/stat rather than a scan of every
+ * process on the device.
+ *
+ * The PID comes from a PID file, which the shell writes just before it
+ * execs the daemon (see wrap()), so it survives the app being restarted. If
+ * there is no PID file, or the process it names has gone, every process is
+ * scanned and the first match adopted. Since that is the usual state while
+ * the daemon is not running, the scan is done at most once every
+ * SCAN_INTERVAL, except straight away when the PID file first turns out to
+ * be stale.
+ *
+ * A PID only counts as the daemon while /proc/<pid>/stat names the daemon
+ * and the process is not a zombie, in case the PID has been reused.
+ */
+public class ProcessTracker
+{
+    /**
+     * The ID tag of this class for use with logging messages
+     */
+    private static final String TAG = "ProcessTracker";
+
+    /**
+     * The kernel truncates process names to this many characters in
+     * /proc/<pid>/stat
+     */
+    private static final int COMM_LENGTH = 15;
+
+    /**
+     * How often every process may be scanned for the daemon, in nanoseconds
+     */
+    private static final long SCAN_INTERVAL = 10000000000L;
+
+    /**
+     * The name of the daemon, as the kernel reports it
+     */
+    private final String mName;
+
+    /**
+     * Where the shell records the PID of the daemon
+     */
+    private final File mPidFile;
+
+    /**
+     * The PID of the daemon, or -1 if it is not known
+     */
+    private int mPid = -1;
+
+    /**
+     * When every process was last scanned, by System.nanoTime(), or 0 if
+     * they have not been
+     */
+    private long mLastScan = 0;
+
+    /**
+     * The PID in the PID file the last time it named a process that had gone,
+     * or -1
+     */
+    private int mStalePid = -1;
+
+    /**
+     * Holds the contents of /proc/<pid>/stat, reused between reads
+     */
+    private final byte[] mStat = new byte[512];
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the daemon's executable
+     * @param pidFile where to record its PID
+     */
+    public ProcessTracker(String name, File pidFile)
+    {
+        mName = name.length() > COMM_LENGTH ? name.substring(0, COMM_LENGTH)
+                : name;
+        mPidFile = pidFile;
+    }
+
+    /**
+     * Wrap a shell command that starts the daemon so that the shell records
+     * its PID. The daemon must not fork into the background, so that it keeps
+     * the shell's PID.
+     *
+     * @param command the command, which must be the last in the script
+     * @return commands to run in its place
+     */
+    public String wrap(String command)
+    {
+        String path = mPidFile.getAbsolutePath();
+        mPidFile.getParentFile().mkdirs();
+        return "echo $$ > " + path + "; chmod 0644 " + path + "; exec "
+                + command;
+    }
+
+    /**
+     * @return the PID of the daemon, or -1 if it is not running
+     */
+    public synchronized int getPid()
+    {
+        if (mPid > 0 && isAlive(mPid)) return mPid;
+
+        mPid = -1;
+        int pid = readPidFile();
+        if (pid > 0 && isAlive(pid))
+        {
+            mPid = pid;
+            return mPid;
+        }
+
+        // Started by someone else, or the PID file has gone. Scan now if the
+        // daemon has only just died, otherwise only now and then.
+        long now = System.nanoTime();
+        boolean stale = pid > 0 && pid != mStalePid;
+        mStalePid = pid;
+        if (!stale && mLastScan != 0 && now - mLastScan < SCAN_INTERVAL)
+        {
+            return -1;
+        }
+        mLastScan = now;
+
+        mPid = scan();
+        return mPid;
+    }
+
+    /**
+     * @return true if the daemon is running
+     */
+    public boolean isRunning()
+    {
+        return getPid() > 0;
+    }
+
+    /**
+     * Forget the PID, e.g. once the daemon has been killed
+     */
+    public synchronized void forget()
+    {
+        mPid = -1;
+        mLastScan = 0;
+        if (mPidFile.exists() && !mPidFile.delete())
+        {
+            Log.e(TAG, "Could not delete " + mPidFile);
+        }
+    }
+
+    /**
+     * Check whether a process is alive and is the daemon
+     *
+     * @param pid the PID
+     * @return true if /proc/<pid>/stat names the daemon, and it is not a
+     *         zombie
+     */
+    private boolean isAlive(int pid)
+    {
+        int length = 0;
+        InputStream in = null;
+
+        try
+        {
+            in = new FileInputStream("/proc/" + pid + "/stat");
+            int n;
+            while (length < mStat.length
+                    && (n = in.read(mStat, length, mStat.length - length)) > 0)
+            {
+                length += n;
+            }
+        }
+        catch (IOException e)
+        {
+            // No such process
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                if (in != null) in.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing.
+            }
+        }
+
+        // "<pid> (<comm>) <state> ...", where comm may itself hold brackets
+        int open = -1;
+        int close = -1;
+        for (int i = 0; i < length; i++)
+        {
+            if (mStat[i] == '(' && open < 0) open = i;
+            if (mStat[i] == ')') close = i;
+        }
+        if (open < 0 || close < 0 || close + 2 >= length) return false;
+
+        if (close - open - 1 != mName.length()) return false;
+        for (int i = 0; i < mName.length(); i++)
+        {
+            if (mStat[open + 1 + i] != mName.charAt(i)) return false;
+        }
+
+        byte state = mStat[close + 2];
+        return state != 'Z' && state != 'X';
+    }
+
+    /**
+     * @return the PID in the PID file, or -1 if there is none
+     */
+    private int readPidFile()
+    {
+        if (!mPidFile.canRead()) return -1;
+
+        try
+        {
+            return Integer.parseInt(NativeTools.readLinesFromFile(
+                    mPidFile.getAbsolutePath()).get(0));
+        }
+        catch (RuntimeException e)
+        {
+            // Empty, or half written
+            return -1;
+        }
+    }
+
+    /**
+     * Look through every process for the daemon
+     *
+     * @return the PID of the first match, or -1 if there is none
+     */
+    private int scan()
+    {
+        try
+        {
+            Set<String> pids = NativeTools.getPids(mName);
+            for (String pid : pids)
+            {
+                int p = Integer.parseInt(pid);
+                if (isAlive(p))
+                {
+                    Log.d(TAG, "Adopted " + mName + " with PID " + p);
+                    return p;
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            Log.e(TAG, "Could not scan processes: " + e.toString());
+        }
+
+        return -1;
+    }
+}
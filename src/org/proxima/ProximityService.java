@@ -22,6 +22,7 @@ package org.proxima;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import net.commotionwireless.olsrinfo.DumpDelta;
 import net.commotionwireless.olsrinfo.datatypes.Neighbor;
 import android.app.Service;
 import android.content.Intent;
@@ -74,7 +75,15 @@ public class ProximityService extends Service
         super.onCreate();
         Log.d(TAG, "Service started");
 
-        mHelper = new ProximityServiceHelper(this);
+        mHelper = new ProximityServiceHelper(this,
+                new PollScheduler.Listener()
+                {
+                    @Override
+                    public void onNeighborsChanged(DumpDelta delta)
+                    {
+                        sendNeighboursChangedBroadcast();
+                    }
+                });
         mMessenger = new Messenger(new ProximityServiceHandler(this));
         mNeighborDiscoveryStarted = false;
     }
@@ -88,6 +97,8 @@ public class ProximityService extends Service
     public void onDestroy()
     {
         super.onDestroy();
+        mHelper.stopPolling();
+        NativeTools.closeRootShell();
         Log.d(TAG, "Service stopped");
     }
 
@@ -150,6 +161,9 @@ public class ProximityService extends Service
 
             // Broadcast that the neighbors have changed
             sendNeighboursChangedBroadcast();
+
+            // From now on, broadcast whenever they change
+            mHelper.startPolling();
         }
         else
         {
@@ -168,6 +182,9 @@ public class ProximityService extends Service
 
                 // Broadcast that the neighbors have changed
                 sendNeighboursChangedBroadcast();
+
+                // From now on, broadcast whenever they change
+                mHelper.startPolling();
             }
         }
 
@@ -19,8 +19,13 @@
 
 package org.proxima;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 
+import net.commotionwireless.olsrinfo.InterfaceRates;
+import net.commotionwireless.olsrinfo.LinkQualityStore;
+import net.commotionwireless.olsrinfo.SnapshotHistory;
 import net.commotionwireless.olsrinfo.datatypes.Neighbor;
 import android.content.Context;
 import android.net.wifi.WifiManager;
@@ -42,6 +47,17 @@ public class ProximityServiceHelper
      */
     private static final String TAG = "ProximityServiceHelper";
 
+    /**
+     * The file the history of polls is kept in, under the files directory
+     */
+    private static final String HISTORY_FILE = "history";
+
+    /**
+     * The size of the history file. At the default poll rates this holds
+     * hours of a busy neighborhood.
+     */
+    private static final int HISTORY_SIZE = 4 * 1024 * 1024;
+
     /**
      * Used to enable/disable wifi.
      */
@@ -53,6 +69,27 @@ public class ProximityServiceHelper
      */
     private final OlsrHelper mOlsrHelper;
 
+    /**
+     * Polls the routing protocol for changes to the neighbors, while neighbor
+     * discovery is running
+     */
+    private final PollScheduler mPollScheduler;
+
+    /**
+     * The history of polls, while polling, or null if it could not be opened
+     */
+    private SnapshotHistory mHistory;
+
+    /**
+     * The quality of each link over time, kept for the life of the service
+     */
+    private final LinkQualityStore mLinkQualities = new LinkQualityStore();
+
+    /**
+     * The traffic rates of each interface, kept for the life of the service
+     */
+    private final InterfaceRates mInterfaceRates = new InterfaceRates();
+
     /**
      * Reference to the parent context
      */
@@ -68,12 +105,18 @@ public class ProximityServiceHelper
      * Constructor
      *
      * @param context the parent context reference
+     * @param listener notified when polling finds that the neighbors have
+     *            changed
      */
-    public ProximityServiceHelper(Context context)
+    public ProximityServiceHelper(Context context,
+            PollScheduler.Listener listener)
     {
         mWifiManager = (WifiManager) context
                 .getSystemService(Context.WIFI_SERVICE);
         mOlsrHelper = new OlsrHelper(context);
+        mPollScheduler = new PollScheduler(mOlsrHelper, listener);
+        mPollScheduler.setLinkQualities(mLinkQualities);
+        mPollScheduler.setInterfaceRates(mInterfaceRates);
         mContext = context;
         mInterfaceConfigured = false;
     }
@@ -86,7 +129,12 @@ public class ProximityServiceHelper
      */
     public boolean startRoutingProtocol()
     {
-        return mOlsrHelper.startDaemon();
+        boolean started = mOlsrHelper.startDaemon();
+
+        // The daemon is new, so don't wait for the current interval to end
+        mPollScheduler.pollNow();
+
+        return started;
     }
 
     /**
@@ -97,9 +145,79 @@ public class ProximityServiceHelper
      */
     public boolean stopRoutingProtocol()
     {
+        stopPolling();
         return mOlsrHelper.stopDaemon();
     }
 
+    /**
+     * Start polling the routing protocol for changes to the neighbors. The
+     * rate adapts to how much the mesh is changing.
+     */
+    public void startPolling()
+    {
+        if (mHistory == null)
+        {
+            try
+            {
+                mHistory = new SnapshotHistory(new File(mContext.getFilesDir(),
+                        HISTORY_FILE), HISTORY_SIZE);
+            }
+            catch (IOException e)
+            {
+                Log.e(TAG, "Could not open history: " + e.toString());
+            }
+        }
+
+        mPollScheduler.setHistory(mHistory);
+        mPollScheduler.start();
+    }
+
+    /**
+     * Stop polling the routing protocol
+     */
+    public void stopPolling()
+    {
+        mPollScheduler.stop();
+        mPollScheduler.setHistory(null);
+
+        if (mHistory != null)
+        {
+            try
+            {
+                mHistory.close();
+            }
+            catch (IOException e)
+            {
+                Log.e(TAG, "Could not close history: " + e.toString());
+            }
+            mHistory = null;
+        }
+    }
+
+    /**
+     * @return the history of polls, or null if not polling
+     */
+    public SnapshotHistory getHistory()
+    {
+        return mHistory;
+    }
+
+    /**
+     * @return the quality of each link over time
+     */
+    public LinkQualityStore getLinkQualities()
+    {
+        return mLinkQualities;
+    }
+
+    /**
+     * @return the traffic rates of each interface
+     */
+    public InterfaceRates getInterfaceRates()
+    {
+        return mInterfaceRates;
+    }
+
     /**
      * Query the running status of the routing protocol
      *
@@ -0,0 +1,399 @@
+/**
+ * Author: Justin Lewis Salmon <justin2.salmon@live.uwe.ac.uk>
+ *
+ * This file is part of the Proxima framework.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.proxima;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+/**
+ *
+ * RootShell
+ *
+ * A long-lived root shell that commands are written to one after another,
+ * so that running a command as root costs a write and a read instead of
+ * starting su (and, with it, a prompt from the superuser app) every time.
+ *
+ * Each command runs in a shell of its own, passed as a single quoted
+ * argument to sh -c so that a syntax error in it cannot spill over into the
+ * commands after it, with stdin from /dev/null so that it cannot swallow
+ * them either. It is followed by a marker unique to that command on both
+ * stdout and stderr, the one on stdout carrying the exit code. Two threads
+ * read the output as it arrives, so a command that writes a lot to one
+ * stream cannot block on the other. Commands are run one at a time;
+ * concurrent callers wait their turn.
+ *
+ * If su cannot be started, or a command does not finish within the timeout,
+ * the shell is killed and a fresh one started for the next command.
+ */
+public class RootShell
+{
+    /**
+     * The ID tag of this class for use with logging messages
+     */
+    private static final String TAG = "RootShell";
+
+    /**
+     * How long a command may take by default, in milliseconds
+     */
+    private static final long DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * The exit code reported for commands that could not be run, or did not
+     * finish in time
+     */
+    public static final int FAILED = -1;
+
+    /**
+     * Makes each marker unique
+     */
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    /**
+     * Receives the output of a command line by line, as it arrives, on one of
+     * the reader threads
+     */
+    public interface OutputListener
+    {
+        void onLine(String line, boolean stderr);
+    }
+
+    /**
+     * The outcome of a command
+     */
+    public static class Result
+    {
+        /**
+         * The exit code, or FAILED
+         */
+        public final int exitCode;
+
+        /**
+         * Everything written to stdout
+         */
+        public final String stdout;
+
+        /**
+         * Everything written to stderr
+         */
+        public final String stderr;
+
+        Result(int exitCode, String stdout, String stderr)
+        {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "exit " + exitCode + (stdout.length() > 0 ? "\n" + stdout : "")
+                    + (stderr.length() > 0 ? "\n" + stderr : "");
+        }
+    }
+
+    /**
+     * The command that is running, shared with the reader threads
+     */
+    private static class Pending
+    {
+        final String marker;
+        final OutputListener listener;
+        final StringBuilder stdout = new StringBuilder();
+        final StringBuilder stderr = new StringBuilder();
+        final CountDownLatch done = new CountDownLatch(2);
+        volatile int exitCode = FAILED;
+
+        Pending(String marker, OutputListener listener)
+        {
+            this.marker = marker;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * The su process, or null if there is none
+     */
+    private volatile Process mProcess;
+
+    /**
+     * Set once the output of mProcess has ended, i.e. it has exited
+     */
+    private volatile boolean mDead;
+
+    /**
+     * Commands are written here
+     */
+    private OutputStream mStdin;
+
+    /**
+     * The command that is running, or null
+     */
+    private volatile Pending mPending;
+
+    /**
+     * The time a command may take, in milliseconds
+     */
+    private long mTimeout = DEFAULT_TIMEOUT;
+
+    /**
+     * @param timeout how long a command may take, in milliseconds
+     */
+    public synchronized void setTimeout(long timeout)
+    {
+        mTimeout = timeout;
+    }
+
+    /**
+     * Run a command as root
+     *
+     * @param command one or more lines of shell script
+     * @return the outcome
+     */
+    public Result run(String command)
+    {
+        return run(command, null);
+    }
+
+    /**
+     * Run a command as root
+     *
+     * @param command one or more lines of shell script
+     * @param listener notified of each line of output as it arrives, or null
+     * @return the outcome
+     */
+    public synchronized Result run(String command, OutputListener listener)
+    {
+        Pending pending = new Pending("__proxima_" + sSequence.incrementAndGet()
+                + "_" + System.nanoTime(), listener);
+
+        try
+        {
+            if (mProcess != null && mDead) close();
+            if (mProcess == null) start();
+
+            mPending = pending;
+            String script = "sh -c " + quote(command) + " </dev/null\n"
+                    + "echo \"" + pending.marker + " $?\"\n"
+                    + "echo \"" + pending.marker + "\" >&2\n";
+            mStdin.write(script.getBytes("UTF-8"));
+            mStdin.flush();
+
+            if (!pending.done.await(mTimeout, TimeUnit.MILLISECONDS))
+            {
+                Log.e(TAG, "Timed out running: " + command);
+                close();
+            }
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Could not run command: " + e.toString());
+            close();
+        }
+        catch (InterruptedException e)
+        {
+            // The shell is left mid-command, so start afresh next time
+            close();
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            mPending = null;
+        }
+
+        synchronized (pending)
+        {
+            return new Result(pending.exitCode, pending.stdout.toString(),
+                    pending.stderr.toString());
+        }
+    }
+
+    /**
+     * Start su and the threads that read its output
+     *
+     * @throws IOException if su cannot be started
+     */
+    private void start() throws IOException
+    {
+        Process process = Runtime.getRuntime().exec("su");
+        mProcess = process;
+        mDead = false;
+        mStdin = process.getOutputStream();
+        new Reader(process, false).start();
+        new Reader(process, true).start();
+        Log.d(TAG, "Started root shell");
+    }
+
+    /**
+     * Kill the shell. The next command starts a new one.
+     */
+    public synchronized void close()
+    {
+        if (mProcess == null) return;
+
+        try
+        {
+            mStdin.write("exit\n".getBytes("UTF-8"));
+            mStdin.flush();
+        }
+        catch (IOException e)
+        {
+            // Already gone
+        }
+        mProcess.destroy();
+        mProcess = null;
+        mStdin = null;
+        Log.d(TAG, "Closed root shell");
+    }
+
+    /**
+     * Reads one of the shell's output streams, handing each line to the
+     * command that is running until its marker turns up
+     */
+    private class Reader extends Thread
+    {
+        private final Process mOwner;
+        private final InputStream mStream;
+        private final boolean mStderr;
+
+        Reader(Process owner, boolean stderr)
+        {
+            super(TAG + (stderr ? "-stderr" : "-stdout"));
+            setDaemon(true);
+            mOwner = owner;
+            mStream = stderr ? owner.getErrorStream() : owner.getInputStream();
+            mStderr = stderr;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(mStream, "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    Pending pending = mPending;
+                    if (pending == null || mProcess != mOwner) continue;
+
+                    int at = line.indexOf(pending.marker);
+                    if (at >= 0)
+                    {
+                        // The marker may follow output with no newline
+                        if (at > 0) append(pending, line.substring(0, at));
+                        if (!mStderr)
+                        {
+                            pending.exitCode = parseExitCode(line.substring(at
+                                    + pending.marker.length()));
+                        }
+                        pending.done.countDown();
+                    }
+                    else
+                    {
+                        append(pending, line);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                Log.d(TAG, "Root shell closed: " + e.toString());
+            }
+            finally
+            {
+                try
+                {
+                    mStream.close();
+                }
+                catch (IOException e)
+                {
+                    // Nothing.
+                }
+            }
+
+            // The shell has gone, e.g. su was refused, so don't leave the
+            // command waiting, unless a new shell has already taken over
+            if (mProcess != mOwner) return;
+            mDead = true;
+            Pending pending = mPending;
+            if (pending != null)
+            {
+                while (pending.done.getCount() > 0)
+                {
+                    pending.done.countDown();
+                }
+            }
+        }
+
+        private void append(Pending pending, String line)
+        {
+            synchronized (pending)
+            {
+                (mStderr ? pending.stderr : pending.stdout).append(line)
+                        .append('\n');
+            }
+            if (pending.listener != null)
+            {
+                try
+                {
+                    pending.listener.onLine(line, mStderr);
+                }
+                catch (RuntimeException e)
+                {
+                    // Keep reading, or the command would never finish
+                    Log.e(TAG, "Output listener failed: " + e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Quote a string as a single shell word
+     *
+     * @param s the string
+     * @return the string in single quotes, with any single quotes in it
+     *         escaped
+     */
+    private static String quote(String s)
+    {
+        return "'" + s.replace("'", "'\\''") + "'";
+    }
+
+    private static int parseExitCode(String s)
+    {
+        try
+        {
+            return Integer.parseInt(s.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return FAILED;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package net.commotionwireless.olsrinfo.testing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Plugin;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * A fake <tt>olsrd</tt> that serves the state of a {@link MeshGenerator}
+ * over TCP, in the formats of the jsoninfo and txtinfo plugins, so that
+ * {@link net.commotionwireless.olsrinfo.JsonInfo},
+ * {@link net.commotionwireless.olsrinfo.TxtInfo} and the apps that use them
+ * can be load tested without a mesh. Like the plugins, it reads one request
+ * line, writes the reply and closes the connection, and it answers plain
+ * HTTP <tt>GET</tt> requests too.
+ * <p>
+ * To test how clients cope with a struggling node, replies can be delayed
+ * with {@link #setLatency(long)}, trickled out with
+ * {@link #setBytesPerSecond(int)}, and cut off part way through with
+ * {@link #setDropRate(double)}. These can be changed while it is serving.
+ * <p>
+ * Connections are served concurrently. Anything that changes the mesh while
+ * it is being served, like calling {@link MeshGenerator#step()}, must
+ * synchronize on the mesh.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public class FakeOlsrd {
+
+	private static final String HTTP_OK = "HTTP/1.0 200 OK\r\n";
+
+	private final MeshGenerator mesh;
+	private final int viewpoint;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Random random = new Random();
+	private final List<ServerSocket> servers = new ArrayList<ServerSocket>();
+	private final ExecutorService pool = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "FakeOlsrd-"
+							+ count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	private volatile long latency = 0;
+	private volatile int bytesPerSecond = 0;
+	private volatile double dropRate = 0;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger dropped = new AtomicInteger();
+
+	/** the last snapshot, and the version of the mesh it was taken at */
+	private OlsrDataDump snapshot = null;
+	private int snapshotVersion = -1;
+
+	/**
+	 * @param mesh the mesh to serve
+	 * @param viewpoint the node that this olsrd runs on
+	 */
+	public FakeOlsrd(MeshGenerator mesh, int viewpoint) {
+		this.mesh = mesh;
+		this.viewpoint = viewpoint;
+	}
+
+	/**
+	 * @param millis how long to wait before starting each reply
+	 */
+	public void setLatency(long millis) {
+		latency = millis;
+	}
+
+	/**
+	 * @param bps how fast to write replies, or 0 for as fast as possible
+	 */
+	public void setBytesPerSecond(int bps) {
+		bytesPerSecond = bps;
+	}
+
+	/**
+	 * @param probability the chance of closing the connection part way
+	 *            through a reply
+	 */
+	public void setDropRate(double probability) {
+		dropRate = probability;
+	}
+
+	/**
+	 * @return the number of requests served so far, dropped ones included
+	 */
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of replies that were cut off
+	 */
+	public int getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Start serving jsoninfo on the loopback interface.
+	 *
+	 * @param port the port to listen on, or 0 for any free port
+	 * @return the port it is listening on
+	 */
+	public int startJsonInfo(int port) throws IOException {
+		return start(port, true);
+	}
+
+	/**
+	 * Start serving txtinfo on the loopback interface.
+	 *
+	 * @param port the port to listen on, or 0 for any free port
+	 * @return the port it is listening on
+	 */
+	public int startTxtInfo(int port) throws IOException {
+		return start(port, false);
+	}
+
+	/**
+	 * Stop listening, and stop any replies that are still being written.
+	 */
+	public void stop() {
+		synchronized (servers) {
+			for (ServerSocket s : servers) {
+				try {
+					s.close();
+				} catch (IOException e) {
+					// nothing more to do with it
+				}
+			}
+			servers.clear();
+		}
+		pool.shutdownNow();
+	}
+
+	private int start(int port, final boolean json) throws IOException {
+		final ServerSocket server = new ServerSocket(port, 200,
+				InetAddress.getByName("127.0.0.1"));
+		synchronized (servers) {
+			servers.add(server);
+		}
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!server.isClosed()) {
+					try {
+						final Socket sock = server.accept();
+						pool.execute(new Runnable() {
+							@Override
+							public void run() {
+								serve(sock, json);
+							}
+						});
+					} catch (IOException e) {
+						// closed
+					}
+				}
+			}
+		}, (json ? "FakeOlsrd-jsoninfo-" : "FakeOlsrd-txtinfo-")
+				+ server.getLocalPort());
+		t.setDaemon(true);
+		t.start();
+		return server.getLocalPort();
+	}
+
+	private void serve(Socket sock, boolean json) {
+		try {
+			sock.setSoTimeout(10000);
+			InputStream in = sock.getInputStream();
+			String line = readLine(in);
+			boolean http = line.startsWith("GET ");
+			String cmd = line;
+			if (http) {
+				// skip the headers, so the client is not reset on close
+				while (readLine(in).length() > 0)
+					;
+				int end = line.indexOf(' ', 4);
+				cmd = line.substring(4, end == -1 ? line.length() : end);
+			}
+			requests.incrementAndGet();
+
+			String body;
+			if (json)
+				body = jsoninfo(cmd);
+			else
+				body = txtinfo(cmd);
+			if (http)
+				body = HTTP_OK + "Content-Type: "
+						+ (json && !cmd.contains("olsrd.conf") ? "application/json"
+								: "text/plain") + "\r\n\r\n" + body;
+			write(sock.getOutputStream(), body.getBytes("UTF-8"));
+		} catch (IOException e) {
+			// the client went away, or took too long
+		} catch (InterruptedException e) {
+			// stopped
+		} finally {
+			try {
+				sock.close();
+			} catch (IOException e) {
+				// nothing more to do with it
+			}
+		}
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1 && c != '\n')
+			if (c != '\r' && sb.length() < 1024)
+				sb.append((char) c);
+		return sb.toString().trim();
+	}
+
+	private void write(OutputStream out, byte[] reply) throws IOException,
+			InterruptedException {
+		if (latency > 0)
+			Thread.sleep(latency);
+		int length = reply.length;
+		if (dropRate > 0 && random.nextDouble() < dropRate) {
+			dropped.incrementAndGet();
+			length = random.nextInt(reply.length + 1);
+		}
+		int bps = bytesPerSecond;
+		if (bps <= 0) {
+			out.write(reply, 0, length);
+		} else {
+			// ten chunks a second
+			int chunk = Math.max(1, bps / 10);
+			for (int off = 0; off < length; off += chunk) {
+				out.write(reply, off, Math.min(chunk, length - off));
+				out.flush();
+				Thread.sleep(100);
+			}
+		}
+		out.flush();
+	}
+
+	private OlsrDataDump snapshot() {
+		synchronized (mesh) {
+			int version = mesh.getVersion();
+			if (snapshot == null || snapshotVersion != version) {
+				snapshot = mesh.snapshot(viewpoint);
+				snapshotVersion = version;
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * @param cmd the request, e.g. <tt>/all</tt> or <tt>/links/routes</tt>
+	 * @return the reply of the jsoninfo plugin
+	 */
+	String jsoninfo(String cmd) throws IOException {
+		OlsrDataDump dump = snapshot();
+		if (cmd.contains("olsrd.conf"))
+			return olsrdConf(dump);
+		Map<String, Object> reply = new LinkedHashMap<String, Object>();
+		for (String s : cmd.split("/")) {
+			boolean all = s.equals("all");
+			boolean runtime = all || s.equals("runtime");
+			boolean startup = all || s.equals("startup");
+			if (runtime || s.equals("neighbors"))
+				reply.put("neighbors", dump.neighbors);
+			if (runtime || s.equals("links"))
+				reply.put("links", dump.links);
+			if (runtime || s.equals("routes"))
+				reply.put("routes", dump.routes);
+			if (runtime || s.equals("hna"))
+				reply.put("hna", dump.hna);
+			if (runtime || s.equals("mid"))
+				reply.put("mid", dump.mid);
+			if (runtime || s.equals("topology"))
+				reply.put("topology", dump.topology);
+			if (runtime || s.equals("gateways"))
+				reply.put("gateways", dump.gateways);
+			if (runtime || s.equals("interfaces"))
+				reply.put("interfaces", dump.interfaces);
+			if (startup || s.equals("config"))
+				reply.put("config", dump.config);
+			if (startup || s.equals("plugins"))
+				reply.put("plugins", dump.plugins);
+		}
+		reply.put("systemTime", dump.systemTime);
+		reply.put("timeSinceStartup", dump.timeSinceStartup);
+		return mapper.writeValueAsString(reply);
+	}
+
+	/**
+	 * @param cmd the request, e.g. <tt>/top</tt>
+	 * @return the reply of the txtinfo plugin
+	 */
+	String txtinfo(String cmd) {
+		OlsrDataDump dump = snapshot();
+		StringBuilder sb = new StringBuilder();
+		if (cmd.equals("/con"))
+			return olsrdConf(dump);
+		// with no command it prints the most used tables, as txtinfo does
+		boolean all = !cmd.startsWith("/") || cmd.length() < 4;
+		if (all || cmd.startsWith("/nei"))
+			neighbors(sb, dump, false);
+		if (cmd.startsWith("/2ho"))
+			neighbors(sb, dump, true);
+		if (all || cmd.startsWith("/lin")) {
+			sb.append("Table: Links\nLocal IP\tRemote IP\tHyst.\tLQ\tNLQ\tCost\n");
+			for (Link l : dump.links)
+				sb.append(l.localIP).append('\t').append(l.remoteIP)
+						.append("\t0.00\t").append(lq(l.linkQuality))
+						.append('\t').append(lq(l.neighborLinkQuality))
+						.append('\t').append(cost(l.linkCost)).append('\n');
+			sb.append('\n');
+		}
+		if (all || cmd.startsWith("/rou")) {
+			sb.append("Table: Routes\nDestination\tGateway IP\tMetric\tETX\tInterface\n");
+			for (Route r : dump.routes)
+				sb.append(r.destination).append('/').append(r.genmask)
+						.append('\t').append(r.gateway).append('\t')
+						.append(r.metric).append('\t')
+						.append(cost(r.rtpMetricCost)).append('\t')
+						.append(r.networkInterface).append('\n');
+			sb.append('\n');
+		}
+		if (all || cmd.startsWith("/hna")) {
+			sb.append("Table: HNA\nDestination\tGateway\n");
+			for (HNA h : dump.hna)
+				sb.append(h.destination).append('/').append(h.genmask)
+						.append('\t').append(h.gateway).append('\n');
+			sb.append('\n');
+		}
+		if (all || cmd.startsWith("/mid")) {
+			sb.append("Table: MID\nIP address\tAliases\n");
+			for (MID m : dump.mid) {
+				sb.append(m.ipAddress).append('\t');
+				String sep = "";
+				for (MIDAlias a : m.aliases) {
+					sb.append(sep).append(a.ipAddress);
+					sep = ";";
+				}
+				sb.append('\n');
+			}
+			sb.append('\n');
+		}
+		if (all || cmd.startsWith("/top")) {
+			sb.append("Table: Topology\nDest. IP\tLast hop IP\tLQ\tNLQ\tCost\n");
+			for (Node n : dump.topology)
+				sb.append(n.destinationIP).append('\t').append(n.lastHopIP)
+						.append('\t').append(lq(n.linkQuality)).append('\t')
+						.append(lq(n.neighborLinkQuality)).append('\t')
+						.append(cost(n.tcEdgeCost)).append('\n');
+			sb.append('\n');
+		}
+		if (cmd.startsWith("/int")) {
+			sb.append("Table: Interfaces\nName\tState\tMTU\tWLAN\tSrc-Adress\tMask\tDst-Adress\n");
+			for (Interface i : dump.interfaces)
+				sb.append(i.name).append('\t').append(i.state.toUpperCase(Locale.US))
+						.append('\t').append(i.mtu).append('\t')
+						.append(i.wireless ? "Yes" : "No").append('\t')
+						.append(i.ipv4Address).append('\t').append(i.netmask)
+						.append('\t').append(i.broadcast).append('\n');
+			sb.append('\n');
+		}
+		if (cmd.startsWith("/gat")) {
+			sb.append("Table: Gateways\nStatus\tGateway IP\tETX\tHopcnt\tUplink\tDnlink\tIPv4\tIPv6\tPrefix\n");
+			for (Gateway g : dump.gateways)
+				sb.append(g.ipv4Status).append('\t').append(g.ipAddress)
+						.append('\t').append(cost(g.tcPathCost)).append('\t')
+						.append(g.hopCount).append('\t').append(g.uplinkSpeed)
+						.append('\t').append(g.downlinkSpeed).append('\t')
+						.append(g.ipv4 ? "Yes" : "No").append('\t')
+						.append(g.ipv6 ? "Yes" : "No").append('\t')
+						.append(g.externalPrefix).append('\n');
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void neighbors(StringBuilder sb, OlsrDataDump dump,
+			boolean twoHop) {
+		sb.append("Table: Neighbors\nIP address\tSYM\tMPR\tMPRS\tWill.\t");
+		sb.append(twoHop ? "(2-hop address)+" : "2 Hop Neighbors").append('\n');
+		for (Neighbor n : dump.neighbors) {
+			sb.append(n.ipv4Address).append('\t').append(yes(n.symmetric))
+					.append('\t').append(yes(n.multiPointRelay)).append('\t')
+					.append(yes(n.multiPointRelaySelector)).append('\t')
+					.append(n.willingness);
+			if (twoHop)
+				for (String t : n.twoHopNeighbors)
+					sb.append('\t').append(t);
+			else
+				sb.append('\t').append(n.twoHopNeighborCount);
+			sb.append('\n');
+		}
+		sb.append('\n');
+	}
+
+	private static String olsrdConf(OlsrDataDump dump) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# generated by FakeOlsrd\n");
+		sb.append("IpVersion ").append(dump.config.ipVersion).append('\n');
+		sb.append("Willingness ").append(dump.config.willingness).append('\n');
+		sb.append("LinkQualityLevel ").append(dump.config.linkQualityLevel)
+				.append('\n');
+		sb.append("LinkQualityAlgorithm \"")
+				.append(dump.config.linkQualityAlgorithm).append("\"\n");
+		sb.append("TcRedundancy ").append(dump.config.tcRedundancy).append('\n');
+		sb.append("MprCoverage ").append(dump.config.mprCoverage).append('\n');
+		for (Plugin p : dump.plugins)
+			sb.append("\nLoadPlugin \"").append(p.plugin).append("\"\n{\n")
+					.append("    PlParam \"port\" \"").append(p.port)
+					.append("\"\n    PlParam \"accept\" \"").append(p.accept)
+					.append("\"\n}\n");
+		for (Interface i : dump.interfaces)
+			sb.append("\nInterface \"").append(i.name).append("\"\n{\n")
+					.append("    HelloInterval ")
+					.append(dump.config.defaultHelloEmissionInterval)
+					.append("\n    HelloValidityTime ")
+					.append(dump.config.defaultHelloValidityTime)
+					.append("\n    TcInterval ")
+					.append(dump.config.defaultTcEmissionInterval)
+					.append("\n    TcValidityTime ")
+					.append(dump.config.defaultTcValidityTime).append("\n}\n");
+		return sb.toString();
+	}
+
+	private static String yes(boolean b) {
+		return b ? "YES" : "NO";
+	}
+
+	private static String lq(float f) {
+		return String.format(Locale.US, "%.3f", f);
+	}
+
+	private static String cost(long cost) {
+		if (cost >= MeshGenerator.BROKEN)
+			return "INFINITE";
+		return lq(cost / 1024f);
+	}
+
+	/**
+	 * Serve a mesh on the standard jsoninfo and txtinfo ports, stepping it
+	 * every second, until killed.
+	 *
+	 * @param args the number of nodes, and optionally the jsoninfo and
+	 *            txtinfo ports
+	 */
+	public static void main(String[] args) throws Exception {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int jsonPort = args.length > 1 ? Integer.parseInt(args[1]) : 9090;
+		int txtPort = args.length > 2 ? Integer.parseInt(args[2]) : 2006;
+		MeshGenerator mesh = new MeshGenerator(nodes);
+		FakeOlsrd olsrd = new FakeOlsrd(mesh, 0);
+		System.out.println("jsoninfo on port " + olsrd.startJsonInfo(jsonPort)
+				+ ", txtinfo on port " + olsrd.startTxtInfo(txtPort) + ", "
+				+ mesh.getLinkCount() + " links");
+		while (true) {
+			Thread.sleep(1000);
+			synchronized (mesh) {
+				mesh.step();
+			}
+		}
+	}
+}
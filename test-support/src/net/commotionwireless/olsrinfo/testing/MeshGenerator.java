@@ -0,0 +1,648 @@
+package net.commotionwireless.olsrinfo.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import net.commotionwireless.olsrinfo.Ipv4;
+import net.commotionwireless.olsrinfo.datatypes.Config;
+import net.commotionwireless.olsrinfo.datatypes.Gateway;
+import net.commotionwireless.olsrinfo.datatypes.HNA;
+import net.commotionwireless.olsrinfo.datatypes.Interface;
+import net.commotionwireless.olsrinfo.datatypes.Link;
+import net.commotionwireless.olsrinfo.datatypes.MID;
+import net.commotionwireless.olsrinfo.datatypes.MIDAlias;
+import net.commotionwireless.olsrinfo.datatypes.Neighbor;
+import net.commotionwireless.olsrinfo.datatypes.Node;
+import net.commotionwireless.olsrinfo.datatypes.OlsrDataDump;
+import net.commotionwireless.olsrinfo.datatypes.Plugin;
+import net.commotionwireless.olsrinfo.datatypes.Route;
+
+/**
+ * Generates the OLSR state of a synthetic mesh, for load testing without
+ * <tt>olsrd</tt> or radios. Nodes are scattered over a square and linked
+ * to the nodes within radio range, with the range chosen to give the
+ * requested average degree, so the mesh is multi-hop like a real one. Each
+ * direction of a link has its own link quality, drawn from a distribution
+ * of mostly good links with a tail of poor ones.
+ * <p>
+ * {@link #snapshot(int)} gives the state as the jsoninfo plugin on one node
+ * would report it: its links, neighbors with two-hop neighbors and MPRs,
+ * the whole topology, least-ETX routes, and the HNA, MID and gateway
+ * announcements. {@link #step()} moves time on and applies churn: link
+ * qualities drift, and some links go down or come back.
+ * <p>
+ * Everything is derived from the seed, so the same settings always give the
+ * same mesh. Instances are not thread-safe.
+ *
+ * Written as part of the Commotion Wireless project
+ */
+public class MeshGenerator {
+
+	/** olsrd's LINK_COST_BROKEN */
+	public static final int BROKEN = 1 << 22;
+
+	private int nodes;
+	private double degree = 6;
+	private double poorLinks = 0.2;
+	private int hnaCount = 0;
+	private int midCount = 0;
+	private int gatewayCount = 0;
+	private double churn = 0.02;
+	private long stepMillis = 2000;
+	private long seed = 1;
+
+	private Random random;
+	private boolean built = false;
+	private long elapsed = 0;
+	private int version = 0;
+
+	// undirected links, each with a quality per direction
+	private int linkCount;
+	private int[] linkA;
+	private int[] linkB;
+	private float[] qualityAB;
+	private float[] qualityBA;
+	private float[] baseAB;
+	private float[] baseBA;
+	private boolean[] up;
+	// adjacency lists of link indexes
+	private int[][] adjacent;
+
+	private int[] hnaOwners;
+	private int[] midOwners;
+	private int[] gatewayOwners;
+
+	/**
+	 * @param nodes how many nodes the mesh has, at least 2
+	 */
+	public MeshGenerator(int nodes) {
+		this.nodes = Math.max(2, nodes);
+		hnaCount = this.nodes / 20;
+		midCount = this.nodes / 20;
+		gatewayCount = Math.max(1, this.nodes / 50);
+	}
+
+	/**
+	 * @param average the average number of links per node, 6 by default
+	 */
+	public void setDegree(double average) {
+		degree = average;
+		built = false;
+	}
+
+	/**
+	 * @param fraction how many links are poor, with a link quality well
+	 *            below 1, 0.2 by default
+	 */
+	public void setPoorLinks(double fraction) {
+		poorLinks = fraction;
+		built = false;
+	}
+
+	/**
+	 * @param count how many nodes announce an HNA, by default one in 20
+	 */
+	public void setHnaCount(int count) {
+		hnaCount = count;
+		built = false;
+	}
+
+	/**
+	 * @param count how many nodes have a second address, by default one in
+	 *            20
+	 */
+	public void setMidCount(int count) {
+		midCount = count;
+		built = false;
+	}
+
+	/**
+	 * @param count how many nodes are internet gateways, by default one in
+	 *            50
+	 */
+	public void setGatewayCount(int count) {
+		gatewayCount = count;
+		built = false;
+	}
+
+	/**
+	 * @param fraction how many of the links change at each {@link #step()},
+	 *            0.02 by default
+	 */
+	public void setChurn(double fraction) {
+		churn = fraction;
+	}
+
+	/**
+	 * @param millis how much time each {@link #step()} stands for, 2000 by
+	 *            default, which is olsrd's default hello interval
+	 */
+	public void setStepMillis(long millis) {
+		stepMillis = millis;
+	}
+
+	public void setSeed(long s) {
+		seed = s;
+		built = false;
+	}
+
+	public int getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * @return the main address of a node, 10.0.0.1 for node 0
+	 */
+	public static String address(int node) {
+		return Ipv4.toString(0x0a000001 + node);
+	}
+
+	/**
+	 * @return a number that changes whenever the state of the mesh does, so
+	 *         that snapshots can be cached
+	 */
+	public int getVersion() {
+		build();
+		return version;
+	}
+
+	/**
+	 * @return the number of links that are up
+	 */
+	public int getLinkCount() {
+		build();
+		int ret = 0;
+		for (int i = 0; i < linkCount; i++)
+			if (up[i])
+				ret++;
+		return ret;
+	}
+
+	/**
+	 * Move time on by one step and apply churn: each link changes with the
+	 * churn probability, mostly by drifting in quality, sometimes by going
+	 * down. Links that are down come back after a step or two, and
+	 * qualities drift back towards where they started, so the mesh changes
+	 * without wearing away.
+	 */
+	public void step() {
+		build();
+		elapsed += stepMillis;
+		version++;
+		for (int i = 0; i < linkCount; i++) {
+			if (!up[i]) {
+				up[i] = random.nextBoolean();
+				continue;
+			}
+			if (random.nextDouble() >= churn)
+				continue;
+			if (random.nextDouble() < 0.2) {
+				up[i] = false;
+			} else {
+				qualityAB[i] = drift(qualityAB[i], baseAB[i]);
+				qualityBA[i] = drift(qualityBA[i], baseBA[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param viewpoint the node whose jsoninfo plugin is reporting
+	 * @return the full state, as <tt>/all</tt> would report it
+	 */
+	public OlsrDataDump snapshot(int viewpoint) {
+		build();
+		OlsrDataDump ret = new OlsrDataDump();
+		ret.systemTime = (int) (1383563345L + elapsed / 1000);
+		ret.timeSinceStartup = (int) (60000 + elapsed);
+		ret.config = config(viewpoint);
+		ret.plugins = plugins();
+		ret.interfaces = interfaces(viewpoint);
+		ret.links = new ArrayList<Link>();
+		ret.neighbors = new ArrayList<Neighbor>();
+		ret.topology = new ArrayList<Node>();
+		ret.routes = new ArrayList<Route>();
+		ret.hna = new ArrayList<HNA>();
+		ret.mid = new ArrayList<MID>();
+		ret.gateways = new ArrayList<Gateway>();
+
+		// links and neighbors
+		int[] oneHop = neighbors(viewpoint);
+		boolean[] isMpr = mprs(viewpoint, oneHop);
+		for (int k = 0; k < oneHop.length; k++) {
+			int l = linkTo(viewpoint, oneHop[k]);
+			Link link = new Link();
+			link.localIP = address(viewpoint);
+			link.remoteIP = address(oneHop[k]);
+			link.linkQuality = quality(l, oneHop[k], viewpoint);
+			link.neighborLinkQuality = quality(l, viewpoint, oneHop[k]);
+			link.linkCost = cost(link.linkQuality, link.neighborLinkQuality);
+			link.validityTime = 6000;
+			ret.links.add(link);
+
+			Neighbor n = new Neighbor();
+			n.ipv4Address = address(oneHop[k]);
+			n.symmetric = true;
+			n.multiPointRelay = isMpr[k];
+			int[] theirs = neighbors(oneHop[k]);
+			n.multiPointRelaySelector = mprs(oneHop[k], theirs)[indexOf(theirs,
+					viewpoint)];
+			n.willingness = 3;
+			List<String> twoHop = new ArrayList<String>();
+			for (int t : theirs)
+				if (t != viewpoint)
+					twoHop.add(address(t));
+			n.twoHopNeighbors = twoHop;
+			n.twoHopNeighborCount = twoHop.size();
+			ret.neighbors.add(n);
+		}
+
+		// every node advertises all of its links, as with TcRedundancy 2
+		for (int i = 0; i < linkCount; i++) {
+			if (!up[i])
+				continue;
+			ret.topology.add(tc(linkA[i], linkB[i], i));
+			ret.topology.add(tc(linkB[i], linkA[i], i));
+		}
+
+		// least-ETX routes
+		long[] dist = new long[nodes];
+		int[] firstHop = new int[nodes];
+		int[] hops = new int[nodes];
+		dijkstra(viewpoint, dist, firstHop, hops);
+		for (int v = 0; v < nodes; v++) {
+			if (v == viewpoint || dist[v] == Long.MAX_VALUE)
+				continue;
+			Route r = new Route();
+			r.destination = address(v);
+			r.genmask = 32;
+			r.gateway = address(firstHop[v]);
+			r.metric = hops[v];
+			r.rtpMetricCost = (int) Math.min(dist[v], Integer.MAX_VALUE);
+			r.networkInterface = "wlan0";
+			ret.routes.add(r);
+		}
+
+		for (int i = 0; i < hnaOwners.length; i++) {
+			HNA h = new HNA();
+			h.destination = "172." + (16 + i / 256 % 16) + "." + (i % 256) + ".0";
+			h.genmask = 24;
+			h.gateway = address(hnaOwners[i]);
+			h.validityTime = 30000;
+			ret.hna.add(h);
+			if (dist[hnaOwners[i]] != Long.MAX_VALUE && hnaOwners[i] != viewpoint) {
+				Route r = new Route();
+				r.destination = h.destination;
+				r.genmask = h.genmask;
+				r.gateway = address(firstHop[hnaOwners[i]]);
+				r.metric = hops[hnaOwners[i]];
+				r.rtpMetricCost = (int) Math.min(dist[hnaOwners[i]],
+						Integer.MAX_VALUE);
+				r.networkInterface = "wlan0";
+				ret.routes.add(r);
+			}
+		}
+		for (int i = 0; i < midOwners.length; i++) {
+			MID m = new MID();
+			m.ipAddress = address(midOwners[i]);
+			MIDAlias alias = new MIDAlias();
+			alias.ipAddress = "192.168." + (i / 256 % 256) + "." + (i % 256);
+			alias.validityTime = 30000;
+			m.aliases = Collections.singletonList(alias);
+			ret.mid.add(m);
+		}
+		for (int i = 0; i < gatewayOwners.length; i++) {
+			int g = gatewayOwners[i];
+			if (dist[g] == Long.MAX_VALUE)
+				continue;
+			Gateway gw = new Gateway();
+			gw.ipAddress = address(g);
+			gw.ipType = "ipv4";
+			gw.ipv4 = true;
+			gw.ipv4Status = "u";
+			gw.ipv6Status = "-";
+			gw.hopCount = hops[g];
+			gw.tcPathCost = (int) Math.min(dist[g], Integer.MAX_VALUE);
+			gw.uplinkSpeed = 1024;
+			gw.downlinkSpeed = 4096;
+			gw.externalPrefix = "0.0.0.0/0";
+			ret.gateways.add(gw);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the nodes with a link that is up to this node
+	 */
+	public int[] neighbors(int node) {
+		build();
+		int[] ret = new int[adjacent[node].length];
+		int n = 0;
+		for (int l : adjacent[node])
+			if (up[l])
+				ret[n++] = linkA[l] == node ? linkB[l] : linkA[l];
+		return n == ret.length ? ret : Arrays.copyOf(ret, n);
+	}
+
+	private void build() {
+		if (built)
+			return;
+		random = new Random(seed);
+		elapsed = 0;
+		double[] x = new double[nodes];
+		double[] y = new double[nodes];
+		for (int i = 0; i < nodes; i++) {
+			x[i] = random.nextDouble();
+			y[i] = random.nextDouble();
+		}
+		// expected neighbors within r of a node is nodes * pi * r^2
+		double range = Math.sqrt(degree / (Math.PI * nodes));
+		int cells = Math.max(1, (int) (1 / range));
+		List<List<Integer>> grid = new ArrayList<List<Integer>>(cells * cells);
+		for (int i = 0; i < cells * cells; i++)
+			grid.add(new ArrayList<Integer>());
+		for (int i = 0; i < nodes; i++)
+			grid.get(cell(x[i], cells) * cells + cell(y[i], cells)).add(i);
+
+		linkCount = 0;
+		linkA = new int[nodes * 4];
+		linkB = new int[nodes * 4];
+		for (int i = 0; i < nodes; i++) {
+			int cx = cell(x[i], cells);
+			int cy = cell(y[i], cells);
+			for (int gx = Math.max(0, cx - 1); gx <= Math.min(cells - 1, cx + 1); gx++) {
+				for (int gy = Math.max(0, cy - 1); gy <= Math.min(cells - 1, cy + 1); gy++) {
+					for (int j : grid.get(gx * cells + gy)) {
+						if (j <= i)
+							continue;
+						double dx = x[i] - x[j];
+						double dy = y[i] - y[j];
+						if (dx * dx + dy * dy <= range * range)
+							addLink(i, j);
+					}
+				}
+			}
+		}
+		// join any node left on its own to its nearest neighbor by index
+		int[] degrees = new int[nodes];
+		for (int i = 0; i < linkCount; i++) {
+			degrees[linkA[i]]++;
+			degrees[linkB[i]]++;
+		}
+		for (int i = 0; i < nodes; i++)
+			if (degrees[i] == 0)
+				addLink(i, (i + 1) % nodes);
+
+		qualityAB = new float[linkCount];
+		qualityBA = new float[linkCount];
+		up = new boolean[linkCount];
+		for (int i = 0; i < linkCount; i++) {
+			qualityAB[i] = initialQuality();
+			qualityBA[i] = initialQuality();
+			up[i] = true;
+		}
+		baseAB = qualityAB.clone();
+		baseBA = qualityBA.clone();
+		int[] counts = new int[nodes];
+		for (int i = 0; i < linkCount; i++) {
+			counts[linkA[i]]++;
+			counts[linkB[i]]++;
+		}
+		adjacent = new int[nodes][];
+		for (int i = 0; i < nodes; i++)
+			adjacent[i] = new int[counts[i]];
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < linkCount; i++) {
+			adjacent[linkA[i]][counts[linkA[i]]++] = i;
+			adjacent[linkB[i]][counts[linkB[i]]++] = i;
+		}
+
+		hnaOwners = pick(hnaCount);
+		midOwners = pick(midCount);
+		gatewayOwners = pick(gatewayCount);
+		version++;
+		built = true;
+	}
+
+	private static int cell(double v, int cells) {
+		return Math.min(cells - 1, (int) (v * cells));
+	}
+
+	private void addLink(int a, int b) {
+		if (linkCount == linkA.length) {
+			linkA = Arrays.copyOf(linkA, linkCount * 2);
+			linkB = Arrays.copyOf(linkB, linkCount * 2);
+		}
+		linkA[linkCount] = a;
+		linkB[linkCount] = b;
+		linkCount++;
+	}
+
+	private int[] pick(int count) {
+		count = Math.max(0, Math.min(count, nodes));
+		int[] all = new int[nodes];
+		for (int i = 0; i < nodes; i++)
+			all[i] = i;
+		for (int i = 0; i < count; i++) {
+			int j = i + random.nextInt(nodes - i);
+			int t = all[i];
+			all[i] = all[j];
+			all[j] = t;
+		}
+		return Arrays.copyOf(all, count);
+	}
+
+	private float initialQuality() {
+		double q;
+		if (random.nextDouble() < poorLinks)
+			q = 0.1 + random.nextDouble() * 0.6;
+		else
+			q = 1 - Math.abs(random.nextGaussian()) * 0.05;
+		return round(q);
+	}
+
+	private float drift(float q, float base) {
+		return round(q + (base - q) / 2 + random.nextGaussian() * 0.1);
+	}
+
+	private static float round(double q) {
+		q = Math.max(0.01, Math.min(1, q));
+		return Math.round(q * 1000) / 1000f;
+	}
+
+	/**
+	 * @return the quality of a link as received at <tt>to</tt>
+	 */
+	private float quality(int l, int from, int to) {
+		return linkA[l] == from ? qualityAB[l] : qualityBA[l];
+	}
+
+	private static int cost(float lq, float nlq) {
+		if (lq <= 0 || nlq <= 0)
+			return BROKEN;
+		// ETX, scaled by 1024 as olsrd does
+		return (int) Math.min(BROKEN, 1024 / (lq * nlq));
+	}
+
+	private int linkTo(int a, int b) {
+		for (int l : adjacent[a])
+			if (up[l] && (linkA[l] == b || linkB[l] == b))
+				return l;
+		return -1;
+	}
+
+	private Node tc(int from, int to, int l) {
+		Node n = new Node();
+		n.lastHopIP = address(from);
+		n.destinationIP = address(to);
+		n.linkQuality = quality(l, to, from);
+		n.neighborLinkQuality = quality(l, from, to);
+		n.tcEdgeCost = cost(n.linkQuality, n.neighborLinkQuality);
+		n.validityTime = 15000;
+		return n;
+	}
+
+	private static int indexOf(int[] a, int v) {
+		for (int i = 0; i < a.length; i++)
+			if (a[i] == v)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Greedy MPR selection: repeatedly take the neighbor that covers the
+	 * most two-hop neighbors that are not covered yet.
+	 *
+	 * @return whether each of the one-hop neighbors is an MPR
+	 */
+	private boolean[] mprs(int node, int[] oneHop) {
+		boolean[] ret = new boolean[oneHop.length];
+		boolean[] isOneHop = new boolean[nodes];
+		for (int n : oneHop)
+			isOneHop[n] = true;
+		boolean[] covered = new boolean[nodes];
+		while (true) {
+			int best = -1;
+			int bestCount = 0;
+			for (int k = 0; k < oneHop.length; k++) {
+				if (ret[k])
+					continue;
+				int count = 0;
+				for (int t : neighbors(oneHop[k]))
+					if (t != node && !isOneHop[t] && !covered[t])
+						count++;
+				if (count > bestCount) {
+					best = k;
+					bestCount = count;
+				}
+			}
+			if (best == -1)
+				return ret;
+			ret[best] = true;
+			for (int t : neighbors(oneHop[best]))
+				covered[t] = true;
+		}
+	}
+
+	private void dijkstra(int source, long[] dist, int[] firstHop, int[] hops) {
+		Arrays.fill(dist, Long.MAX_VALUE);
+		dist[source] = 0;
+		firstHop[source] = source;
+		hops[source] = 0;
+		// entries are {distance, node}, stale ones are skipped when polled
+		PriorityQueue<long[]> queue = new PriorityQueue<long[]>(64,
+				new Comparator<long[]>() {
+					@Override
+					public int compare(long[] a, long[] b) {
+						return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+					}
+				});
+		queue.add(new long[] { 0, source });
+		long[] e;
+		while ((e = queue.poll()) != null) {
+			int u = (int) e[1];
+			if (e[0] > dist[u])
+				continue;
+			for (int l : adjacent[u]) {
+				if (!up[l])
+					continue;
+				int v = linkA[l] == u ? linkB[l] : linkA[l];
+				int c = cost(quality(l, v, u), quality(l, u, v));
+				if (c >= BROKEN || dist[u] + c >= dist[v])
+					continue;
+				dist[v] = dist[u] + c;
+				firstHop[v] = u == source ? v : firstHop[u];
+				hops[v] = hops[u] + 1;
+				queue.add(new long[] { dist[v], v });
+			}
+		}
+	}
+
+	private Config config(int viewpoint) {
+		Config c = new Config();
+		c.olsrPort = 698;
+		c.ipVersion = 4;
+		c.willingness = 3;
+		c.brokenLinkCost = BROKEN;
+		c.brokenRouteCost = 0xffffffffL;
+		c.defaultHelloEmissionInterval = 2f;
+		c.defaultHelloValidityTime = 20f;
+		c.defaultTcEmissionInterval = 5f;
+		c.defaultTcValidityTime = 300f;
+		c.defaultMidEmissionInterval = 5f;
+		c.defaultMidValidityTime = 300f;
+		c.defaultHnaEmissionInterval = 5f;
+		c.defaultHnaValidityTime = 300f;
+		c.pollRate = 50;
+		c.tcRedundancy = 2;
+		c.mprCoverage = 1;
+		c.linkQualityLevel = 2;
+		c.linkQualityAging = 0.05f;
+		c.linkQualityAlgorithm = "etx_ff";
+		c.mainIpAddress = address(viewpoint);
+		c.olsrdVersion = "olsr.org - 0.6.6";
+		c.olsrdBuildDate = "2013-11-01 00:00:00";
+		c.olsrdBuildHost = "meshgenerator";
+		c.os = "GNU/Linux";
+		c.startTime = 1383563285;
+		return c;
+	}
+
+	private static List<Plugin> plugins() {
+		List<Plugin> ret = new ArrayList<Plugin>(2);
+		Plugin json = new Plugin();
+		json.plugin = "olsrd_jsoninfo.so.0.0";
+		json.port = 9090;
+		json.accept = "0.0.0.0";
+		ret.add(json);
+		Plugin txt = new Plugin();
+		txt.plugin = "olsrd_txtinfo.so.0.1";
+		txt.port = 2006;
+		txt.accept = "0.0.0.0";
+		ret.add(txt);
+		return ret;
+	}
+
+	private static List<Interface> interfaces(int viewpoint) {
+		Interface i = new Interface();
+		i.name = "wlan0";
+		i.nameFromKernel = "wlan0";
+		i.state = "up";
+		i.mtu = 1500;
+		i.olsrMTU = 1472;
+		i.wireless = true;
+		i.ipv4Address = address(viewpoint);
+		i.netmask = "255.0.0.0";
+		i.broadcast = "10.255.255.255";
+		i.helloEmissionInterval = 2000;
+		i.helloValidityTime = 20000;
+		i.tcValidityTime = 300000;
+		i.midValidityTime = 300000;
+		i.hnaValidityTime = 300000;
+		return Collections.singletonList(i);
+	}
+}